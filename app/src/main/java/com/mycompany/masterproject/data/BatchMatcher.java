@@ -0,0 +1,214 @@
+package com.mycompany.masterproject.data;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.mycompany.masterproject.gpx.GPXLoader;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.grid.StreetGridBuilder;
+import com.mycompany.masterproject.grid.StreetGridLoader;
+import com.mycompany.masterproject.grid.StreetIndex;
+import com.mycompany.masterproject.util.WitnessReconstructor;
+
+/**
+ * Matches many trajectories on a pool of worker threads that share one ConsistencyMatcher, and thereby one
+ * read-only graph and street index.
+ *
+ * The tracks are read from an iterator, and at most twice as many tracks as there are workers are loaded or
+ * being matched at any time, so memory does not depend on the size of the corpus. For every track the best
+ * path is written to [name].matched.gpx in the output directory, and a line with its outcome is appended to
+ * summary.csv there. A track that cannot be read or matched is counted as failed and does not stop the batch.
+ */
+public class BatchMatcher {
+
+    private static final int PROGRESS_INTERVAL = 100; // Tracks between two progress reports
+
+    private final ConsistencyMatcher matcher;
+    private final int threads;
+    private final File outputDirectory;
+
+    private final AtomicLong tracks = new AtomicLong(); // Its increment decides which worker reports progress
+    private final LongAdder points = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private long elapsedNanos = 0;
+
+    public BatchMatcher(ConsistencyMatcher matcher, int threads, File outputDirectory) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one worker thread is needed.");
+        }
+        this.matcher = matcher;
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Matches all tracks and waits until they are done.
+     *
+     * @param files The GPX files to match. The iterator is only advanced when a worker is free.
+     */
+    public void run(Iterator<File> files) throws IOException, InterruptedException {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Cannot create output directory " + outputDirectory);
+        }
+        long startTime = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(2 * threads);
+        try (BufferedWriter summary = new BufferedWriter(new FileWriter(new File(outputDirectory, "summary.csv")))) {
+            summary.write("track,points,valid,failed_index,score,routes,match_ms,error\n");
+            try {
+                while (files.hasNext()) {
+                    File file = files.next();
+                    inFlight.acquire();
+                    pool.execute(() -> {
+                        try {
+                            String line = matchTrack(file);
+                            synchronized (summary) {
+                                summary.write(line);
+                                summary.write('\n');
+                            }
+                        } catch (IOException e) {
+                            System.err.println("Error writing summary: " + e.getMessage());
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            } finally {
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            }
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+    }
+
+    // Matches one track, writes its best path and returns its summary line
+    private String matchTrack(File file) {
+        String name = file.getName().replaceFirst("(?i)\\.gpx$", "");
+        long startTime = System.nanoTime();
+        try {
+            GPXData gpxData = new GPXLoader().loadGPXTrack(file);
+            if (gpxData == null) {
+                throw new IOException("Cannot read " + file);
+            }
+            MatchResult result = matcher.match(gpxData);
+            try {
+                points.add(result.getStats().getPoints());
+                int best = result.getBest();
+                String score = "";
+                if (best >= 0) {
+                    GPXData path = new WitnessReconstructor().reconstructGPXData(result.getArena(), result.getInterval(best),
+                            result.getCommittedPath(), matcher.getGraph());
+                    WitnessReconstructor.writeGPX(path, new File(outputDirectory, name + ".matched.gpx").getPath());
+                    score = String.format("%.2f", result.getScore(best));
+                    matched.increment();
+                } else {
+                    unmatched.increment();
+                }
+                return csv(name) + "," + result.getStats().getPoints() + "," + result.isValid() + "," + result.getFailedIndex()
+                        + "," + score + "," + result.size() + "," + String.format("%.1f", (System.nanoTime() - startTime) / 1_000_000.0) + ",";
+            } finally {
+                result.release();
+            }
+        } catch (Exception e) {
+            failed.increment();
+            System.err.println("Error matching " + file + ": " + e);
+            return csv(name) + ",,,,,," + String.format("%.1f", (System.nanoTime() - startTime) / 1_000_000.0) + "," + csv(e.toString());
+        } finally {
+            if (tracks.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                System.out.println("Progress: " + this);
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        return value.contains(",") || value.contains("\"") || value.contains("\n")
+                ? "\"" + value.replace("\"", "\"\"").replace("\n", " ") + "\""
+                : value;
+    }
+
+    public long getTracks() {
+        return tracks.get();
+    }
+
+    public long getPoints() {
+        return points.sum();
+    }
+
+    public long getMatched() {
+        return matched.sum();
+    }
+
+    public long getUnmatched() {
+        return unmatched.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public String toString() {
+        String counts = tracks.get() + " tracks (" + matched.sum() + " matched, " + unmatched.sum() + " without a consistent path, "
+                + failed.sum() + " failed), " + points.sum() + " points";
+        if (elapsedNanos == 0) {
+            return counts;
+        }
+        double seconds = elapsedNanos / 1e9;
+        return String.format("%s in %.1f s, %.1f tracks/s, %.0f points/s", counts, seconds, tracks.get() / seconds, points.sum() / seconds);
+    }
+
+    // The GPX files of a directory, a single .gpx file, or the files listed one per line in a text file
+    private static Stream<Path> trackFiles(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            return Files.list(input).filter(path -> path.getFileName().toString().toLowerCase().endsWith(".gpx"));
+        }
+        if (input.getFileName().toString().toLowerCase().endsWith(".gpx")) {
+            return Stream.of(input);
+        }
+        return Files.lines(input).map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#")).map(Paths::get);
+    }
+
+    /**
+     * Matches a corpus of tracks with the configuration of ConsistencyCheck.
+     * Usage: BatchMatcher [graph.jsonl] [gpx directory, .gpx file or list file] [output directory] [threads] [grid file]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String graphPath = args.length > 0 ? args[0] : "./input/graph.jsonl";
+        String input = args.length > 1 ? args[1] : "./TestData";
+        String outputDirectory = args.length > 2 ? args[2] : "./batchOutput";
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String gridPath = args.length > 4 ? args[4] : null;
+
+        long startTime = System.nanoTime();
+        Graph graph = new Graph();
+        graph.readFromJsonl(graphPath);
+        StreetIndex streetIndex = gridPath != null
+            ? StreetGridLoader.loadStreetIndex(gridPath)
+            : StreetGridBuilder.fromGraph(graph, StreetGridBuilder.DEFAULT_CELL_SIZE);
+        System.out.println("Time to load graph and grid: " + (System.nanoTime() - startTime) / 1_000_000.0 + " ms");
+
+        // The tracks run in parallel, so the candidates of each are looked up on its worker
+        ConsistencyMatcher matcher = new ConsistencyMatcher(graph, streetIndex,
+                new ConsistencyMatcher.Config().setParallelLookup(false));
+        BatchMatcher batch = new BatchMatcher(matcher, threads, new File(outputDirectory));
+        try (Stream<Path> files = trackFiles(Paths.get(input))) {
+            batch.run(files.map(Path::toFile).iterator());
+        }
+        System.out.println("Matched with " + threads + " threads: " + batch);
+    }
+}
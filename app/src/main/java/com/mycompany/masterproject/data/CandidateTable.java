@@ -0,0 +1,40 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Candidate streets of every point of a trajectory, computed once by
+ * StreetIndex.findClosestStreets(List, int, boolean) and shared by the matching steps.
+ * Entry i holds the closest streets of track point i, nearest first.
+ */
+public class CandidateTable {
+    private final List<List<ClosestStreetResult>> candidates; // Fixed size, set only replaces entries
+    private final int candidatesPerPoint;
+
+    public CandidateTable(int numPoints, int candidatesPerPoint) {
+        this.candidates = new ArrayList<>(Collections.nCopies(numPoints, null));
+        this.candidatesPerPoint = candidatesPerPoint;
+    }
+
+    /**
+     * Returns the candidates of the given track point, possibly fewer than getCandidatesPerPoint().
+     */
+    public List<ClosestStreetResult> get(int pointIndex) {
+        return candidates.get(pointIndex);
+    }
+
+    public void set(int pointIndex, List<ClosestStreetResult> pointCandidates) {
+        candidates.set(pointIndex, pointCandidates);
+    }
+
+    public int size() {
+        return candidates.size();
+    }
+
+    // The c the table was computed with
+    public int getCandidatesPerPoint() {
+        return candidatesPerPoint;
+    }
+}
@@ -1,11 +1,14 @@
 package com.mycompany.masterproject.data;
 
+import java.util.Objects;
+
 import com.mycompany.masterproject.graph.Segment;
 import com.mycompany.masterproject.graph.TimedGeoPosition;
 
 public class ClosestStreetResult {
     private TimedGeoPosition position;// the position of the snapped point
     private Segment segment;
+    private int pointIndex = -1; // index of the track point in its trajectory, -1 if unknown
 
     public ClosestStreetResult(TimedGeoPosition position, Segment segment) {
         this.position = position;
@@ -20,16 +23,38 @@ public class ClosestStreetResult {
         return segment;
     }
 
+    public int getPointIndex() {
+        return pointIndex;
+    }
+
+    public void setPointIndex(int pointIndex) {
+        this.pointIndex = pointIndex;
+    }
+
+    // A candidate is identified by (segment ID, point index) when both are known
+    private boolean isKeyed() {
+        return pointIndex >= 0 && segment.id >= 0;
+    }
+
     public boolean equals(Object obj) {
         if (this == obj) return true; // Same reference
         if (obj == null || getClass() != obj.getClass()) return false; // Null or different class
-    
+
         ClosestStreetResult other = (ClosestStreetResult) obj;
-    
+
+        if (isKeyed() || other.isKeyed()) {
+            return isKeyed() && other.isKeyed() && pointIndex == other.pointIndex && segment.id == other.segment.id;
+        }
+
         // Compare the position and segment for equality
         return position.equals(other.position) && segment.equals(other.segment);
     }
 
+    @Override
+    public int hashCode() {
+        return isKeyed() ? 31 * pointIndex + segment.id : Objects.hash(position, segment);
+    }
+
     @Override
     public String toString() {
         return "ClosestStreetResult{" +
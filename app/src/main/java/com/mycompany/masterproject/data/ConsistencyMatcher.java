@@ -0,0 +1,707 @@
+package com.mycompany.masterproject.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.mycompany.masterproject.analysis.PathAnalyzer;
+import com.mycompany.masterproject.graph.Edge;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+import com.mycompany.masterproject.grid.StreetIndex;
+import com.mycompany.masterproject.util.MatchTrace;
+
+/**
+ * The physically consistent map matching of ConsistencyCheck as a reusable engine. A matcher is built once
+ * for a loaded graph, a street index and a configuration, and then matches any number of trajectories.
+ *
+ * All state of one matching (the interval arena, the U-functions, the history) is local to the call of match,
+ * and the graph and the index are only read. One matcher can therefore be shared by several threads.
+ */
+public class ConsistencyMatcher {
+
+    // Relative slack on deltaT before the travel time bound rejects a route, so rounding never rejects a feasible one
+    private static final double MIN_TRAVEL_TIME_TOLERANCE = 1e-9;
+
+    /**
+     * The parameters of the matching. The matcher copies them when it is built, so a Config can be
+     * changed and reused for other matchers afterwards.
+     */
+    public static class Config {
+        private HashMap<String, Integer> streetToSpeed = defaultStreetToSpeed();
+        private double initialSpeedMin = 0;
+        private double initialSpeedMax = 5;
+        private int maxIntervals = 20;
+        private int candidates = 2;
+        private double slack = 1;
+        private double timeBuffer = 2;
+        private double acceleration = 5;
+        private int commitLag = 0;
+        private MatchTrace trace = MatchTrace.OFF;
+        private boolean parallelLookup = true;
+        private boolean parallelTransitions = false;
+
+        public Config() {
+        }
+
+        private Config(Config other) {
+            this.streetToSpeed = new HashMap<>(other.streetToSpeed);
+            this.initialSpeedMin = other.initialSpeedMin;
+            this.initialSpeedMax = other.initialSpeedMax;
+            this.maxIntervals = other.maxIntervals;
+            this.candidates = other.candidates;
+            this.slack = other.slack;
+            this.timeBuffer = other.timeBuffer;
+            this.acceleration = other.acceleration;
+            this.commitLag = other.commitLag;
+            this.trace = other.trace;
+            this.parallelLookup = other.parallelLookup;
+            this.parallelTransitions = other.parallelTransitions;
+        }
+
+        /**
+         * Speed limits in km/h by street type, used for edges without a numeric maxspeed.
+         */
+        public Config setStreetToSpeed(Map<String, Integer> streetToSpeed) {
+            this.streetToSpeed = new HashMap<>(streetToSpeed);
+            return this;
+        }
+
+        /**
+         * The speed interval at the first point (m/s).
+         */
+        public Config setInitialSpeedInterval(double min, double max) {
+            if (!(min >= 0 && min <= max)) {
+                throw new IllegalArgumentException("The initial speed interval must be non-negative and not empty.");
+            }
+            this.initialSpeedMin = min;
+            this.initialSpeedMax = max;
+            return this;
+        }
+
+        /**
+         * The number of intervals kept per candidate.
+         */
+        public Config setMaxIntervals(int maxIntervals) {
+            if (maxIntervals < 1) {
+                throw new IllegalArgumentException("At least one interval must be kept per candidate.");
+            }
+            this.maxIntervals = maxIntervals;
+            return this;
+        }
+
+        /**
+         * The number of candidate streets per point.
+         */
+        public Config setCandidates(int candidates) {
+            if (candidates < 1) {
+                throw new IllegalArgumentException("At least one candidate per point is needed.");
+            }
+            this.candidates = candidates;
+            return this;
+        }
+
+        /**
+         * Factor on all speed limits.
+         */
+        public Config setSlack(double slack) {
+            if (!(slack > 0)) {
+                throw new IllegalArgumentException("The slack must be positive.");
+            }
+            this.slack = slack;
+            return this;
+        }
+
+        /**
+         * Seconds added to the time between two points.
+         */
+        public Config setTimeBuffer(double timeBuffer) {
+            this.timeBuffer = timeBuffer;
+            return this;
+        }
+
+        /**
+         * Maximum acceleration and deceleration (m/s²).
+         */
+        public Config setAcceleration(double acceleration) {
+            if (!(acceleration > 0)) {
+                throw new IllegalArgumentException("The acceleration must be positive.");
+            }
+            this.acceleration = acceleration;
+            return this;
+        }
+
+        /**
+         * Points after which the best chain is committed, 0 (the default) keeps the whole history (see
+         * MatchHistory). A commit drops the intervals that disagree with the committed chain, so with a
+         * non-zero lag a trajectory that has a consistent path can still fail; it is meant for live streams
+         * and tracks too long to keep every interval.
+         */
+        public Config setCommitLag(int commitLag) {
+            if (commitLag < 0) {
+                throw new IllegalArgumentException("The commit lag must not be negative.");
+            }
+            this.commitLag = commitLag;
+            return this;
+        }
+
+        /**
+         * The trace that receives the candidates, routes and intervals of every matching (the former
+         * CHECK.txt). It is shared, not copied, by the matchers built from this configuration.
+         */
+        public Config setTrace(MatchTrace trace) {
+            if (trace == null) {
+                throw new IllegalArgumentException("Use MatchTrace.OFF to switch the trace off.");
+            }
+            this.trace = trace;
+            return this;
+        }
+
+        /**
+         * Whether the candidates of a trajectory are looked up on the common fork-join pool. Matchers
+         * that already run many trajectories in parallel should look them up on the calling thread.
+         */
+        public Config setParallelLookup(boolean parallelLookup) {
+            this.parallelLookup = parallelLookup;
+            return this;
+        }
+
+        /**
+         * Whether the candidate pairs of a step are routed and evaluated on the common fork-join pool. The
+         * result is the same as without, since the intervals are added in the order of the pairs afterwards.
+         * Useful for single long trajectories; a BatchMatcher already keeps all cores busy.
+         */
+        public Config setParallelTransitions(boolean parallelTransitions) {
+            this.parallelTransitions = parallelTransitions;
+            return this;
+        }
+
+        public Map<String, Integer> getStreetToSpeed() {
+            return Collections.unmodifiableMap(streetToSpeed);
+        }
+
+        public double getInitialSpeedMin() {
+            return initialSpeedMin;
+        }
+
+        public double getInitialSpeedMax() {
+            return initialSpeedMax;
+        }
+
+        public int getMaxIntervals() {
+            return maxIntervals;
+        }
+
+        public int getCandidates() {
+            return candidates;
+        }
+
+        public double getSlack() {
+            return slack;
+        }
+
+        public double getTimeBuffer() {
+            return timeBuffer;
+        }
+
+        public double getAcceleration() {
+            return acceleration;
+        }
+
+        public int getCommitLag() {
+            return commitLag;
+        }
+
+        public MatchTrace getTrace() {
+            return trace;
+        }
+
+        public boolean isParallelLookup() {
+            return parallelLookup;
+        }
+
+        public boolean isParallelTransitions() {
+            return parallelTransitions;
+        }
+
+        private static HashMap<String, Integer> defaultStreetToSpeed() {
+            HashMap<String, Integer> streetToSpeed = new HashMap<>();
+            streetToSpeed.put("motorway", 400);
+            streetToSpeed.put("motorway_link", 150);
+            streetToSpeed.put("trunk", 100);
+            streetToSpeed.put("trunk_link", 100);
+            streetToSpeed.put("primary", 100);
+            streetToSpeed.put("primary_link", 100);
+            streetToSpeed.put("secondary", 50);
+            streetToSpeed.put("secondary_link", 50);
+            streetToSpeed.put("tertiary", 50);
+            streetToSpeed.put("residential", 30);
+            streetToSpeed.put("unclassified", 50);
+            return streetToSpeed;
+        }
+    }
+
+    private final Graph graph;
+    private final StreetIndex streetIndex;
+    private final Config config;
+
+    public ConsistencyMatcher(Graph graph, StreetIndex streetIndex, Config config) {
+        if (graph == null || streetIndex == null || config == null) {
+            throw new IllegalArgumentException("Graph, street index and configuration are required.");
+        }
+        this.graph = graph;
+        this.streetIndex = streetIndex;
+        this.config = new Config(config);
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public StreetIndex getStreetIndex() {
+        return streetIndex;
+    }
+
+    /**
+     * Returns a copy of the configuration of this matcher.
+     */
+    public Config getConfig() {
+        return new Config(config);
+    }
+
+    /**
+     * Matches one trajectory. Safe to call from several threads at once.
+     *
+     * @param gpxData The trajectory.
+     * @return The surviving intervals at the last point with their paths, or the index of the point at which
+     *         no interval survived.
+     */
+    public MatchResult match(GPXData gpxData) {
+        List<TimedGeoPosition> trackPoints = gpxData.getTrackPoints();
+        if (trackPoints.isEmpty()) {
+            throw new IllegalArgumentException("The trajectory has no points.");
+        }
+        long startTime = System.nanoTime();
+        MatchState state = new MatchState(gpxData.getName());
+
+        // Look up the candidates of all TrackPoints once
+        CandidateTable candidateTable = streetIndex.findClosestStreets(trackPoints, config.candidates, config.parallelLookup);
+        state.stats.candidateNanos = System.nanoTime() - startTime;
+
+        state.start(trackPoints.get(0), candidateTable.get(0));
+        //For each TrackPoint
+        for (int i = 0; i < trackPoints.size() - 1; i++) {
+            if (!state.step(trackPoints.get(i + 1), candidateTable.get(i + 1))) {
+                break;
+            }
+        }
+
+        int[] finalIntervals = state.failedIndex < 0 ? state.liveIntervals() : new int[0];
+        state.finishStats();
+        state.stats.points = trackPoints.size();
+        state.stats.matchNanos = System.nanoTime() - startTime;
+        state.finishTrace(finalIntervals.length);
+        return new MatchResult(state.arena, finalIntervals, state.history.getCommittedPath(), state.history.getCommittedScore(),
+                state.failedIndex, state.stats);
+    }
+
+    /**
+     * Returns a matcher for a live stream of positions of one vehicle that uses the graph, index and
+     * configuration of this matcher.
+     */
+    public OnlineMatcher startOnline() {
+        return startOnline("online");
+    }
+
+    /**
+     * Returns a matcher for a live stream of positions, traced under the given name.
+     */
+    public OnlineMatcher startOnline(String name) {
+        return new OnlineMatcher(this, name);
+    }
+
+    /**
+     * The matching of one trajectory up to its newest point: the candidates of that point with their
+     * intervals, the arena and history behind them, and the buffers of the steps. Points are added one at
+     * a time, so the whole trajectory does not have to be known in advance.
+     */
+    class MatchState {
+        final IntervalArena arena = new IntervalArena();
+        final MatchHistory history = new MatchHistory(arena, config.commitLag);
+        final MatchResult.Stats stats = new MatchResult.Stats();
+        //For Debugging. Only written if the trace of the configuration is on
+        final MatchTrace.Trajectory trace;
+
+        // U(x) is built once per route and upper start speed, the speed interval is recomputed for every interval.
+        // Every candidate pair of a step has its own profile, so the pairs can be evaluated in parallel
+        private final RouteProfile[] routes = new RouteProfile[config.candidates * config.candidates];
+        private final Transition[] transitions = new Transition[config.candidates * config.candidates];
+
+        // The newest point, its candidates and their intervals
+        DataPoint current;
+        private TimedGeoPosition currentPosition;
+        private List<ClosestStreetResult> currentCandidates;
+        int index = -1;
+        int failedIndex = -1;
+
+        MatchState(String name) {
+            for (int r = 0; r < routes.length; r++) {
+                routes[r] = new RouteProfile();
+            }
+            trace = config.trace.start(name);
+        }
+
+        /**
+         * Starts the trajectory at its first point, with the initial speed interval at every candidate.
+         */
+        void start(TimedGeoPosition position, List<ClosestStreetResult> candidates) {
+            //We initialize the first DataPoint to have no predecessor and the initial speed interval
+            current = new DataPoint(position, config.candidates);
+            currentPosition = position;
+            currentCandidates = candidates;
+            index = 0;
+            trace.step(0);
+            if (trace.on(MatchTrace.Level.STEP)) {
+                tracePoint(position, Double.NaN, candidates);
+            }
+
+            //Create the dummy references for the first TrackPoint
+            int i=0;
+            for (ClosestStreetResult currentCandidate : candidates) {
+                CandidateData candidateData = new CandidateData(currentCandidate, config.maxIntervals, arena);
+                candidateData.addInterval(config.initialSpeedMin, config.initialSpeedMax, IntervalArena.NONE, 0);
+                current.setCandidate(i, candidateData);
+                i++;
+            }
+        }
+
+        /**
+         * Advances the matching to the next point.
+         *
+         * @return false if no interval reaches the next point. The state then still holds the previous point.
+         */
+        boolean step(TimedGeoPosition next, List<ClosestStreetResult> nextCandidates) {
+            int c = config.candidates;
+            int numberOfTrackedIntervalls = config.maxIntervals;
+            boolean foundValidInterval = false;
+            double deltaT = ((next.getTimestamp() - currentPosition.getTimestamp()) / 1000) + config.timeBuffer;
+            trace.step(index + 1);
+            if (trace.on(MatchTrace.Level.STEP)) {
+                tracePoint(next, deltaT, nextCandidates);
+            }
+
+            // Initiate New DataPoint with its c Candidates
+            DataPoint nextPoint = new DataPoint(next, c);
+
+            // Extract all the CandidateIntervals for the outgoing nodes, and collect the candidate pairs that need a route
+            IntervalFrontier[] currentIntervals = new IntervalFrontier[currentCandidates.size()];
+            int transitionCount = 0;
+            for (int ci = 0; ci < currentCandidates.size(); ci++) {
+                currentIntervals[ci] = current.getCandidateIntervall(ci);
+                if (currentIntervals[ci] == null || currentIntervals[ci].size() == 0) {
+                    continue;
+                }
+                for (int ni = 0; ni < nextCandidates.size(); ni++) {
+                    if (!sameCandidate(currentCandidates.get(ci), nextCandidates.get(ni))) {
+                        transitions[transitionCount] = new Transition(currentCandidates.get(ci), nextCandidates.get(ni),
+                                currentIntervals[ci], arena, deltaT, routes[transitionCount],
+                                trace.on(MatchTrace.Level.ROUTE) ? trace.branch() : trace, ci, ni);
+                        transitionCount++;
+                    }
+                }
+            }
+
+            // Route the pairs and compute their speed intervals. They only read the intervals of the current point
+            if (config.parallelTransitions && transitionCount > 1) {
+                IntStream.range(0, transitionCount).parallel().forEach(t -> transitions[t].evaluate());
+            } else {
+                for (int t = 0; t < transitionCount; t++) {
+                    transitions[t].evaluate();
+                }
+            }
+
+            // Add the intervals to the next point in the order of the candidate pairs, so that the frontiers
+            // get the same inserts whether the pairs were evaluated in parallel or not
+            int t = 0;
+            for (int ci = 0; ci < currentCandidates.size(); ci++) {
+                ClosestStreetResult currentCandidate = currentCandidates.get(ci);
+
+                IntervalFrontier candidateIntervals = currentIntervals[ci];
+                if ((candidateIntervals == null || candidateIntervals.size() == 0) && trace.on(MatchTrace.Level.ROUTE)) {
+                    trace.event("no_intervals").field("from", ci).end();
+                }
+                if (candidateIntervals == null){
+                    continue;
+                }
+
+
+                // Extract all relevant Intervals for the currentCandidate
+                for (int ni = 0; ni < nextCandidates.size(); ni++) {
+                    ClosestStreetResult nextCandidate = nextCandidates.get(ni);
+
+                    // Create or Access the interval List for the nextCandidate
+                    CandidateData candidateData = nextPoint.getCandidateData(ni, nextCandidate, numberOfTrackedIntervalls, arena);
+
+                    // Check if the two candidates are the same
+                    if (sameCandidate(currentCandidate, nextCandidate)) {
+                        if (trace.on(MatchTrace.Level.ROUTE)) {
+                            trace.event("same").field("from", ci).field("to", ni).field("intervals", candidateIntervals.size()).end();
+                        }
+                        for (int k = 0; k < candidateIntervals.size(); k++) {
+                            int interval = candidateIntervals.get(k);
+
+                            // Add an interval with the Current Interval's values
+                            candidateData.addInterval(arena.getVMin(interval), arena.getVMax(interval), interval, 0);
+                        }
+                        continue;
+                    }
+
+                    if (candidateIntervals.size() == 0) {
+                        continue;
+                    }
+
+                    Transition transition = transitions[t];
+                    transitions[t++] = null;
+                    if (transition.trace != trace) {
+                        trace.merge(transition.trace);
+                    }
+                    stats.filteredRoutes += transition.filteredRoutes;
+                    stats.filteredIntervals += transition.filteredIntervals;
+                    for (int k = 0; k < transition.count; k++) {
+                        // Add a new interval with the new speed interval to the interval List
+                        candidateData.addInterval(transition.vMin[k], transition.vMax[k], transition.predecessor[k], transition.score);
+                        foundValidInterval = true;
+                    }
+                }
+            }
+            if(!foundValidInterval){
+                if (trace.on(MatchTrace.Level.STEP)) {
+                    trace.event("failed").field("from", index).end();
+                }
+                failedIndex = index;
+                return false;
+            }
+
+            // The intervals of the next point are complete: drop the current point and bound the history
+            current = nextPoint;
+            currentPosition = next;
+            currentCandidates = nextCandidates;
+            index++;
+            history.step(current, index);
+            return true;
+        }
+
+        // The point reached by a step and, in more detail, its candidates
+        private void tracePoint(TimedGeoPosition position, double deltaT, List<ClosestStreetResult> candidates) {
+            trace.event("point").field("lat", position.getPosition().getLatitude()).field("lon", position.getPosition().getLongitude())
+                 .field("time", position.getTimestamp()).field("dt", deltaT).field("candidates", candidates.size()).end();
+            if (trace.on(MatchTrace.Level.ROUTE)) {
+                for (int k = 0; k < candidates.size(); k++) {
+                    ClosestStreetResult candidate = candidates.get(k);
+                    trace.event("candidate").field("index", k)
+                         .field("lat", candidate.getPosition().getPosition().getLatitude())
+                         .field("lon", candidate.getPosition().getPosition().getLongitude())
+                         .field("segment", candidate.getSegment().id).end();
+                }
+            }
+        }
+
+        /**
+         * Ends the trace of the trajectory.
+         */
+        void finishTrace(int intervals) {
+            if (trace.isTraced()) {
+                trace.finish().field("points", index + 1).field("failed_index", failedIndex).field("intervals", intervals)
+                     .field("stored", arena.size()).end();
+            }
+        }
+
+        /**
+         * Returns the intervals of the newest point, in candidate and frontier order.
+         */
+        int[] liveIntervals() {
+            int count = 0;
+            int[] intervals = new int[16];
+            for (CandidateData candidate : current.getAllCandidates()) {
+                if (candidate != null) {
+                    IntervalFrontier frontier = candidate.getIntervals();
+                    for (int k = 0; k < frontier.size(); k++) {
+                        int interval = frontier.get(k);
+                        if (!Double.isNaN(arena.getVMin(interval)) &&
+                            !Double.isNaN(arena.getVMax(interval)) &&
+                            arena.getVMin(interval) <= arena.getVMax(interval)) {
+                            if (count == intervals.length) {
+                                intervals = Arrays.copyOf(intervals, 2 * count);
+                            }
+                            intervals[count++] = interval;
+                        }
+                    }
+                }
+            }
+            return Arrays.copyOf(intervals, count);
+        }
+
+        /**
+         * Returns the bytes allocated for the state: the interval columns, the route profiles of all candidate
+         * pairs with their cached functions, and the frontiers of the newest point.
+         */
+        long getAllocatedBytes() {
+            long bytes = arena.getAllocatedBytes();
+            for (RouteProfile route : routes) {
+                bytes += route.getAllocatedBytes();
+            }
+            if (current != null) {
+                for (CandidateData candidate : current.getAllCandidates()) {
+                    if (candidate != null) {
+                        bytes += candidate.getIntervals().getAllocatedBytes();
+                    }
+                }
+            }
+            return bytes;
+        }
+
+        void finishStats() {
+            stats.points = index + 1;
+            stats.uFunctionBuilds = 0;
+            stats.uFunctionLookups = 0;
+            for (RouteProfile route : routes) {
+                stats.uFunctionBuilds += route.getBuilds();
+                stats.uFunctionLookups += route.getLookups();
+            }
+            stats.storedIntervals = arena.size();
+            stats.history = history.toString();
+        }
+    }
+
+    private static boolean sameCandidate(ClosestStreetResult current, ClosestStreetResult next) {
+        return current.getPosition().getPosition().getLatitude() == next.getPosition().getPosition().getLatitude() &&
+               current.getPosition().getPosition().getLongitude() == next.getPosition().getPosition().getLongitude();
+    }
+
+    /**
+     * The step from one candidate to a candidate of the next point: the route between them and the speed
+     * interval reached from every interval of the current candidate. evaluate only reads the intervals of
+     * the current point and writes its own fields, so the transitions of a step can run concurrently.
+     */
+    private class Transition {
+        private final ClosestStreetResult currentCandidate;
+        private final ClosestStreetResult nextCandidate;
+        private final IntervalFrontier candidateIntervals;
+        private final IntervalArena arena;
+        private final double deltaT;
+        private final RouteProfile route;
+
+        // The intervals to add at the next candidate, all with the score of the route
+        final MatchTrace.Events trace;
+        private final int from; // Candidate indexes, for the trace
+        private final int to;
+        double[] vMin;
+        double[] vMax;
+        int[] predecessor;
+        int count = 0;
+        double score;
+        int filteredRoutes = 0;
+        int filteredIntervals = 0;
+
+        Transition(ClosestStreetResult currentCandidate, ClosestStreetResult nextCandidate, IntervalFrontier candidateIntervals,
+                   IntervalArena arena, double deltaT, RouteProfile route, MatchTrace.Events trace, int from, int to) {
+            this.currentCandidate = currentCandidate;
+            this.nextCandidate = nextCandidate;
+            this.candidateIntervals = candidateIntervals;
+            this.arena = arena;
+            this.deltaT = deltaT;
+            this.route = route;
+            this.trace = trace;
+            this.from = from;
+            this.to = to;
+        }
+
+        @SuppressWarnings("unchecked")
+        void evaluate() {
+            double a = config.acceleration;
+
+            // Generate the shortest path between two candidate locations
+            Map<String, Object> result = graph.dijkstraBetweenClosestStreetResults(nextCandidate, currentCandidate);
+            double[] routeEvaluation = PathAnalyzer.analyzePath(result);
+
+            score = routeEvaluation[0]+routeEvaluation[1]*100;
+
+
+            // Create the SIS from the shortest path
+            List<PathSegment> SIS = ConsistencyCheck.convertEdgesToPathSegments((List<Edge>) result.get("edges"), config.slack, config.streetToSpeed);
+
+
+            if (SIS.size() == 0) {
+                if (trace.on(MatchTrace.Level.ROUTE)) {
+                    traceRoute(routeEvaluation[0], "no_route");
+                }
+                return;
+            }
+            route.load(SIS);
+
+            // Skip the route if even the fastest interval cannot drive it in time. A NaN bound never rejects.
+            double vStartMax = 0;
+            for (int k = 0; k < candidateIntervals.size(); k++) {
+                vStartMax = Math.max(vStartMax, arena.getVMax(candidateIntervals.get(k)));
+            }
+            if (route.minTravelTime(vStartMax, a) > deltaT * (1 + MIN_TRAVEL_TIME_TOLERANCE)) {
+                if (trace.on(MatchTrace.Level.ROUTE)) {
+                    traceRoute(routeEvaluation[0], "too_slow");
+                }
+                filteredRoutes++;
+                filteredIntervals += candidateIntervals.size();
+                return;
+            }
+
+            if (trace.on(MatchTrace.Level.ROUTE)) {
+                traceRoute(routeEvaluation[0], "ok");
+            }
+            vMin = new double[candidateIntervals.size()];
+            vMax = new double[candidateIntervals.size()];
+            predecessor = new int[candidateIntervals.size()];
+            double[] speedIntervalBuffer = new double[2];
+            // For each interval in the interval List
+            for (int k = 0; k < candidateIntervals.size(); k++) {
+                int interval = candidateIntervals.get(k);
+
+                // Set the SpeedInterval to the Current Interval's values
+                double vStartMin = arena.getVMin(interval);
+                double vStart = arena.getVMax(interval);
+
+                // Create U(x) from the SIS, or reuse it if an earlier interval had the same upper bound
+                UFunction uFunction = route.getUFunction(vStartMin, vStart, a);
+                if (uFunction == null) {
+                    if (trace.on(MatchTrace.Level.INTERVAL)) {
+                        trace.event("interval").field("vmin", vStartMin).field("vmax", vStart).field("rejected", "u_function").end();
+                    }
+                    continue;
+                }
+                uFunction.computeSpeedInterval(vStartMin, vStart, -a, a, deltaT, speedIntervalBuffer);
+                double[] tempSpeedInterval = speedIntervalBuffer;
+
+                if (Double.isNaN(tempSpeedInterval[0]) || Double.isNaN(tempSpeedInterval[1])) {
+                    if (trace.on(MatchTrace.Level.INTERVAL)) {
+                        trace.event("interval").field("vmin", vStartMin).field("vmax", vStart).field("rejected", "speed").end();
+                    }
+                    continue;
+                }
+                vMin[count] = tempSpeedInterval[0];
+                vMax[count] = tempSpeedInterval[1];
+                predecessor[count] = interval;
+                count++;
+                if (trace.on(MatchTrace.Level.INTERVAL)) {
+                    trace.event("interval").field("vmin", vStartMin).field("vmax", vStart)
+                         .field("to_vmin", tempSpeedInterval[0]).field("to_vmax", tempSpeedInterval[1]).end();
+                }
+            }
+        }
+
+        private void traceRoute(double length, String result) {
+            trace.event("route").field("from", from).field("to", to).field("length", length).field("score", score)
+                 .field("intervals", candidateIntervals.size()).field("result", result).end();
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.mycompany.masterproject.data;
 
-import java.util.ArrayList;
-
 import com.mycompany.masterproject.graph.TimedGeoPosition;
 
 public class DataPoint {
@@ -17,14 +15,13 @@ public class DataPoint {
         return position;
     }
 
-    public ArrayList<CandidateInterval> getCandidateIntervall(ClosestStreetResult candidate) {
-        for (CandidateData data : candidates) {
-            if (data != null && data.getCandidate().equals(candidate)) {
-                return data.getIntervals();
-            }
-        }
-        System.out.println("Candidate not found");
-        return null;
+    /**
+     * Returns the intervals of the candidate at the given position of the point's candidate list,
+     * or null if no interval has reached that candidate.
+     */
+    public IntervalFrontier getCandidateIntervall(int index) {
+        CandidateData data = candidates[index];
+        return data != null ? data.getIntervals() : null;
     }
 
     public void setCandidate(int index, CandidateData candidate) {
@@ -35,24 +32,20 @@ public class DataPoint {
         return candidates;
     }
 
-    public CandidateData getCandidateData(ClosestStreetResult candidate, int maxIntervals) {
-        // Check if the candidate already exists
-        for (CandidateData data : candidates) {
-            if (data != null && data.getCandidate().equals(candidate)) {
-                return data; // Return the existing candidate
-            }
+    /**
+     * Returns the data of the candidate at the given position of the point's candidate list, creating it
+     * on first access. Slot i always belongs to candidate i, so no search is needed.
+     *
+     * @throws IllegalStateException If the slot already holds another candidate.
+     */
+    public CandidateData getCandidateData(int index, ClosestStreetResult candidate, int maxIntervals, IntervalArena arena) {
+        CandidateData data = candidates[index];
+        if (data == null) {
+            data = new CandidateData(candidate, maxIntervals, arena);
+            candidates[index] = data;
+        } else if (data.getCandidate() != candidate && !data.getCandidate().equals(candidate)) {
+            throw new IllegalStateException("Slot " + index + " holds another candidate than " + candidate);
         }
-    
-        // If not found, create a new CandidateData
-        for (int i = 0; i < candidates.length; i++) {
-            if (candidates[i] == null) { // Find the first empty slot
-                candidates[i] = new CandidateData(candidate, maxIntervals); // Adjust max intervals as needed
-                return candidates[i];
-            }
-        }
-    
-        // Optional: Throw an exception or handle the case where the array is full
-        throw new IllegalStateException("No space available to add new candidate");
+        return data;
     }
 }
-
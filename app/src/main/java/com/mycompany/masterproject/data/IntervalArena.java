@@ -0,0 +1,249 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage for all candidate intervals of one trajectory. An interval is an int handle into primitive
+ * columns (lower and upper speed bound, score, total score, candidate and predecessor), so the history of
+ * the matching is a few large arrays instead of one object per interval that the garbage collector has to
+ * trace. The predecessor of an interval is the handle of the interval it was computed from, or NONE.
+ *
+ * The columns grow in chunks of CHUNK_SIZE entries, which are never copied once allocated. Only the first
+ * chunk starts small (INITIAL_CHUNK_SIZE entries) and doubles until it reaches CHUNK_SIZE, so a short or
+ * freshly compacted trajectory, e.g. one of many live sessions, does not hold a whole chunk. Candidates are
+ * stored once each and referenced by index. The whole arena is dropped with release when the matching of
+ * the trajectory is done; handles are not valid afterwards.
+ *
+ * A predecessor is always added before the intervals computed from it, so it has a lower handle. compact
+ * relies on this: it keeps the intervals reachable from a set of live handles, moves them down in handle
+ * order and frees the chunks that are no longer needed.
+ */
+public class IntervalArena {
+
+    public static final int NONE = -1;
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNK_SIZE = 64;
+    private static final int INTERVAL_BYTES = 4 * Double.BYTES + 2 * Integer.BYTES; // One entry of every column
+
+    private double[][] vMin = new double[0][];
+    private double[][] vMax = new double[0][];
+    private double[][] score = new double[0][];
+    private double[][] totalScore = new double[0][];
+    private int[][] candidate = new int[0][];
+    private int[][] predecessor = new int[0][];
+    private int size = 0;
+
+    private final List<ClosestStreetResult> candidates = new ArrayList<>();
+    private final Map<ClosestStreetResult, Integer> candidateIds = new IdentityHashMap<>();
+
+    /**
+     * Adds an interval.
+     *
+     * @param vMin        Lower bound of the speed interval.
+     * @param vMax        Upper bound of the speed interval.
+     * @param predecessor Handle of the interval this one was computed from, or NONE.
+     * @param candidate   The candidate street point of the interval.
+     * @param score       Score of the step from the predecessor (lower is better).
+     * @return The handle of the new interval.
+     */
+    public int add(double vMin, double vMax, int predecessor, ClosestStreetResult candidate, double score) {
+        int chunk = size >>> CHUNK_BITS;
+        int offset = size & CHUNK_MASK;
+        if (chunk == this.vMin.length) {
+            addChunk();
+        } else if (offset == this.vMin[chunk].length) {
+            growFirstChunk();
+        }
+        this.vMin[chunk][offset] = vMin;
+        this.vMax[chunk][offset] = vMax;
+        this.score[chunk][offset] = score;
+        this.totalScore[chunk][offset] = totalScore(predecessor, score);
+        this.candidate[chunk][offset] = candidateId(candidate);
+        this.predecessor[chunk][offset] = predecessor;
+        return size++;
+    }
+
+    private void addChunk() {
+        int chunks = vMin.length + 1;
+        int length = chunks == 1 ? INITIAL_CHUNK_SIZE : CHUNK_SIZE;
+        vMin = Arrays.copyOf(vMin, chunks);
+        vMax = Arrays.copyOf(vMax, chunks);
+        score = Arrays.copyOf(score, chunks);
+        totalScore = Arrays.copyOf(totalScore, chunks);
+        candidate = Arrays.copyOf(candidate, chunks);
+        predecessor = Arrays.copyOf(predecessor, chunks);
+        vMin[chunks - 1] = new double[length];
+        vMax[chunks - 1] = new double[length];
+        score[chunks - 1] = new double[length];
+        totalScore[chunks - 1] = new double[length];
+        candidate[chunks - 1] = new int[length];
+        predecessor[chunks - 1] = new int[length];
+    }
+
+    // Doubles the first chunk, the only one that can be shorter than CHUNK_SIZE
+    private void growFirstChunk() {
+        int length = Math.min(2 * vMin[0].length, CHUNK_SIZE);
+        vMin[0] = Arrays.copyOf(vMin[0], length);
+        vMax[0] = Arrays.copyOf(vMax[0], length);
+        score[0] = Arrays.copyOf(score[0], length);
+        totalScore[0] = Arrays.copyOf(totalScore[0], length);
+        candidate[0] = Arrays.copyOf(candidate[0], length);
+        predecessor[0] = Arrays.copyOf(predecessor[0], length);
+    }
+
+    private int candidateId(ClosestStreetResult result) {
+        Integer id = candidateIds.get(result);
+        if (id == null) {
+            id = candidates.size();
+            candidates.add(result);
+            candidateIds.put(result, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the total score an interval with this predecessor and score would have.
+     */
+    public double totalScore(int predecessor, double score) {
+        return score + (predecessor != NONE ? getTotalScore(predecessor) : 0);
+    }
+
+    public double getVMin(int handle) {
+        return vMin[handle >>> CHUNK_BITS][handle & CHUNK_MASK];
+    }
+
+    public double getVMax(int handle) {
+        return vMax[handle >>> CHUNK_BITS][handle & CHUNK_MASK];
+    }
+
+    public double getScore(int handle) {
+        return score[handle >>> CHUNK_BITS][handle & CHUNK_MASK];
+    }
+
+    /**
+     * Returns the score of the interval plus those of its predecessors.
+     */
+    public double getTotalScore(int handle) {
+        return totalScore[handle >>> CHUNK_BITS][handle & CHUNK_MASK];
+    }
+
+    public int getPredecessor(int handle) {
+        return predecessor[handle >>> CHUNK_BITS][handle & CHUNK_MASK];
+    }
+
+    public ClosestStreetResult getCandidate(int handle) {
+        return candidates.get(candidate[handle >>> CHUNK_BITS][handle & CHUNK_MASK]);
+    }
+
+    /**
+     * Makes the interval the start of its chain. Its total score is kept.
+     */
+    public void cut(int handle) {
+        predecessor[handle >>> CHUNK_BITS][handle & CHUNK_MASK] = NONE;
+    }
+
+    /**
+     * Keeps only the intervals reachable from the given handles through their predecessors, and the
+     * candidates they use. The kept intervals keep their order, and unused chunks are freed.
+     *
+     * @param live  Handles of the live intervals.
+     * @param count Number of handles in live to use.
+     * @return The new handle of every old handle, NONE for the removed ones. Handles held elsewhere
+     *         must be translated with it.
+     */
+    public int[] compact(int[] live, int count) {
+        int[] newHandle = new int[size];
+        Arrays.fill(newHandle, NONE);
+        // Mark: 0 stands for reachable until the handles are assigned below
+        for (int k = 0; k < count; k++) {
+            for (int current = live[k]; current != NONE && newHandle[current] == NONE; current = getPredecessor(current)) {
+                newHandle[current] = 0;
+            }
+        }
+
+        int[] newCandidate = new int[candidates.size()];
+        Arrays.fill(newCandidate, NONE);
+        List<ClosestStreetResult> keptCandidates = new ArrayList<>();
+        int kept = 0;
+        for (int old = 0; old < size; old++) {
+            if (newHandle[old] == NONE) {
+                continue;
+            }
+            int from = old & CHUNK_MASK;
+            int to = kept & CHUNK_MASK;
+            int fromChunk = old >>> CHUNK_BITS;
+            int toChunk = kept >>> CHUNK_BITS;
+            int candidateId = candidate[fromChunk][from];
+            if (newCandidate[candidateId] == NONE) {
+                newCandidate[candidateId] = keptCandidates.size();
+                keptCandidates.add(candidates.get(candidateId));
+            }
+            int oldPredecessor = predecessor[fromChunk][from];
+            vMin[toChunk][to] = vMin[fromChunk][from];
+            vMax[toChunk][to] = vMax[fromChunk][from];
+            score[toChunk][to] = score[fromChunk][from];
+            totalScore[toChunk][to] = totalScore[fromChunk][from];
+            candidate[toChunk][to] = newCandidate[candidateId];
+            predecessor[toChunk][to] = oldPredecessor != NONE ? newHandle[oldPredecessor] : NONE; // Moved already
+            newHandle[old] = kept++;
+        }
+        size = kept;
+
+        int chunks = (size + CHUNK_MASK) >>> CHUNK_BITS;
+        vMin = Arrays.copyOf(vMin, chunks);
+        vMax = Arrays.copyOf(vMax, chunks);
+        score = Arrays.copyOf(score, chunks);
+        totalScore = Arrays.copyOf(totalScore, chunks);
+        candidate = Arrays.copyOf(candidate, chunks);
+        predecessor = Arrays.copyOf(predecessor, chunks);
+
+        candidates.clear();
+        candidates.addAll(keptCandidates);
+        candidateIds.clear();
+        for (int id = 0; id < candidates.size(); id++) {
+            candidateIds.put(candidates.get(id), id);
+        }
+        return newHandle;
+    }
+
+    /**
+     * Returns the number of intervals stored.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bytes allocated for the interval columns, including the unused rest of the last chunk;
+     * the candidates are not included.
+     */
+    public long getAllocatedBytes() {
+        long entries = 0;
+        for (double[] chunk : vMin) {
+            entries += chunk.length;
+        }
+        return entries * INTERVAL_BYTES;
+    }
+
+    /**
+     * Drops all intervals and candidates at once.
+     */
+    public void release() {
+        vMin = new double[0][];
+        vMax = new double[0][];
+        score = new double[0][];
+        totalScore = new double[0][];
+        candidate = new int[0][];
+        predecessor = new int[0][];
+        size = 0;
+        candidates.clear();
+        candidateIds.clear();
+    }
+}
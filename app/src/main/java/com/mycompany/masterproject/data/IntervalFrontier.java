@@ -0,0 +1,206 @@
+package com.mycompany.masterproject.data;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * The speed intervals kept for one candidate: a frontier in which no interval dominates another.
+ *
+ * An interval A dominates B if A contains B ([lowA, highA] includes [lowB, highB]) and A has the same or
+ * a lower (better) total score, the sum of the scores along its chain of predecessors. The speed interval
+ * at the next point grows with the start interval, so any continuation of B is also one of A, at no higher
+ * cost, and B can be dropped. Equal intervals with equal total scores dominate each other, so only the
+ * first one is kept.
+ *
+ * The intervals are sorted by lower bound ascending, then upper bound descending, then total score. Every
+ * interval that can dominate a new one comes before its position in this order and every interval it can
+ * dominate comes after it. An insert is a binary search for the position, a scan of the intervals before
+ * it for a dominator, and a scan after it that ends at the first interval starting above the new upper bound.
+ *
+ * At most capacity intervals are kept. If an insert exceeds it, the interval with the highest total score
+ * is evicted, and among equal scores the narrowest one. Memory per candidate is therefore bounded by the
+ * capacity, and an insert takes O(log k + k) for k kept intervals.
+ *
+ * The frontier holds handles into an IntervalArena. An interval is only added to the arena if the frontier
+ * keeps it: dominated intervals, and at capacity an interval that would be evicted right away, are rejected
+ * before the arena is touched. Intervals evicted later stay in the arena, since later intervals may already
+ * point to them, until MatchHistory compacts it.
+ */
+public class IntervalFrontier {
+
+    private final IntervalArena arena;
+    private final int capacity;
+    private int[] handles;
+    private int size = 0;
+
+    IntervalFrontier(IntervalArena arena, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The frontier must be able to hold at least one interval.");
+        }
+        this.arena = arena;
+        this.capacity = capacity;
+        this.handles = new int[Math.min(capacity, 16)];
+    }
+
+    /**
+     * Adds the interval unless it is dominated, removing the intervals it dominates.
+     * Intervals with a NaN bound or a lower bound above the upper bound are not added.
+     *
+     * @return The handle of the interval if the frontier keeps it, IntervalArena.NONE otherwise.
+     */
+    int add(double low, double high, int predecessor, ClosestStreetResult candidate, double score) {
+        if (!(low <= high)) {
+            return IntervalArena.NONE;
+        }
+        double totalScore = arena.totalScore(predecessor, score);
+
+        int position = insertionPosition(low, high, totalScore);
+        for (int i = 0; i < position; i++) {
+            int existing = handles[i];
+            if (arena.getVMax(existing) >= high && arena.getTotalScore(existing) <= totalScore) {
+                return IntervalArena.NONE; // Dominated, the existing interval starts no higher
+            }
+        }
+
+        // Remove the intervals dominated by the new one. They start at or above low, and the scan ends
+        // at the first one starting above high, which cannot lie within [low, high]
+        int end = position;
+        int write = position;
+        while (end < size && arena.getVMin(handles[end]) <= high) {
+            int existing = handles[end++];
+            if (!(arena.getVMax(existing) <= high && arena.getTotalScore(existing) >= totalScore)) {
+                handles[write++] = existing;
+            }
+        }
+        System.arraycopy(handles, end, handles, write, size - end);
+        size -= end - write;
+
+        // At capacity one interval has to go. If it is the new one, the arena is not touched
+        if (size == capacity) {
+            int worst = worstIndex(position, high - low, totalScore);
+            if (worst == position) {
+                return IntervalArena.NONE;
+            }
+            int evicted = worst < position ? worst : worst - 1;
+            System.arraycopy(handles, evicted + 1, handles, evicted, size - evicted - 1);
+            size--;
+            if (evicted < position) {
+                position--;
+            }
+        }
+
+        if (size == handles.length) {
+            handles = Arrays.copyOf(handles, Math.min(2 * size, capacity));
+        }
+        System.arraycopy(handles, position, handles, position + 1, size - position);
+        int handle = arena.add(low, high, predecessor, candidate, score);
+        handles[position] = handle;
+        size++;
+        return handle;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bytes allocated for the handles of the frontier.
+     */
+    long getAllocatedBytes() {
+        return (long) handles.length * Integer.BYTES;
+    }
+
+    /**
+     * Returns the handle of the k-th interval in the order of the frontier.
+     */
+    public int get(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("Interval " + k + " of " + size);
+        }
+        return handles[k];
+    }
+
+    /**
+     * Removes the intervals for which keep is false.
+     *
+     * @return The number of removed intervals.
+     */
+    int retain(IntPredicate keep) {
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            if (keep.test(handles[read])) {
+                handles[write++] = handles[read];
+            }
+        }
+        int removed = size - write;
+        size = write;
+        return removed;
+    }
+
+    /**
+     * Translates the handles after IntervalArena.compact.
+     */
+    void remap(int[] newHandle) {
+        for (int k = 0; k < size; k++) {
+            handles[k] = newHandle[handles[k]];
+        }
+    }
+
+    // Index of the first interval ordered after the given bounds and total score
+    private int insertionPosition(double low, double high, double totalScore) {
+        int lowIndex = 0;
+        int highIndex = size;
+        while (lowIndex < highIndex) {
+            int mid = (lowIndex + highIndex) >>> 1;
+            if (compare(handles[mid], low, high, totalScore) <= 0) {
+                lowIndex = mid + 1;
+            } else {
+                highIndex = mid;
+            }
+        }
+        return lowIndex;
+    }
+
+    private int compare(int handle, double low, double high, double totalScore) {
+        int byLow = Double.compare(arena.getVMin(handle), low);
+        if (byLow != 0) {
+            return byLow;
+        }
+        int byHigh = Double.compare(high, arena.getVMax(handle));
+        if (byHigh != 0) {
+            return byHigh;
+        }
+        return Double.compare(arena.getTotalScore(handle), totalScore);
+    }
+
+    // Highest total score, and among those the narrowest interval (the last one in the order on a full tie),
+    // of the kept intervals together with a new interval at the given position
+    private int worstIndex(int position, double newWidth, double newTotalScore) {
+        int worst = -1;
+        double worstScore = 0;
+        double worstWidth = 0;
+        for (int i = 0; i <= size; i++) {
+            double score;
+            double width;
+            if (i == position) {
+                score = newTotalScore;
+                width = newWidth;
+            } else {
+                int handle = handles[i < position ? i : i - 1];
+                score = arena.getTotalScore(handle);
+                width = width(handle);
+            }
+            int byScore = worst < 0 ? 1 : Double.compare(score, worstScore);
+            if (byScore > 0 || (byScore == 0 && width <= worstWidth)) {
+                worst = i;
+                worstScore = score;
+                worstWidth = width;
+            }
+        }
+        return worst;
+    }
+
+    private double width(int handle) {
+        return arena.getVMax(handle) - arena.getVMin(handle);
+    }
+}
@@ -0,0 +1,234 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the interval history of a long trajectory bounded.
+ *
+ * Fixed-lag commit: once the intervals of a point are complete, the point lag steps back is decided. The
+ * ancestor there of the best live interval (lowest total score) becomes the anchor. Its own ancestors are
+ * appended to the committed path and cut off, and live intervals that do not descend from the anchor are
+ * dropped, since they disagree with what has been committed. This is lossy: the dropped intervals may be the
+ * only ones that reach later points. A lag of 0 disables committing.
+ *
+ * Compaction: the arena only grows, and intervals that were evicted from a frontier or pruned by a commit,
+ * together with ancestors that no live interval reaches any more, are dead. When the arena has doubled
+ * since the last compaction, the intervals reachable from the live frontiers are compacted and the rest is
+ * freed, which keeps memory proportional to the live frontiers and the lag.
+ *
+ * Commit on agreement (optional): when the chains of all live intervals meet in one interval, every point up
+ * to and including that one is decided whatever comes next. It is committed right away instead of lag points
+ * later, and the chains are cut below it. For live streams this emits points as early as possible.
+ *
+ * Every interval has the interval of the previous point as its predecessor, so the ancestor lag points back
+ * is found by following lag predecessors. The full path of a live interval is the committed path followed by
+ * its chain. A stream can take the committed points out with drainCommittedPath, so that the committed path
+ * does not grow with the stream either.
+ */
+public class MatchHistory {
+
+    private static final int MIN_COMPACTION_SIZE = 1 << 16;
+
+    private final IntervalArena arena;
+    private final int lag;
+    private final List<ClosestStreetResult> committedPath = new ArrayList<>();
+    private double committedScore = 0;
+    private long committedPoints = 0;
+    private boolean commitOnAgreement = false;
+    private int compactionSize = MIN_COMPACTION_SIZE;
+    private int[] liveHandles = new int[64];
+    private int[] heads = new int[64];
+
+    private int commits = 0;
+    private int agreements = 0;
+    private int compactions = 0;
+    private long prunedIntervals = 0;
+    private long freedIntervals = 0;
+
+    /**
+     * @param arena The arena holding the intervals of the trajectory.
+     * @param lag   Number of points between the newest point and the committed one, 0 to never commit.
+     */
+    public MatchHistory(IntervalArena arena, int lag) {
+        if (lag < 0) {
+            throw new IllegalArgumentException("The commit lag must not be negative.");
+        }
+        this.arena = arena;
+        this.lag = lag;
+    }
+
+    /**
+     * Commits and compacts after the intervals of a point are complete. Earlier points must no longer be
+     * used, since their handles are not translated by a compaction.
+     *
+     * @param current The point whose intervals are complete.
+     * @param index   Index of the point in the trajectory.
+     */
+    public void step(DataPoint current, int index) {
+        if (lag > 0 && index >= lag) {
+            commit(current);
+        }
+        if (commitOnAgreement) {
+            commitAgreed(current);
+        }
+        if (arena.size() >= compactionSize) {
+            compact(current);
+        }
+    }
+
+    private void commit(DataPoint current) {
+        int best = IntervalArena.NONE;
+        for (CandidateData candidate : current.getAllCandidates()) {
+            if (candidate == null) {
+                continue;
+            }
+            IntervalFrontier intervals = candidate.getIntervals();
+            for (int k = 0; k < intervals.size(); k++) {
+                int interval = intervals.get(k);
+                if (best == IntervalArena.NONE || arena.getTotalScore(interval) < arena.getTotalScore(best)) {
+                    best = interval;
+                }
+            }
+        }
+        if (best == IntervalArena.NONE) {
+            return; // Nothing live, the matching has failed at this point
+        }
+        int anchor = ancestor(best, lag);
+        if (anchor == IntervalArena.NONE) {
+            return; // The chains were cut closer than lag points back by an agreement
+        }
+
+        // Commit everything before the anchor
+        commitChain(arena.getPredecessor(anchor));
+        arena.cut(anchor);
+        commits++;
+
+        for (CandidateData candidate : current.getAllCandidates()) {
+            if (candidate != null) {
+                prunedIntervals += candidate.getIntervals().retain(interval -> ancestor(interval, lag) == anchor);
+            }
+        }
+    }
+
+    // Commits the interval and its ancestors, oldest first
+    private void commitChain(int last) {
+        List<ClosestStreetResult> newlyCommitted = new ArrayList<>();
+        for (int interval = last; interval != IntervalArena.NONE; interval = arena.getPredecessor(interval)) {
+            newlyCommitted.add(arena.getCandidate(interval));
+            committedScore += arena.getScore(interval);
+        }
+        Collections.reverse(newlyCommitted);
+        committedPath.addAll(newlyCommitted);
+        committedPoints += newlyCommitted.size();
+    }
+
+    // Follows all live chains back in step, from the previous point on, until they meet. The intervals
+    // one point after the meeting interval are collected in liveHandles and cut from it.
+    private void commitAgreed(DataPoint current) {
+        int count = collectLive(current);
+        if (count == 0) {
+            return;
+        }
+        if (heads.length < count) {
+            heads = new int[liveHandles.length];
+        }
+        while (true) {
+            boolean met = true;
+            for (int k = 0; k < count; k++) {
+                heads[k] = arena.getPredecessor(liveHandles[k]);
+                if (heads[k] == IntervalArena.NONE) {
+                    return; // The chains start at different intervals
+                }
+                met &= heads[k] == heads[0];
+            }
+            if (met) {
+                break;
+            }
+            System.arraycopy(heads, 0, liveHandles, 0, count);
+        }
+        commitChain(heads[0]);
+        for (int k = 0; k < count; k++) {
+            arena.cut(liveHandles[k]);
+        }
+        agreements++;
+    }
+
+    private int ancestor(int interval, int steps) {
+        for (int k = 0; k < steps && interval != IntervalArena.NONE; k++) {
+            interval = arena.getPredecessor(interval);
+        }
+        return interval;
+    }
+
+    // Collects the handles of the live intervals of the point in liveHandles
+    private int collectLive(DataPoint current) {
+        int count = 0;
+        for (CandidateData candidate : current.getAllCandidates()) {
+            if (candidate == null) {
+                continue;
+            }
+            IntervalFrontier intervals = candidate.getIntervals();
+            for (int k = 0; k < intervals.size(); k++) {
+                if (count == liveHandles.length) {
+                    liveHandles = Arrays.copyOf(liveHandles, 2 * count);
+                }
+                liveHandles[count++] = intervals.get(k);
+            }
+        }
+        return count;
+    }
+
+    private void compact(DataPoint current) {
+        int count = collectLive(current);
+        int before = arena.size();
+        int[] newHandle = arena.compact(liveHandles, count);
+        for (CandidateData candidate : current.getAllCandidates()) {
+            if (candidate != null) {
+                candidate.getIntervals().remap(newHandle);
+            }
+        }
+        freedIntervals += before - arena.size();
+        compactions++;
+        compactionSize = Math.max(MIN_COMPACTION_SIZE, 2 * arena.size());
+    }
+
+    /**
+     * Enables committing as soon as all live chains meet (see above).
+     */
+    public void setCommitOnAgreement(boolean commitOnAgreement) {
+        this.commitOnAgreement = commitOnAgreement;
+    }
+
+    /**
+     * Returns the committed points that were not drained before, and removes them from the committed path.
+     * The committed score still includes them.
+     */
+    public List<ClosestStreetResult> drainCommittedPath() {
+        List<ClosestStreetResult> drained = new ArrayList<>(committedPath);
+        committedPath.clear();
+        return drained;
+    }
+
+    /**
+     * Returns the candidates of the committed points that were not drained, in order.
+     */
+    public List<ClosestStreetResult> getCommittedPath() {
+        return committedPath;
+    }
+
+    /**
+     * Returns the sum of the scores of the committed points.
+     */
+    public double getCommittedScore() {
+        return committedScore;
+    }
+
+    @Override
+    public String toString() {
+        return commits + " commits, " + agreements + " agreements (" + committedPoints + " points, " + prunedIntervals + " intervals pruned), "
+                + compactions + " compactions (" + freedIntervals + " intervals freed)";
+    }
+}
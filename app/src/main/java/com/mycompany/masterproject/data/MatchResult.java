@@ -0,0 +1,182 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mycompany.masterproject.util.WitnessReconstructor;
+
+/**
+ * The result of ConsistencyMatcher.match for one trajectory: the intervals that survived at the last point,
+ * each of which stands for a physically consistent path, and counters of the work done.
+ *
+ * The intervals are handles into the arena of the matching. The full path of an interval is the committed
+ * path of the history followed by the chain of its predecessors.
+ *
+ * With a non-zero commit lag the intervals that disagreed with the committed chain were dropped during the
+ * matching, so a trajectory with a consistent path can end without surviving intervals, and the surviving
+ * intervals only cover the paths through the committed chain. With the default lag of 0 nothing is dropped.
+ */
+public class MatchResult {
+
+    /**
+     * Counters of one matching.
+     */
+    public static class Stats {
+        int points;
+        long uFunctionBuilds;
+        long uFunctionLookups;
+        int filteredRoutes;
+        int filteredIntervals;
+        int storedIntervals;
+        String history = "";
+        long candidateNanos;
+        long matchNanos;
+
+        public int getPoints() {
+            return points;
+        }
+
+        public long getUFunctionBuilds() {
+            return uFunctionBuilds;
+        }
+
+        public long getUFunctionLookups() {
+            return uFunctionLookups;
+        }
+
+        /**
+         * Routes rejected by their lower bound on the travel time.
+         */
+        public int getFilteredRoutes() {
+            return filteredRoutes;
+        }
+
+        /**
+         * Interval evaluations saved by the rejected routes.
+         */
+        public int getFilteredIntervals() {
+            return filteredIntervals;
+        }
+
+        public int getStoredIntervals() {
+            return storedIntervals;
+        }
+
+        /**
+         * Commit and compaction counters of the MatchHistory.
+         */
+        public String getHistory() {
+            return history;
+        }
+
+        public long getCandidateNanos() {
+            return candidateNanos;
+        }
+
+        public long getMatchNanos() {
+            return matchNanos;
+        }
+    }
+
+    private final IntervalArena arena;
+    private final int[] finalIntervals;
+    private final List<ClosestStreetResult> committedPath;
+    private final double committedScore;
+    private final int failedIndex;
+    private final Stats stats;
+
+    MatchResult(IntervalArena arena, int[] finalIntervals, List<ClosestStreetResult> committedPath, double committedScore,
+                int failedIndex, Stats stats) {
+        this.arena = arena;
+        this.finalIntervals = finalIntervals;
+        this.committedPath = committedPath;
+        this.committedScore = committedScore;
+        this.failedIndex = failedIndex;
+        this.stats = stats;
+    }
+
+    /**
+     * Returns whether at least one interval survived to the last point.
+     */
+    public boolean isValid() {
+        return finalIntervals.length > 0;
+    }
+
+    /**
+     * Returns the index of the point after which no interval survived, or -1.
+     */
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+
+    /**
+     * Returns the number of surviving intervals.
+     */
+    public int size() {
+        return finalIntervals.length;
+    }
+
+    /**
+     * Returns the arena handle of the k-th surviving interval.
+     */
+    public int getInterval(int k) {
+        return finalIntervals[k];
+    }
+
+    public IntervalArena getArena() {
+        return arena;
+    }
+
+    public List<ClosestStreetResult> getCommittedPath() {
+        return Collections.unmodifiableList(committedPath);
+    }
+
+    public double getCommittedScore() {
+        return committedScore;
+    }
+
+    /**
+     * Returns the candidates of every point on the path of the k-th surviving interval.
+     */
+    public List<ClosestStreetResult> getPath(int k) {
+        List<ClosestStreetResult> path = new ArrayList<>(committedPath);
+        path.addAll(new WitnessReconstructor().reconstructPath(arena, finalIntervals[k]));
+        return path;
+    }
+
+    /**
+     * Returns the score of the path of the k-th surviving interval (lower is better).
+     */
+    public double getScore(int k) {
+        double score = committedScore;
+        for (int interval = finalIntervals[k]; interval != IntervalArena.NONE; interval = arena.getPredecessor(interval)) {
+            score += arena.getScore(interval);
+        }
+        return score;
+    }
+
+    /**
+     * Returns the index of the surviving interval with the lowest score, or -1 if none survived.
+     */
+    public int getBest() {
+        int best = -1;
+        for (int k = 0; k < finalIntervals.length; k++) {
+            if (best < 0 || getScore(k) < getScore(best)) {
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Drops the intervals of the matching. Paths and scores are not available afterwards.
+     */
+    public void release() {
+        arena.release();
+    }
+}
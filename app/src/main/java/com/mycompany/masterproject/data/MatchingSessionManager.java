@@ -0,0 +1,442 @@
+package com.mycompany.masterproject.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import com.mycompany.masterproject.gpx.GPXLoader;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+import com.mycompany.masterproject.grid.StreetGridBuilder;
+
+/**
+ * Live matching of the interleaved positions of many vehicles. Every position is routed by its vehicle id
+ * to an OnlineMatcher session; all sessions share one ConsistencyMatcher and thereby one graph and street
+ * index. A session is opened by the first position of a vehicle.
+ *
+ * A session is closed when its vehicle sent nothing for the idle timeout, when more than the maximum number
+ * of sessions are open (the least recently active one is closed), or by close. Closing finishes the session,
+ * and the positions it still emits are handed to the listener given on construction. A later position of
+ * the vehicle opens a new session.
+ *
+ * The manager can be used from several threads; positions of one vehicle must arrive in time order. The
+ * CPU time spent in every session and the memory allocated for its intervals, route profiles and frontiers
+ * are accounted and reported.
+ */
+public class MatchingSessionManager {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+
+    /**
+     * A snapshot of the counters of one open session.
+     */
+    public static class SessionStats {
+        private final String vehicleId;
+        private final long points;
+        private final long emitted;
+        private final int restarts;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+        private final long peakAllocatedBytes;
+        private final long idleMillis;
+
+        SessionStats(Session session, long idleMillis) {
+            this.vehicleId = session.vehicleId;
+            this.points = session.online.getPoints();
+            this.emitted = session.online.getEmitted();
+            this.restarts = session.online.getRestarts();
+            this.cpuNanos = session.cpuNanos;
+            this.allocatedBytes = session.online.getAllocatedBytes();
+            this.peakAllocatedBytes = session.peakAllocatedBytes;
+            this.idleMillis = idleMillis;
+        }
+
+        public String getVehicleId() {
+            return vehicleId;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+
+        public long getEmitted() {
+            return emitted;
+        }
+
+        public long getPending() {
+            return points - emitted;
+        }
+
+        public int getRestarts() {
+            return restarts;
+        }
+
+        /**
+         * CPU time of the threads while they matched positions of this session (wall time if the JVM does
+         * not measure thread CPU time).
+         */
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getPeakAllocatedBytes() {
+            return peakAllocatedBytes;
+        }
+
+        public long getIdleMillis() {
+            return idleMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d points, %d pending, %d restarts, %.1f ms CPU, %d KB (peak %d KB), idle %d ms",
+                    vehicleId, points, getPending(), restarts, cpuNanos / 1_000_000.0, allocatedBytes / 1024,
+                    peakAllocatedBytes / 1024, idleMillis);
+        }
+    }
+
+    // lastActive is guarded by the sessions map, the rest by the session itself
+    private static final class Session {
+        final String vehicleId;
+        final OnlineMatcher online;
+        long lastActive;
+        long cpuNanos = 0;
+        long peakAllocatedBytes = 0;
+        boolean closed = false;
+
+        Session(String vehicleId, OnlineMatcher online) {
+            this.vehicleId = vehicleId;
+            this.online = online;
+        }
+    }
+
+    private final ConsistencyMatcher matcher;
+    private final int maxSessions;
+    private final long idleTimeoutMillis;
+    private final LongSupplier clock;
+    private final BiConsumer<String, List<ClosestStreetResult>> closedSessions;
+
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true); // Access order
+    private long opened = 0;
+    private long idleEvictions = 0;
+    private long capacityEvictions = 0;
+
+    // Totals of the closed sessions, guarded by the sessions map
+    private long closedPoints = 0;
+    private long closedCpuNanos = 0;
+
+    /**
+     * @param matcher           The matcher shared by all sessions.
+     * @param maxSessions       The maximum number of open sessions.
+     * @param idleTimeoutMillis Time without a position after which a session is closed.
+     * @param closedSessions    Receives the vehicle id and the last emitted positions of every closed session,
+     *                          or null.
+     */
+    public MatchingSessionManager(ConsistencyMatcher matcher, int maxSessions, long idleTimeoutMillis,
+                                  BiConsumer<String, List<ClosestStreetResult>> closedSessions) {
+        this(matcher, maxSessions, idleTimeoutMillis, closedSessions, System::currentTimeMillis);
+    }
+
+    MatchingSessionManager(ConsistencyMatcher matcher, int maxSessions, long idleTimeoutMillis,
+                           BiConsumer<String, List<ClosestStreetResult>> closedSessions, LongSupplier clock) {
+        if (matcher == null) {
+            throw new IllegalArgumentException("A session manager needs a matcher.");
+        }
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("At least one session must be allowed.");
+        }
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("The idle timeout must not be negative.");
+        }
+        this.matcher = matcher;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.closedSessions = closedSessions;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds the next position of a vehicle, opening a session for it if needed.
+     *
+     * @return The matched positions of this vehicle decided by the position, in order, possibly none.
+     */
+    public List<ClosestStreetResult> add(String vehicleId, TimedGeoPosition position) {
+        List<Session> evicted = new ArrayList<>();
+        try {
+            while (true) {
+                Session session;
+                synchronized (sessions) {
+                    long now = clock.getAsLong();
+                    collectIdle(now, evicted);
+                    session = sessions.get(vehicleId);
+                    if (session == null) {
+                        session = new Session(vehicleId, matcher.startOnline(vehicleId));
+                        sessions.put(vehicleId, session);
+                        opened++;
+                        if (sessions.size() > maxSessions) {
+                            Iterator<Session> eldest = sessions.values().iterator();
+                            evicted.add(eldest.next());
+                            eldest.remove();
+                            capacityEvictions++;
+                        }
+                    }
+                    session.lastActive = now;
+                }
+                synchronized (session) {
+                    if (!session.closed) {
+                        long startTime = cpuTime();
+                        try {
+                            return session.online.add(position);
+                        } finally {
+                            session.cpuNanos += cpuTime() - startTime;
+                            session.peakAllocatedBytes = Math.max(session.peakAllocatedBytes, session.online.getAllocatedBytes());
+                        }
+                    }
+                }
+                // The session was closed by another thread in between, a new one is opened
+            }
+        } finally {
+            close(evicted);
+        }
+    }
+
+    /**
+     * Closes the sessions that were idle for longer than the timeout. Positions close idle sessions as well,
+     * this is for times when none arrive.
+     */
+    public void evictIdle() {
+        List<Session> evicted = new ArrayList<>();
+        synchronized (sessions) {
+            collectIdle(clock.getAsLong(), evicted);
+        }
+        close(evicted);
+    }
+
+    // The least recently active sessions come first, so the idle ones are a prefix of the map
+    private void collectIdle(long now, List<Session> evicted) {
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            if (now - session.lastActive <= idleTimeoutMillis) {
+                break;
+            }
+            iterator.remove();
+            evicted.add(session);
+            idleEvictions++;
+        }
+    }
+
+    /**
+     * Closes the session of a vehicle, if it has one.
+     */
+    public void close(String vehicleId) {
+        Session session;
+        synchronized (sessions) {
+            session = sessions.remove(vehicleId);
+        }
+        if (session != null) {
+            close(List.of(session));
+        }
+    }
+
+    /**
+     * Closes all sessions.
+     */
+    public void closeAll() {
+        List<Session> all;
+        synchronized (sessions) {
+            all = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        close(all);
+    }
+
+    // Finishes sessions already removed from the map and hands their last positions to the listener
+    private void close(List<Session> closing) {
+        for (Session session : closing) {
+            List<ClosestStreetResult> decided;
+            synchronized (session) {
+                if (session.closed) {
+                    continue;
+                }
+                session.closed = true;
+                long startTime = cpuTime();
+                decided = session.online.finish();
+                session.cpuNanos += cpuTime() - startTime;
+            }
+            synchronized (sessions) {
+                closedPoints += session.online.getPoints();
+                closedCpuNanos += session.cpuNanos;
+            }
+            if (closedSessions != null) {
+                closedSessions.accept(session.vehicleId, decided);
+            }
+        }
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Returns the number of open sessions.
+     */
+    public int size() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    /**
+     * Returns snapshots of the open sessions, least recently active first.
+     */
+    public List<SessionStats> getSessionStats() {
+        List<Session> open;
+        long[] idleMillis;
+        synchronized (sessions) {
+            open = new ArrayList<>(sessions.values());
+            long now = clock.getAsLong();
+            idleMillis = open.stream().mapToLong(session -> now - session.lastActive).toArray();
+        }
+        List<SessionStats> stats = new ArrayList<>();
+        for (int k = 0; k < open.size(); k++) {
+            Session session = open.get(k);
+            synchronized (session) {
+                if (!session.closed) {
+                    stats.add(new SessionStats(session, idleMillis[k]));
+                }
+            }
+        }
+        return stats;
+    }
+
+    public long getOpened() {
+        synchronized (sessions) {
+            return opened;
+        }
+    }
+
+    public long getIdleEvictions() {
+        synchronized (sessions) {
+            return idleEvictions;
+        }
+    }
+
+    public long getCapacityEvictions() {
+        synchronized (sessions) {
+            return capacityEvictions;
+        }
+    }
+
+    /**
+     * Returns the totals of all sessions and the open sessions that used the most CPU time.
+     */
+    public String report(int top) {
+        List<SessionStats> stats = getSessionStats();
+        long points = 0;
+        long pending = 0;
+        long cpuNanos = 0;
+        long allocatedBytes = 0;
+        for (SessionStats session : stats) {
+            points += session.getPoints();
+            pending += session.getPending();
+            cpuNanos += session.getCpuNanos();
+            allocatedBytes += session.getAllocatedBytes();
+        }
+        StringBuilder report = new StringBuilder();
+        synchronized (sessions) {
+            report.append(String.format("%d open sessions (%d opened, %d closed idle, %d closed for capacity), "
+                    + "%d points (%d pending), %.1f ms CPU, %d KB of intervals", stats.size(), opened, idleEvictions,
+                    capacityEvictions, points + closedPoints, pending, (cpuNanos + closedCpuNanos) / 1_000_000.0,
+                    allocatedBytes / 1024));
+        }
+        stats.sort(Comparator.comparingLong(SessionStats::getCpuNanos).reversed());
+        for (SessionStats session : stats.subList(0, Math.min(top, stats.size()))) {
+            report.append("\n  ").append(session);
+        }
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return report(0);
+    }
+
+    /**
+     * Replays the GPX tracks of a directory as the interleaved positions of many vehicles, each driving one of
+     * the tracks, and reports the sessions. Time is the replayed time of the positions.
+     * Usage: MatchingSessionManager [graph.jsonl] [gpx directory or file] [vehicles] [max sessions] [idle timeout s]
+     */
+    public static void main(String[] args) throws IOException {
+        String graphPath = args.length > 0 ? args[0] : "./input/graph.jsonl";
+        Path input = Path.of(args.length > 1 ? args[1] : "./TestData");
+        int vehicles = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int maxSessions = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        long idleTimeout = args.length > 4 ? Long.parseLong(args[4]) * 1000 : 60_000;
+
+        Graph graph = new Graph();
+        graph.readFromJsonl(graphPath);
+        List<List<TimedGeoPosition>> tracks = new ArrayList<>();
+        try (Stream<Path> files = Files.isDirectory(input) ? Files.list(input) : Stream.of(input)) {
+            for (Path file : (Iterable<Path>) files.filter(path -> path.toString().toLowerCase().endsWith(".gpx"))::iterator) {
+                GPXData gpxData = new GPXLoader().loadGPXTrack(new File(file.toString()));
+                if (gpxData != null && !gpxData.getTrackPoints().isEmpty()) {
+                    tracks.add(gpxData.getTrackPoints());
+                }
+            }
+        }
+        if (tracks.isEmpty()) {
+            System.err.println("No GPX tracks in " + input);
+            return;
+        }
+
+        // Vehicle v drives track v mod n, started v seconds after the first vehicle
+        List<long[]> events = new ArrayList<>(); // Replayed time, vehicle, point index
+        for (int vehicle = 0; vehicle < vehicles; vehicle++) {
+            List<TimedGeoPosition> track = tracks.get(vehicle % tracks.size());
+            long offset = vehicle * 1000L - track.get(0).getTimestamp();
+            for (int k = 0; k < track.size(); k++) {
+                events.add(new long[] { track.get(k).getTimestamp() + offset, vehicle, k });
+            }
+        }
+        events.sort(Comparator.comparingLong(event -> event[0]));
+
+        ConsistencyMatcher matcher = new ConsistencyMatcher(graph, StreetGridBuilder.fromGraph(graph, StreetGridBuilder.DEFAULT_CELL_SIZE),
+                new ConsistencyMatcher.Config().setParallelLookup(false));
+        long[] replayedTime = new long[1];
+        long[] emitted = new long[1];
+        MatchingSessionManager manager = new MatchingSessionManager(matcher, maxSessions, idleTimeout,
+                (vehicle, decided) -> emitted[0] += decided.size(), () -> replayedTime[0]);
+
+        long startTime = System.nanoTime();
+        for (long[] event : events) {
+            replayedTime[0] = event[0];
+            int vehicle = (int) event[1];
+            TimedGeoPosition point = tracks.get(vehicle % tracks.size()).get((int) event[2]);
+            TimedGeoPosition position = new TimedGeoPosition(point.getPosition(), event[0]);
+            int decided = manager.add("vehicle-" + vehicle, position).size(); // Closed sessions count into emitted meanwhile
+            emitted[0] += decided;
+        }
+        System.out.println(manager.report(5));
+        manager.closeAll();
+        long endTime = System.nanoTime();
+        System.out.printf("%d positions of %d vehicles in %.1f ms, %.0f positions/s, %d emitted%n", events.size(), vehicles,
+                (endTime - startTime) / 1_000_000.0, events.size() / ((endTime - startTime) / 1e9), emitted[0]);
+    }
+}
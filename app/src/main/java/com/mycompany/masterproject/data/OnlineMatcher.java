@@ -0,0 +1,221 @@
+package com.mycompany.masterproject.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mycompany.masterproject.gpx.GPXLoader;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+import com.mycompany.masterproject.grid.StreetGridBuilder;
+import com.mycompany.masterproject.util.WitnessReconstructor;
+
+/**
+ * Incremental matching of a live stream of positions of one vehicle. Positions are added one at a time;
+ * each is snapped to its candidates and advances the intervals by one step, as ConsistencyMatcher.match
+ * does for a whole trajectory.
+ *
+ * A matched position is emitted as soon as it is decided: when the chains of all surviving intervals meet
+ * in it, or when it lies the commit lag of the configuration behind the newest position (see MatchHistory).
+ * Emitted positions are handed out and not kept, and the interval arena is compacted, so memory stays
+ * bounded however long the stream runs; with a commit lag of 0, the default of the configuration, only
+ * agreement emits, and memory is then only bounded if the intervals keep agreeing. A stream that must run
+ * in bounded memory therefore sets a lag with Config.setCommitLag.
+ *
+ * If no interval reaches a new position, the best path up to the previous position is emitted and the
+ * matching starts over at the new position with the initial speed interval. finish ends the stream and
+ * emits the best path of the positions not emitted yet. A matcher is used by one thread at a time.
+ */
+public class OnlineMatcher {
+
+    private final ConsistencyMatcher matcher;
+    private final int candidates;
+    private final String name;
+    private ConsistencyMatcher.MatchState state;
+
+    private long points = 0;
+    private long emitted = 0;
+    private int restarts = 0;
+
+    OnlineMatcher(ConsistencyMatcher matcher, String name) {
+        this.matcher = matcher;
+        this.name = name;
+        this.candidates = matcher.getConfig().getCandidates();
+    }
+
+    /**
+     * Adds the next position of the stream. Positions must arrive in time order.
+     *
+     * @return The matched positions decided by this position, in order, possibly none.
+     */
+    public List<ClosestStreetResult> add(TimedGeoPosition position) {
+        if (state != null && position.getTimestamp() < state.current.getPosition().getTimestamp()) {
+            throw new IllegalArgumentException("Positions must be added in time order.");
+        }
+        List<ClosestStreetResult> streets = matcher.getStreetIndex().findClosestStreets(position, candidates);
+        List<ClosestStreetResult> decided = new ArrayList<>();
+        if (streets.isEmpty()) {
+            return decided; // No street nearby, the position is skipped
+        }
+        points++;
+
+        if (state == null) {
+            start(position, streets);
+        } else if (!state.step(position, withPointIndex(streets, state.index + 1))) {
+            // Nothing reaches the new position: end the current path and start over
+            decided.addAll(bestRemainder());
+            restarts++;
+            start(position, streets);
+        }
+        List<ClosestStreetResult> committed = state.history.drainCommittedPath();
+        decided.addAll(committed);
+        emitted += decided.size();
+        return decided;
+    }
+
+    /**
+     * Ends the stream: emits the best path through the positions that were not emitted yet and drops the state.
+     * Further positions start a new stream.
+     */
+    public List<ClosestStreetResult> finish() {
+        if (state == null) {
+            return new ArrayList<>();
+        }
+        List<ClosestStreetResult> decided = bestRemainder();
+        emitted += decided.size();
+        endState();
+        return decided;
+    }
+
+    // The not yet emitted part of the best path at the newest position
+    private List<ClosestStreetResult> bestRemainder() {
+        List<ClosestStreetResult> remainder = new ArrayList<>(state.history.drainCommittedPath());
+        int best = IntervalArena.NONE;
+        for (int interval : state.liveIntervals()) {
+            if (best == IntervalArena.NONE || state.arena.getTotalScore(interval) < state.arena.getTotalScore(best)) {
+                best = interval;
+            }
+        }
+        if (best != IntervalArena.NONE) {
+            remainder.addAll(new WitnessReconstructor().reconstructPath(state.arena, best));
+        }
+        return remainder;
+    }
+
+    private void start(TimedGeoPosition position, List<ClosestStreetResult> streets) {
+        if (state != null) {
+            endState();
+        }
+        state = matcher.new MatchState(name);
+        state.history.setCommitOnAgreement(true);
+        state.start(position, withPointIndex(streets, 0));
+    }
+
+    private void endState() {
+        state.finishTrace(state.liveIntervals().length);
+        state.arena.release();
+        state = null;
+    }
+
+    // Candidates are told apart by their point index within the matching, like those of a CandidateTable
+    private static List<ClosestStreetResult> withPointIndex(List<ClosestStreetResult> streets, int pointIndex) {
+        for (ClosestStreetResult street : streets) {
+            street.setPointIndex(pointIndex);
+        }
+        return streets;
+    }
+
+    /**
+     * Returns the number of positions added (with candidates).
+     */
+    public long getPoints() {
+        return points;
+    }
+
+    /**
+     * Returns the number of matched positions emitted.
+     */
+    public long getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * Returns the number of positions added but not emitted yet.
+     */
+    public long getPending() {
+        return points - emitted;
+    }
+
+    /**
+     * Returns how often the matching started over because no interval reached a position.
+     */
+    public int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Returns the number of intervals currently stored, a measure of the memory held by the stream.
+     */
+    public int getStoredIntervals() {
+        return state != null ? state.arena.size() : 0;
+    }
+
+    /**
+     * Returns the bytes allocated for the intervals, route profiles and frontiers of the stream (array
+     * contents, see IntervalArena.getAllocatedBytes).
+     */
+    public long getAllocatedBytes() {
+        return state != null ? state.getAllocatedBytes() : 0;
+    }
+
+    @Override
+    public String toString() {
+        String history = state != null ? state.history.toString() : "idle";
+        return points + " positions, " + emitted + " emitted, " + getPending() + " pending, " + restarts + " restarts, "
+                + getStoredIntervals() + " intervals stored, history: " + history;
+    }
+
+    /**
+     * Replays a GPX track as a live stream and reports how far the emitted positions lag behind, then
+     * compares the emitted path with the best path of ConsistencyMatcher.match on the whole track.
+     * Usage: OnlineMatcher [graph.jsonl] [gpx file] [commit lag]
+     */
+    public static void main(String[] args) throws IOException {
+        String graphPath = args.length > 0 ? args[0] : "./input/graph.jsonl";
+        String gpxPath = args.length > 1 ? args[1] : "./TestData/test.gpx";
+        int lag = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        Graph graph = new Graph();
+        graph.readFromJsonl(graphPath);
+        GPXData gpxData = new GPXLoader().loadGPXTrack(new File(gpxPath));
+        if (gpxData == null) {
+            return;
+        }
+        ConsistencyMatcher matcher = new ConsistencyMatcher(graph, StreetGridBuilder.fromGraph(graph, StreetGridBuilder.DEFAULT_CELL_SIZE),
+                new ConsistencyMatcher.Config().setCommitLag(lag).setParallelLookup(false));
+
+        OnlineMatcher online = matcher.startOnline();
+        List<ClosestStreetResult> emitted = new ArrayList<>();
+        long maxPending = 0;
+        long pendingSum = 0;
+        long startTime = System.nanoTime();
+        for (TimedGeoPosition position : gpxData.getTrackPoints()) {
+            emitted.addAll(online.add(position));
+            maxPending = Math.max(maxPending, online.getPending());
+            pendingSum += online.getPending();
+        }
+        System.out.println("Before finish: " + online);
+        emitted.addAll(online.finish());
+        long endTime = System.nanoTime();
+        System.out.printf("%d positions in %.1f ms, %.1f us per position, pending %.1f on average, at most %d%n",
+                online.getPoints(), (endTime - startTime) / 1_000_000.0, (endTime - startTime) / 1000.0 / online.getPoints(),
+                (double) pendingSum / online.getPoints(), maxPending);
+
+        MatchResult result = matcher.match(gpxData);
+        if (result.isValid() && online.getRestarts() == 0) {
+            List<ClosestStreetResult> best = result.getPath(result.getBest());
+            System.out.println("Emitted path equals the best path of the whole track: " + best.equals(emitted));
+        }
+    }
+}
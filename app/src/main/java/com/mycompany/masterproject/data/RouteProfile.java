@@ -0,0 +1,161 @@
+package com.mycompany.masterproject.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The path segments of one route as primitive arrays, together with the U(x) functions built for it.
+ *
+ * U(x) depends on the route and the upper start speed only; the lower start speed just decides whether a
+ * witness exists (see UFunctionBuilder.buildUFunction). The intervals tracked for a candidate often share
+ * their upper bound, so the functions are cached by the exact bits of vStartMax and the acceleration, and
+ * every interval with a bound seen before reuses the function instead of building its own.
+ *
+ * A profile is meant to be loaded again for every route, which keeps its arrays and functions.
+ */
+class RouteProfile {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    double[] lengths = new double[INITIAL_CAPACITY];
+    double[] speedLimits = new double[INITIAL_CAPACITY];
+    int size = 0;
+
+    // Cached functions of the current route
+    private long[] startSpeedKeys = new long[INITIAL_CAPACITY];
+    private long[] accelerationKeys = new long[INITIAL_CAPACITY];
+    private double[] maxStartSpeedMins = new double[INITIAL_CAPACITY];
+    private UFunction[] functions = new UFunction[INITIAL_CAPACITY];
+    private int cachedFunctions = 0;
+
+    private long lookups = 0;
+    private long builds = 0;
+
+    public RouteProfile() {
+    }
+
+    public RouteProfile(List<PathSegment> pathSegments) {
+        load(pathSegments);
+    }
+
+    /**
+     * Replaces the route and drops the cached functions.
+     */
+    public void load(List<PathSegment> pathSegments) {
+        if (lengths.length < pathSegments.size()) {
+            lengths = new double[pathSegments.size()];
+            speedLimits = new double[pathSegments.size()];
+        }
+        for (int i = 0; i < pathSegments.size(); i++) {
+            lengths[i] = pathSegments.get(i).getLength();
+            speedLimits[i] = pathSegments.get(i).getSpeedLimit();
+        }
+        size = pathSegments.size();
+        cachedFunctions = 0;
+    }
+
+    /**
+     * Returns U(x) of this route for the start interval [vStartMin, vStartMax], building it only if no
+     * function for vStartMax and a has been built since the route was loaded. The function is owned by
+     * the profile and stays valid until the next load.
+     *
+     * @return U(x), or null if no valid witness exists.
+     */
+    public UFunction getUFunction(double vStartMin, double vStartMax, double a) {
+        lookups++;
+        long startSpeedKey = Double.doubleToLongBits(vStartMax);
+        long accelerationKey = Double.doubleToLongBits(a);
+        int index = 0;
+        while (index < cachedFunctions
+                && (startSpeedKeys[index] != startSpeedKey || accelerationKeys[index] != accelerationKey)) {
+            index++;
+        }
+        if (index == cachedFunctions) {
+            if (index == functions.length) {
+                int capacity = 2 * index;
+                startSpeedKeys = Arrays.copyOf(startSpeedKeys, capacity);
+                accelerationKeys = Arrays.copyOf(accelerationKeys, capacity);
+                maxStartSpeedMins = Arrays.copyOf(maxStartSpeedMins, capacity);
+                functions = Arrays.copyOf(functions, capacity);
+            }
+            if (functions[index] == null) {
+                functions[index] = new UFunction();
+            }
+            maxStartSpeedMins[index] = UFunctionBuilder.buildUFunction(this, vStartMax, a, functions[index]);
+            startSpeedKeys[index] = startSpeedKey;
+            accelerationKeys[index] = accelerationKey;
+            cachedFunctions++;
+            builds++;
+        }
+        double maxStartSpeedMin = maxStartSpeedMins[index];
+        if (Double.isNaN(maxStartSpeedMin) || maxStartSpeedMin < vStartMin) {
+            return null;
+        }
+        return functions[index];
+    }
+
+    /**
+     * Returns the bytes allocated for the route and its cached functions, which the profile keeps across loads.
+     * Array contents only, object headers are not counted.
+     */
+    long getAllocatedBytes() {
+        long bytes = (long) (lengths.length + speedLimits.length + maxStartSpeedMins.length) * Double.BYTES
+                + (long) (startSpeedKeys.length + accelerationKeys.length) * Long.BYTES
+                + (long) functions.length * Integer.BYTES;
+        for (UFunction function : functions) {
+            if (function != null) {
+                bytes += function.getAllocatedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns a lower bound on the time any witness needs for the route when starting at most at vStartMax.
+     * U(x) stays below the speed limits and below the curve sqrt(vStartMax^2 + 2 a x) of full acceleration
+     * from the start, so integrating 1/min of the two in one pass bounds the travel time along U(x) from
+     * below without building it. The bound is infinite if a segment has a speed limit of zero.
+     *
+     * @return The lower bound in seconds, or NaN for invalid input.
+     */
+    public double minTravelTime(double vStartMax, double a) {
+        double time = 0;
+        double x = 0;
+        double startSpeedSquared = vStartMax * vStartMax;
+        for (int i = 0; i < size; i++) {
+            double length = lengths[i];
+            double limit = speedLimits[i];
+            if (length <= 0) {
+                continue;
+            }
+            // Speed of full acceleration at the start and the end of the segment
+            double curveStart = Math.sqrt(startSpeedSquared + 2 * a * x);
+            double curveEnd = Math.sqrt(startSpeedSquared + 2 * a * (x + length));
+            if (curveEnd <= limit) {
+                time += (curveEnd - curveStart) / a;
+            } else if (curveStart >= limit) {
+                time += length / limit;
+            } else {
+                // The curve reaches the limit inside the segment
+                double limitX = (limit * limit - startSpeedSquared) / (2 * a);
+                time += (limit - curveStart) / a + (x + length - limitX) / limit;
+            }
+            x += length;
+        }
+        return time;
+    }
+
+    /**
+     * Returns how many functions were requested over all routes.
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Returns how many of the requested functions had to be built.
+     */
+    public long getBuilds() {
+        return builds;
+    }
+}
@@ -0,0 +1,184 @@
+package com.mycompany.masterproject.data;
+
+/**
+ * The map from a start speed interval [v_down, v_up] to the feasible speed interval at the end of a route,
+ * for one U(x) and time gap deltaT.
+ *
+ * v_up only enters through U(x), which RouteProfile already builds once per upper start speed. Given U(x),
+ * the minimum final speed does not depend on v_down at all, and the maximum final speed depends on it only
+ * through the max witness d(x), e(x), which consists of two pieces. Everything that scans U(x) — the travel
+ * time along it, its final speed, the curve e(x) and the minimum final speed — is therefore computed once
+ * per deltaT, and applying the map to a speed interval is constant time.
+ *
+ * The minimum final speed is computed on first use, since an interval may already fail on the maximum.
+ */
+class SpeedTransfer {
+
+    private final UFunction uFunction;
+
+    // Key of the prepared map
+    private double aDown;
+    private double aUp;
+    private double deltaT;
+
+    // Independent of v_down
+    private boolean feasible;          // U(x) can be driven within deltaT
+    private double L;
+    private double vU;                 // Final speed of U(x)
+    private double accelStartFinal;    // Start of e(x), the curve accelerating into vU at L
+    private double accelStartSpeed;
+    private boolean eReachesZero;
+    private boolean vDownFKnown;
+    private double vDownF;
+
+    SpeedTransfer(UFunction uFunction) {
+        this.uFunction = uFunction;
+    }
+
+    boolean isFor(double aDown, double aUp, double deltaT) {
+        return this.aDown == aDown && this.aUp == aUp && this.deltaT == deltaT;
+    }
+
+    /**
+     * Computes the parts of the map that only depend on U(x), the accelerations and deltaT.
+     */
+    void prepare(double aDown, double aUp, double deltaT) {
+        this.aDown = aDown;
+        this.aUp = aUp;
+        this.deltaT = deltaT;
+        vDownFKnown = false;
+
+        // Integrate 1/U(x) over the entire route and check feasibility with U(x)
+        feasible = uFunction.integrateOneOverU() <= deltaT;
+        if (!feasible) {
+            return;
+        }
+        L = uFunction.getLength();
+        vU = uFunction.getSpeed(L);
+
+        // e(x) on [accelStartFinal, L]
+        double accelStart = L + ((vU * vU) / (2 * aDown));
+        accelStartFinal = Math.max(0, accelStart);
+        accelStartSpeed = UFunction.calculateSpeedBackwards(accelStartFinal, L, vU, aUp);
+        eReachesZero = (accelStartSpeed == 0);
+    }
+
+    /**
+     * Computes the feasible speed interval [v_down_f, v_up_f] at the end of the route into result.
+     *
+     * @param vDown  The initial lower speed bound (v_down).
+     * @param result Array of length two that receives [v_down_f, v_up_f], or [NaN, NaN] if no feasible solution exists.
+     * @return       result
+     */
+    double[] apply(double vDown, double[] result) {
+        result[0] = Double.NaN;
+        result[1] = Double.NaN;
+        if (!feasible) {
+            return result;
+        }
+        double vUpF = computeVUpF(vDown);
+        if (!vDownFKnown) {
+            vDownF = computeVDownF();
+            vDownFKnown = true;
+        }
+        if (!Double.isNaN(vUpF) && !Double.isNaN(vDownF)) {
+            result[0] = vDownF;
+            result[1] = vUpF;
+        }
+        return result;
+    }
+
+    // Maximum final speed (v_up_f)
+    private double computeVUpF(double vDown) {
+        double vUpF = Double.NaN;
+
+        // Construct the auxiliary curve d(x) on [0, decelEndFinal]
+        double decelEnd = (Math.pow(vDown, 2) - Math.pow(0, 2)) / (2 * aUp);
+        double decelEndFinal = Math.min(L, decelEnd);
+
+        //Calculate the speed at the end of the deceleration segment
+        double decelSpeedCutoff = UFunction.calculateSpeedForwards(0, decelEndFinal, vDown, aDown);
+
+        boolean dReachesZero = (decelSpeedCutoff == 0);
+
+        // Check intersection of d(x) and e(x)
+        double intersectionPoint = UFunction.findIntersection(0, decelEndFinal, vDown, aDown, accelStartFinal, L, accelStartSpeed, aUp);
+
+        if (intersectionPoint >= 0 && intersectionPoint <= L) {
+
+            double T_max_de = uFunction.constructMaxWitness(vDown, aDown, aUp, intersectionPoint).integrateOneOverU();
+
+            if (T_max_de >= deltaT) {
+                vUpF = vU;
+            } else {
+                if (dReachesZero) {
+                    vUpF = uFunction.calculateVFinalUpFixed(vDown, aDown, aUp, deltaT, L, decelEndFinal);
+                } else {
+                    double T_d = UFunction.integrateOneOverPiece(UFunction.FunctionType.DECELERATION, 0, decelEndFinal, vDown, aDown);
+
+                    if (T_d > deltaT) {
+                        vUpF = uFunction.calculateVFinalUpFixed(vDown, aDown, aUp, deltaT, L, decelEndFinal);
+                    } else {//We don't have enough distance to slow down enough
+                        vUpF = Double.NaN;
+                    }
+                }
+            }
+        } else {//d(x) and e(x) do not intersect
+            if (dReachesZero && eReachesZero) {
+                // Case 1: Both curves reach zero
+                vUpF = vU;
+            } else if (UFunction.getSpeedOnCurve(accelStartFinal, L, accelStartSpeed, aUp, 0) > UFunction.getSpeedOnCurve(0, decelEndFinal, vDown, aDown, 0)) {
+                // Case 2: e(x) reaches x=0 above d(x)
+                double T_e = UFunction.integrateOneOverPiece(UFunction.FunctionType.ACCELERATION, accelStartFinal, L, accelStartSpeed, aUp);
+
+                if (T_e >= deltaT) {
+                    // e(x) is slow enough
+                    vUpF = vU;
+                } else {
+                    // same procedure as above
+                    if (dReachesZero) {
+                        vUpF = uFunction.calculateVFinalUpFixed(vDown, aDown, aUp, deltaT, L, decelEndFinal);
+                    } else {
+                        double T_d = UFunction.integrateOneOverPiece(UFunction.FunctionType.DECELERATION, 0, decelEndFinal, vDown, aDown);
+
+                        if (T_d > deltaT) {
+                            vUpF = uFunction.calculateVFinalUpFixed(vDown, aDown, aUp, deltaT, L, decelEndFinal);
+                        } else {
+                            vUpF = Double.NaN;
+                        }
+                    }
+                }
+            }
+        }
+        return vUpF;
+    }
+
+    // Minimum final speed (v_down_f)
+    private double computeVDownF() {
+        // f(x) decelerates from maxVStart at x=0 to a stop at L
+        double maxVStart = UFunction.calculateSpeedBackwards(0, L, 0, aDown);
+
+        double intersectionPoint = uFunction.findIntersection(0, L, maxVStart, aDown);
+        double xIntMin = intersectionPoint >= 0 && intersectionPoint <= L ? intersectionPoint : -1;
+
+        double witnessTimeMin;
+        if (xIntMin >= 0) {//U(x) and f(x) intersect
+            // Witness: U(x) up to xIntMin, then f(x)
+            double newVStart = UFunction.calculateSpeedBackwards(xIntMin, L, 0, aDown);
+            witnessTimeMin = uFunction.integrateOneOverUUpTo(xIntMin)
+                + UFunction.integrateOneOverPiece(UFunction.FunctionType.DECELERATION, xIntMin, L, newVStart, aDown);
+        } else {//U(x) and f(x) do not intersect
+            witnessTimeMin = UFunction.integrateOneOverPiece(UFunction.FunctionType.DECELERATION, 0, L, maxVStart, aDown);
+        }
+
+        if (witnessTimeMin <= deltaT) {
+            return 0.0;//We reach speed zero before the time is up and wait at the end.
+        }
+        //We don't have enough space to slow down and must find an exact witness.
+        double vDownF = uFunction.calculateVDownFinal(aDown, deltaT, L);
+        if (Double.isNaN(vDownF)) {
+            vDownF = uFunction.calculateVDownFinalByBisection(aDown, deltaT, L);
+        }
+        return vDownF;
+    }
+}
@@ -0,0 +1,917 @@
+package com.mycompany.masterproject.data;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Represents a piecewise function U(x) that defines the upper bound of feasible speeds along a route.
+ *
+ * The pieces are kept in parallel arrays sorted by x, so one UFunction can be refilled for every route
+ * and speed interval without allocating (see UFunctionBuilder.sisToUFunction with a target). The witnesses
+ * built while computing the speed interval are written into a scratch UFunction owned by this one, which
+ * makes a UFunction not safe for use by several threads at once.
+ *
+ * The pieces are sorted and contiguous, so the piece containing a position is found by binary search on
+ * startX and endX. The travel time up to each piece is summed once after the pieces change, which makes
+ * (truncated) integrals of 1/U(x) a lookup plus at most one partial piece.
+ */
+class UFunction {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final double GAP_TOLERANCE = 1e-6; // m²/s², slack when bracketing intersections
+
+    // Enum for function types
+    public enum FunctionType {
+        CONSTANT, ACCELERATION, DECELERATION
+    }
+
+    // Piece i covers [startX[i], endX[i]], starts with initialSpeed[i] and changes speed with acceleration[i].
+    // For CONSTANT pieces endSpeed[i] is the speed limit.
+    double[] startX = new double[INITIAL_CAPACITY];
+    double[] endX = new double[INITIAL_CAPACITY];
+    double[] initialSpeed = new double[INITIAL_CAPACITY];
+    double[] endSpeed = new double[INITIAL_CAPACITY];
+    double[] acceleration = new double[INITIAL_CAPACITY];
+    FunctionType[] functionType = new FunctionType[INITIAL_CAPACITY];
+    int size = 0;
+
+    // Visit the pieces from the end of the route to its start. Set for U(x) built by UFunctionBuilder:
+    // a position on the border of two pieces then belongs to the later piece, and intersections are
+    // searched starting at the end of the route.
+    boolean descending = false;
+
+    // prefixTime[i] is the travel time over the pieces before piece i, filled by ensurePrefixTime
+    private double[] prefixTime = new double[INITIAL_CAPACITY + 1];
+    private boolean prefixTimeValid = false;
+    // Lower bound of the piece accelerations (0 for CONSTANT). Pieces popped by the builder are not
+    // taken out, which only makes the bound lower.
+    private double minAcceleration = Double.POSITIVE_INFINITY;
+
+    private UFunction witness; // Scratch function for the witnesses, created on first use
+    private SpeedTransfer transfer; // Transfer map of the last deltaT, created on first use
+    private boolean transferValid = false;
+
+    /**
+     * Removes all pieces, keeping the arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+        descending = false;
+        prefixTimeValid = false;
+        transferValid = false;
+        minAcceleration = Double.POSITIVE_INFINITY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a segment piece after the last piece of the U(x) function.
+     *
+     * @param startX       Starting position of the segment.
+     * @param endX         Ending position of the segment.
+     * @param maxSpeed     Maximum speed for the segment.
+     * @param functionType Type of function (CONSTANT, ACCELERATION, DECELERATION).
+     * @param acceleration Acceleration or deceleration value (used only for ACCELERATION/DECELERATION).
+     */
+    public void addSegment(double startX, double endX, double initialSpeed, double maxSpeed, FunctionType functionType, double acceleration) {
+        if (size == this.startX.length) {
+            int capacity = 2 * size;
+            this.startX = Arrays.copyOf(this.startX, capacity);
+            this.endX = Arrays.copyOf(this.endX, capacity);
+            this.initialSpeed = Arrays.copyOf(this.initialSpeed, capacity);
+            this.endSpeed = Arrays.copyOf(this.endSpeed, capacity);
+            this.acceleration = Arrays.copyOf(this.acceleration, capacity);
+            this.functionType = Arrays.copyOf(this.functionType, capacity);
+        }
+        this.startX[size] = startX;
+        this.endX[size] = endX;
+        this.initialSpeed[size] = initialSpeed;
+        this.endSpeed[size] = maxSpeed;
+        this.functionType[size] = functionType;
+        this.acceleration[size] = acceleration;
+        size++;
+        prefixTimeValid = false;
+        transferValid = false;
+        minAcceleration = Math.min(minAcceleration, functionType == FunctionType.CONSTANT ? 0 : acceleration);
+    }
+
+    /**
+     * Returns the bytes allocated for the pieces of the function and of its witness scratch function.
+     * Array contents only, object headers are not counted.
+     */
+    long getAllocatedBytes() {
+        long bytes = (5L * startX.length + prefixTime.length) * Double.BYTES + (long) functionType.length * Integer.BYTES;
+        return witness != null ? bytes + witness.getAllocatedBytes() : bytes;
+    }
+
+    // Index of the first piece with endX >= x, or size if there is none
+    private int firstPieceEndingAtOrAfter(double x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (endX[mid] >= x) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Index of the last piece with startX <= x, or -1 if there is none
+    private int lastPieceStartingAtOrBefore(double x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startX[mid] <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private void ensurePrefixTime() {
+        if (prefixTimeValid) {
+            return;
+        }
+        if (prefixTime.length < size + 1) {
+            prefixTime = new double[startX.length + 1];
+        }
+        double totalTime = 0.0;
+        prefixTime[0] = totalTime;
+        for (int i = 0; i < size; i++) {
+            totalTime += integrateOneOverPiece(functionType[i], startX[i], endX[i], initialSpeed[i], acceleration[i]);
+            prefixTime[i + 1] = totalTime;
+        }
+        prefixTimeValid = true;
+    }
+
+    // Array index of the k-th piece in visiting order
+    private int pieceAt(int k) {
+        return descending ? size - 1 - k : k;
+    }
+
+    /**
+     * Returns the length of the route covered by U(x), the end of the first piece in visiting order.
+     */
+    public double getLength() {
+        if (size == 0) {
+            throw new IllegalStateException("U(x) function has no pieces.");
+        }
+        return endX[pieceAt(0)];
+    }
+
+    /**
+     * Retrieves the speed at a given position x based on the segment the position falls into.
+     *
+     * @param x Position for which the speed is calculated.
+     * @return Speed U(x) for the given position.
+     */
+    public double getSpeed(double x) {
+        // On the border of two pieces the later one is used when visiting descending, else the earlier one
+        int i = descending ? lastPieceStartingAtOrBefore(x) : firstPieceEndingAtOrAfter(x);
+        if (i >= 0 && i < size && x >= startX[i] && x <= endX[i]) {
+            switch (functionType[i]) {
+                case CONSTANT:
+                    return endSpeed[i]; // Constant speed
+                case ACCELERATION:
+                case DECELERATION:
+                    return calculateSpeedForwards(startX[i], x, initialSpeed[i], acceleration[i]);
+                default:
+                    throw new IllegalStateException("Unexpected function type: " + functionType[i]);
+            }
+        }
+        throw new IllegalArgumentException("Position x is out of range of the U(x) function.");
+    }
+
+    // Speed at x on a single accelerating or decelerating piece
+    static double getSpeedOnCurve(double startX, double endX, double initialSpeed, double acceleration, double x) {
+        if (x >= startX && x <= endX) {
+            return calculateSpeedForwards(startX, x, initialSpeed, acceleration);
+        }
+        throw new IllegalArgumentException("Position x is out of range of the U(x) function.");
+    }
+
+    static double calculateSpeedForwards(double xStart, double xEnd, double vStart, double accel) {
+        double distance = xEnd - xStart;
+        double radicant = Math.pow(vStart, 2) + 2 * accel * distance;
+        if(Math.abs(radicant)< 1e-6){
+            radicant=0.0;
+        }
+        double speed = Math.sqrt(radicant); // Basic kinematic equation
+        return speed;
+    }
+
+    static double calculateSpeedBackwards(double xStart, double xEnd, double vEnd, double accel) {
+        double distance = xEnd - xStart;
+        double speed = Math.sqrt(Math.abs(Math.pow(vEnd, 2) - 2 * accel * distance)); // Basic kinematic equation with deceleration, we use the abs, since numerically tiny differences can occur
+        if(speed< 1e-6){
+            return 0;
+        }else{
+            return speed;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("UFunction{\n");
+        for (int k = size - 1; k >= 0; k--) {
+            int i = pieceAt(k);
+            sb.append("  Piece{")
+              .append("startX=").append(startX[i])
+              .append(", endX=").append(endX[i])
+              .append(", initialSpeed=").append(initialSpeed[i])
+              .append(", endSpeed=").append(endSpeed[i])
+              .append(", functionType=").append(functionType[i])
+              .append(", acceleration=").append(acceleration[i])
+              .append("}\n");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    //This function is for integrating over the U(x) function
+    public double integrateOneOverU() {
+        ensurePrefixTime();
+        return prefixTime[size];
+    }
+
+    /**
+     * Integrates 1/U(x) up to position x, which is the travel time of getUFunctionUpTo(x) without building it.
+     */
+    public double integrateOneOverUUpTo(double x) {
+        if (Double.isNaN(x)) {
+            return 0.0;
+        }
+        ensurePrefixTime();
+        int i = firstPieceEndingAtOrAfter(x);
+        if (i == size || x < startX[i]) {
+            return prefixTime[i];
+        }
+        return prefixTime[i] + integrateOneOverPiece(functionType[i], startX[i], x, initialSpeed[i], acceleration[i]);
+    }
+
+    // Travel time over a single piece
+    static double integrateOneOverPiece(FunctionType functionType, double startX, double endX, double vInitial, double acceleration) {
+        switch (functionType) {
+            case CONSTANT:
+                // For constant-speed segments
+                if (vInitial < 0) {
+                    throw new IllegalArgumentException("Constant speed cannot be zero or negative.");
+                }
+                return (endX - startX) / vInitial;
+
+            case ACCELERATION:
+                // For accelerating segments
+                if (vInitial < 0 || acceleration <= 0) {
+                    System.out.println("vInitial: " + vInitial + ", acceleration: " + acceleration);
+                    throw new IllegalArgumentException("Invalid parameters for acceleration segment.");
+                }
+                return (Math.sqrt(vInitial * vInitial + 2 * acceleration * (endX-startX)) / acceleration)-((Math.sqrt(vInitial * vInitial)) / acceleration);
+
+            case DECELERATION:
+                // For decelerating segments
+                if (vInitial < 0 || acceleration >= 0) {
+                    throw new IllegalArgumentException("Invalid parameters for deceleration segment.");
+                }
+                double deltaDistance = endX - startX; // Distance between the points
+                double vInitialSquared = vInitial * vInitial; // Square of the initial speed
+                double sqrtInitialSpeed = Math.sqrt(vInitialSquared); // Square root of initial speed
+                double firstTerm = vInitialSquared + 2 * acceleration * deltaDistance; // First term in the equation
+                if (firstTerm < 1e-6) {
+                    firstTerm = 0; // Prevent negative values due to numerical errors
+                }
+                // Compute the total speed after acceleration over the distance
+                double sqrtFinalSpeed = Math.sqrt(firstTerm);
+
+                // Compute the time for the segment
+                return (sqrtFinalSpeed / acceleration) - (sqrtInitialSpeed / acceleration);
+
+            default:
+                throw new IllegalStateException("Unexpected segment type: " + functionType);
+        }
+    }
+
+    /**
+     * Calculates the intersection point between U(x) and a curve of constant acceleration, searching the
+     * pieces in visiting order.
+     *
+     * @param curveStartX       Start of the curve.
+     * @param curveEndX         End of the curve.
+     * @param curveSpeed        Speed at the start of the curve.
+     * @param curveAcceleration Acceleration of the curve (non-zero).
+     * @return The first intersection found, or -1 if there is none.
+     */
+    public double findIntersection(double curveStartX, double curveEndX, double curveSpeed, double curveAcceleration) {
+        int first = 0;
+        int last = size - 1;
+        if (curveAcceleration <= minAcceleration) {
+            // U(x)^2 minus the squared curve does not decrease, so only pieces where it changes sign can
+            // hold an intersection. They are found by binary search, with some slack for rounding.
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (squaredGap(mid, true, curveStartX, curveSpeed, curveAcceleration) >= -GAP_TOLERANCE) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            first = low;
+            high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (squaredGap(mid, false, curveStartX, curveSpeed, curveAcceleration) <= GAP_TOLERANCE) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            last = low - 1;
+        }
+        // Iterate through the candidate pieces of U(x) in visiting order
+        for (int k = 0; k <= last - first; k++) {
+            int i = descending ? last - k : first + k;
+            double intersectionX = calculateIntersection(curveStartX, curveEndX, curveSpeed, curveAcceleration, i);
+            // Check if the intersection point is within the bounds of both segments
+            if (intersectionX >= Math.max(curveStartX, startX[i])
+                && intersectionX <= Math.min(curveEndX, endX[i])) {
+                return intersectionX; // Valid intersection found
+            }
+        }
+
+        // No intersection found
+        return -1.0;
+    }
+
+    // U(x)^2 minus the square of the curve at the start or end of piece i
+    private double squaredGap(int i, boolean atEnd, double curveStartX, double curveSpeed, double curveAcceleration) {
+        double x = atEnd ? endX[i] : startX[i];
+        double uSquared = functionType[i] == FunctionType.CONSTANT
+            ? endSpeed[i] * endSpeed[i]
+            : initialSpeed[i] * initialSpeed[i] + 2 * acceleration[i] * (x - startX[i]);
+        return uSquared - (curveSpeed * curveSpeed + 2 * curveAcceleration * (x - curveStartX));
+    }
+
+    // Helper function to calculate the intersection point between the curve and piece i
+    private double calculateIntersection(double s1StartX, double s1EndX, double v1, double a1, int i) {
+        if (functionType[i] != FunctionType.CONSTANT) {
+            // Solve for x: v1^2 + 2a1(x - startX1) = v2^2 + 2a2(x - startX2)
+            double a2 = acceleration[i];
+            double v2 = initialSpeed[i];
+            double discriminant = Math.pow(v1, 2) - Math.pow(v2, 2)
+                                + 2 * a2 * startX[i] - 2 * a1 * s1StartX;
+
+            if (a1 != a2) {
+                return discriminant / (2 * (a2 - a1)); // Intersection x
+            } else {
+                return Double.NaN; // Parallel, no intersection
+            }
+        }
+
+        // Mixed types: solve for x: v1^2 + 2a1(x - startX1) = vConstant^2
+        double vConstant = endSpeed[i];
+        double discriminant = (Math.pow(v1, 2) - Math.pow(vConstant, 2) - 2 * a1 * s1StartX);
+        if (a1 != 0) {
+            double intersectionX = discriminant / (-2 * a1);
+            if (intersectionX >= Math.max(startX[i], s1StartX)
+                && intersectionX <= Math.min(endX[i], s1EndX)) {
+                return intersectionX;
+            }
+        }
+        return Double.NaN; // No valid intersection
+    }
+
+    /**
+     * Writes U(x) up to position x into target, truncating the piece that contains x. The pieces of target
+     * are in order of x.
+     *
+     * @param x      End of the truncated function.
+     * @param target The function to overwrite.
+     * @return target
+     */
+    public UFunction getUFunctionUpTo(double x, UFunction target) {
+        target.clear();
+        if (Double.isNaN(x)) {
+            return target;
+        }
+        // Pieces ending before x are retained, the piece containing x is truncated
+        int last = firstPieceEndingAtOrAfter(x);
+        for (int i = 0; i < last; i++) {
+            target.addSegment(startX[i], endX[i], initialSpeed[i], endSpeed[i], functionType[i], acceleration[i]);
+        }
+        if (last < size && x >= startX[last]) {
+            double truncatedSpeed = calculateSpeedForwards(startX[last], x, initialSpeed[last], acceleration[last]);
+            target.addSegment(startX[last], x, initialSpeed[last], truncatedSpeed, functionType[last], acceleration[last]);
+        }
+        return target;
+    }
+
+    private UFunction witness() {
+        if (witness == null) {
+            witness = new UFunction();
+        }
+        return witness;
+    }
+
+    /**
+     * Computes the feasible speed interval [v_down_f, v_up_f] at the end of the route.
+     *
+     * @param vDown    The initial lower speed bound (v_down).
+     * @param vUp      The initial upper speed bound (v_up).
+     * @param aUp      The maximum acceleration (a_up > 0).
+     * @param aDown    The maximum deceleration (a_down < 0).
+     * @param deltaT   The total allowed travel time (Δt).
+     * @return         An array containing [v_down_f, v_up_f], or [NaN, NaN] if no feasible solution exists.
+     */
+    public double[] computeSpeedInterval(double vDown, double vUp, double aDown, double aUp, double deltaT) {
+        return computeSpeedInterval(vDown, vUp, aDown, aUp, deltaT, new double[2]);
+    }
+
+    /**
+     * Computes the feasible speed interval [v_down_f, v_up_f] at the end of the route into result.
+     *
+     * @param result   Array of length two that receives [v_down_f, v_up_f], or [NaN, NaN] if no feasible solution exists.
+     * @return         result
+     */
+    public double[] computeSpeedInterval(double vDown, double vUp, double aDown, double aUp, double deltaT, double[] result) {
+        if(Double.isNaN(vUp) || Double.isNaN(vDown) || Double.isNaN(aUp) || Double.isNaN(aDown) || Double.isNaN(deltaT)){
+            result[0] = Double.NaN;
+            result[1] = Double.NaN;
+            System.out.println("Invalid input values.");
+            return result;
+        }
+        return getSpeedTransfer(aDown, aUp, deltaT).apply(vDown, result);
+    }
+
+    /**
+     * Returns the transfer map of this U(x) for deltaT. The map is prepared once and reused by all
+     * speed intervals with the same accelerations and deltaT, until the pieces change.
+     */
+    SpeedTransfer getSpeedTransfer(double aDown, double aUp, double deltaT) {
+        if (transfer == null) {
+            transfer = new SpeedTransfer(this);
+        }
+        if (!transferValid || !transfer.isFor(aDown, aUp, deltaT)) {
+            transfer.prepare(aDown, aUp, deltaT);
+            transferValid = true;
+        }
+        return transfer;
+    }
+
+    /**
+     * Calculates the intersection point of two speed curves of constant acceleration.
+     *
+     * @return The x-coordinate where the two curves intersect within their segments, or -1 if no intersection exists.
+     */
+    public static double findIntersection(double x1, double endX1, double v1, double a1,
+                                          double x2, double endX2, double v2, double a2) {
+        // Check if both segments have the same acceleration
+        if (a1 == a2) {
+            // Identical curves overlap infinitely, otherwise they are parallel and do not intersect
+            return -1;
+        }
+
+        // Solve for the intersection point using the kinematic equations
+        // x = (v2^2 - v1^2 + 2 * a1 * x1 - 2 * a2 * x2) / (2 * (a1 - a2))
+        double numerator = Math.pow(v2, 2) - Math.pow(v1, 2) + 2 * a1 * x1 - 2 * a2 * x2;
+        double denominator = 2 * (a1 - a2);
+        double x = numerator / denominator;
+
+        // Check if the intersection lies within the overlapping range of the segments
+        double overlapStart = Math.max(x1, x2);
+        double overlapEnd = Math.min(endX1, endX2);
+
+        if (x >= overlapStart && x <= overlapEnd) {
+            // Valid intersection within both segments
+            return x;
+        } else {
+            // Intersection does not lie within the valid overlapping range of the segments
+            return -1;
+        }
+    }
+
+    // Constructs the maximum witness profile: d(x) from x=0 up to xInt, e(x) from xInt to the end of the route.
+    // The witness is written into the scratch function.
+    UFunction constructMaxWitness(double vDown, double aDown, double aUp, double xInt) {
+        UFunction uFunction = witness();
+        uFunction.clear();
+        double L = getLength();
+
+        double endSpeedOfD = calculateSpeedForwards(0, xInt, vDown, aDown);
+        // Add d up until the IntersectionPoint
+        if(xInt!=0){
+            uFunction.addSegment(0, xInt, vDown, endSpeedOfD, FunctionType.DECELERATION, aDown);
+        }
+        // Add e from the IntersectionPoint
+        if(xInt!=L){
+            uFunction.addSegment(xInt, L, endSpeedOfD, calculateSpeedForwards(xInt, L, endSpeedOfD, aUp), FunctionType.ACCELERATION, aUp);
+        }
+
+        return uFunction;
+    }
+
+    // Function for solving for v_up_f using the closed-form formula
+    public static double calculateVFinalUpWrong(double vDown, double aDown, double aUp, double deltaT, double totalLength) {
+        System.out.println("Inputs" + vDown + " " + aDown + " " + aUp + " " + deltaT + " " + totalLength);
+        // Step 1: Compute x'
+        double numerator1 = Math.pow(vDown + aUp * deltaT, 2) * (-2 * totalLength + 2 * vDown * deltaT + aUp * Math.pow(deltaT, 2));
+        double denominator1 = aUp - aDown;
+
+        // Step 2: Compute the square root term
+        double sqrtTerm = Math.sqrt(numerator1 / denominator1);
+
+        // Step 3: Compute the second numerator and denominator for the second term
+        double numerator2 = 2 * aUp * totalLength
+                            + 2 * aDown * vDown * deltaT
+                            - 2 * Math.pow(aUp, 2) * Math.pow(deltaT, 2)
+                            + aUp * deltaT * (-4 * vDown + aDown * deltaT);
+        double denominator2 = 2 * (aUp - aDown);
+
+        // Step 4: Compute x'
+        double xPrime = -sqrtTerm - (numerator2 / denominator2);
+
+        // Step 5: Compute v_up_f
+        double vFinalSquared = Math.pow(vDown, 2) + 2 * aDown * xPrime + 2 * aUp * (totalLength - xPrime);
+        double vFinalUp = Math.sqrt(vFinalSquared);
+
+        // Step 2: Compute v↑,f
+        return vFinalUp;
+    }
+
+    public double calculateVFinalUpFixed(double vDown, double aDown, double aUp, double deltaT, double totalLength, double decelEndFinal) {
+        double xPrime = calculateXPrime(decelEndFinal, vDown, aDown, aUp, deltaT, totalLength);
+        double vUpF = Double.NaN;
+        //Calculate if XPrime is a viable solution
+        UFunction witness = constructMaxWitness(vDown, aDown, aUp, xPrime);
+
+        double witnessArea = witness.integrateOneOverU();
+        if(Math.abs(witnessArea-deltaT)<1e-6){//In this case xPrime is a real solution
+            vUpF = witness.getSpeed(totalLength);
+        }else{
+            witness = constructMaxWitness(vDown, aDown, aUp, decelEndFinal);//In this case we have to stop at the end of the deceleration segment and wait
+            vUpF = witness.getSpeed(totalLength);
+        }
+        return vUpF;
+    }
+
+    /**
+     * Finds the position x' where the max witness switches from decelerating with aDown to accelerating
+     * with aUp, such that the witness takes exactly deltaT to reach the end of the route.
+     *
+     * With s the speed at x', the time is (s - vDown) / aDown + (w - s) / aUp, where
+     * w^2 = k s^2 + C is the final speed, k = 1 - aUp / aDown and C = 2 aUp L + aUp vDown^2 / aDown.
+     * Setting the time to deltaT gives w = k s + m with m = aUp (deltaT + vDown / aDown), and squaring
+     * leads to the quadratic (k^2 - k) s^2 + 2 k m s + (m^2 - C) = 0. The time grows with x', so if it
+     * is already too long at x' = 0 or still too short at x' = decelEnd, the nearer bound is returned,
+     * which is what minimising |time - deltaT| over [0, decelEnd] gives.
+     *
+     * @param decelEnd    Upper bound for x', the end of the deceleration curve d(x).
+     * @param vDown       Speed at the start of the route.
+     * @param aDown       Maximum deceleration (negative).
+     * @param aUp         Maximum acceleration.
+     * @param deltaT      Available travel time.
+     * @param totalLength Length of the route.
+     * @return x' in [0, decelEnd]
+     */
+    public static double calculateXPrime(double decelEnd, double vDown, double aDown, double aUp, double deltaT, double totalLength){
+        if (Double.isNaN(decelEnd)) {
+            return Double.NaN;
+        }
+        if (decelEnd <= 0) {
+            return 0;
+        }
+        if (witnessTime(0, vDown, aDown, aUp, totalLength) >= deltaT) {
+            return 0; // Even switching right at the start takes too long
+        }
+        if (witnessTime(decelEnd, vDown, aDown, aUp, totalLength) <= deltaT) {
+            return decelEnd; // Even the longest deceleration is too fast
+        }
+
+        double k = 1 - aUp / aDown;
+        double m = aUp * (deltaT + vDown / aDown);
+        double C = 2 * aUp * totalLength + aUp * vDown * vDown / aDown;
+        double a = k * k - k; // > 0, since k > 1
+        double b = 2 * k * m;
+        double c = m * m - C;
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            if (discriminant < -1e-9 * b * b) {
+                return calculateXPrimeBySearch(decelEnd, vDown, aDown, aUp, deltaT, totalLength);
+            }
+            discriminant = 0; // Double root, lost to rounding
+        }
+        // Numerically stable roots
+        double q = -0.5 * (b + Math.copySign(Math.sqrt(discriminant), b));
+        double root1 = q / a;
+        double root2 = q != 0 ? c / q : root1;
+
+        // The speed at x' lies between the speed at decelEnd and vDown, and the final speed must be non-negative
+        double sMin = Math.sqrt(Math.max(0, vDown * vDown + 2 * aDown * decelEnd));
+        double tolerance = 1e-9 * (1 + vDown);
+        double best = Double.NaN;
+        double bestError = Double.POSITIVE_INFINITY;
+        for (int r = 0; r < 2; r++) {
+            double s = r == 0 ? root1 : root2;
+            if (s < sMin - tolerance || s > vDown + tolerance || k * s + m < -tolerance) {
+                continue;
+            }
+            s = Math.min(vDown, Math.max(sMin, s));
+            double xPrime = Math.min(decelEnd, Math.max(0, (s * s - vDown * vDown) / (2 * aDown)));
+            double error = Math.abs(witnessTime(xPrime, vDown, aDown, aUp, totalLength) - deltaT);
+            if (error < bestError) {
+                best = xPrime;
+                bestError = error;
+            }
+        }
+        if (Double.isNaN(best)) {
+            return calculateXPrimeBySearch(decelEnd, vDown, aDown, aUp, deltaT, totalLength);
+        }
+        return best;
+    }
+
+    // Travel time of the max witness that switches from deceleration to acceleration at xPrime
+    private static double witnessTime(double xPrime, double vDown, double aDown, double aUp, double totalLength) {
+        double sSquared = vDown * vDown + 2 * aDown * xPrime;
+        double s = Math.sqrt(Math.max(0, sSquared));
+        double w = Math.sqrt(Math.max(0, sSquared + (2 * totalLength - 2 * xPrime) * aUp));
+        return (s - vDown) / aDown + (w - s) / aUp;
+    }
+
+    /**
+     * Finds x' by minimising |time - deltaT| with a golden section search over [0, decelEnd].
+     * Kept as the reference for calculateXPrime.
+     */
+    public static double calculateXPrimeBySearch(double decelEnd, double vDown, double aDown, double aUp, double deltaT, double totalLength){
+        // Define the function to minimize
+        Function<Double, Double> equation = (xPrime) -> {
+            // First term
+            double T1 = (Math.sqrt(vDown * vDown + 2 * aDown * xPrime) - vDown) / aDown;
+
+            // Second term
+            double T2 = (Math.sqrt(vDown * vDown + 2 * aDown * xPrime + (2 * totalLength - 2 * xPrime) * aUp)
+                         - Math.sqrt(vDown * vDown + 2 * aDown * xPrime)) / aUp;
+
+            // Total time difference
+            return Math.abs(T1 + T2 - deltaT);
+        };
+
+        // Perform a bounded search using a golden section search
+        double tolerance = 1e-6; // Convergence tolerance
+        double result = goldenSectionSearch(equation, 0, decelEnd, tolerance);
+
+        // Return the result or NaN if no valid solution is found
+        return Double.isNaN(result) ? Double.NaN : result;
+    }
+
+    //Find a solution to the equation using the golden section search method
+    private static double goldenSectionSearch(Function<Double, Double> func, double lowerBound, double upperBound, double tolerance) {
+        double gr = (Math.sqrt(5) + 1) / 2; // Golden ratio
+
+        double c = upperBound - (upperBound - lowerBound) / gr;
+        double d = lowerBound + (upperBound - lowerBound) / gr;
+
+        while (Math.abs(upperBound - lowerBound) > tolerance) {
+            if (func.apply(c) < func.apply(d)) {
+                upperBound = d;
+            } else {
+                lowerBound = c;
+            }
+            c = upperBound - (upperBound - lowerBound) / gr;
+            d = lowerBound + (upperBound - lowerBound) / gr;
+        }
+
+        return (upperBound + lowerBound) / 2; // Midpoint of the final interval
+    }
+
+    /**
+     * Finds the lowest final speed vEnd whose min witness, U(x) up to the intersection x* with the
+     * deceleration curve f(x) = sqrt(vEnd^2 - 2 aDown (L - x)) and f(x) after it, takes exactly deltaT.
+     *
+     * The intersection satisfies vEnd^2 = g(x*) with g(x) = U(x)^2 + 2 aDown (L - x). g does not decrease,
+     * since no piece of U(x) decelerates faster than aDown, and the witness time falls as vEnd grows.
+     * The pieces are therefore walked from the start of the route, adding up the time over U(x), until
+     * the witness that leaves U(x) at the end of a piece is fast enough. On that piece the time equation
+     * is solved directly: for an accelerating piece it is a quadratic in the speed at x*, for a constant
+     * piece a quadratic in vEnd. Below vEnd^2 = g(0), where f(x) stays under U(x), the witness is f(x)
+     * alone, starting at x = -1 like the witness of the bisection.
+     *
+     * @return vEnd, or NaN if the time equation has no solution on the piece it was located on.
+     */
+    double calculateVDownFinal(double aDown, double deltaT, double L) {
+        double vEndUpper = this.getSpeed(L);
+
+        // Region vEnd^2 < g(0): f(x) from -1 to L only
+        double startSpeed = functionType[0] == FunctionType.CONSTANT ? endSpeed[0] : initialSpeed[0];
+        double gStart = startSpeed * startSpeed + 2 * aDown * (L - startX[0]);
+        if (gStart > 0) {
+            double vBound = Math.sqrt(gStart);
+            double timeAtBound = (vBound - Math.sqrt(vBound * vBound - 2 * aDown * (L + 1))) / aDown;
+            if (timeAtBound <= deltaT) {
+                // (vEnd - f(-1)) / aDown = deltaT
+                double vEnd = (L + 1) / deltaT + aDown * deltaT / 2;
+                return Math.min(vBound, Math.max(0, vEnd));
+            }
+            if ((vBound - startSpeed) / aDown <= deltaT) {
+                return vBound; // The time drops below deltaT where f(x) starts to touch U(x)
+            }
+        }
+
+        // First piece where leaving U(x) at its end is fast enough. With g not decreasing these times
+        // do not increase along the route, so the piece is found by binary search.
+        ensurePrefixTime();
+        int i;
+        if (aDown <= minAcceleration) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timeLeavingAtEnd(mid, aDown, L) <= deltaT) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            i = low;
+        } else {
+            i = 0;
+            while (i < size && timeLeavingAtEnd(i, aDown, L) > deltaT) {
+                i++;
+            }
+        }
+        if (i < size) {
+            boolean constant = functionType[i] == FunctionType.CONSTANT;
+            double speedAtStart = constant ? endSpeed[i] : initialSpeed[i];
+            double speedAtEnd = speedAtEnd(i);
+            double vAtEnd = Math.sqrt(speedAtEnd * speedAtEnd + 2 * aDown * (L - endX[i]));
+            double prefixTime = this.prefixTime[i]; // Time over U(x) up to the start of piece i
+
+            // The intersection lies on this piece
+            double gAtStart = speedAtStart * speedAtStart + 2 * aDown * (L - startX[i]);
+            double vAtStart = Math.sqrt(Math.max(0, gAtStart));
+            double remaining = deltaT - prefixTime;
+            double vEnd;
+            if (constant) {
+                // (x* - startX) / c + (vEnd - c) / aDown = remaining with vEnd^2 = c^2 + 2 aDown (L - x*)
+                double c = speedAtStart;
+                double discriminant = 2 * aDown * (L - startX[i] - c * remaining);
+                vEnd = c - Math.sqrt(Math.max(0, discriminant));
+            } else if (acceleration[i] > aDown) {
+                // (u - v0) / a + (vEnd - u) / aDown = remaining with vEnd^2 = k u^2 + C and u the speed at x*,
+                // so vEnd = k u + m, which gives (k^2 - k) u^2 + 2 k m u + (m^2 - C) = 0
+                double a = acceleration[i];
+                double v0 = initialSpeed[i];
+                double k = 1 - aDown / a;
+                double m = aDown * (remaining + v0 / a);
+                double C = 2 * aDown * (L - startX[i]) + aDown * v0 * v0 / a;
+                double u = solveQuadratic(k * k - k, 2 * k * m, m * m - C, speedAtStart, speedAtEnd);
+                vEnd = k * u + m;
+            } else {
+                vEnd = vAtEnd; // g is constant on pieces decelerating with aDown
+            }
+            if (Double.isNaN(vEnd)) {
+                return Double.NaN;
+            }
+            return Math.min(vAtEnd, Math.max(vAtStart, vEnd));
+        }
+        return vEndUpper; // Even the highest final speed is too slow
+    }
+
+    // Speed of U(x) at the end of piece i
+    private double speedAtEnd(int i) {
+        return functionType[i] == FunctionType.CONSTANT
+            ? endSpeed[i]
+            : calculateSpeedForwards(startX[i], endX[i], initialSpeed[i], acceleration[i]);
+    }
+
+    // Time of the min witness that leaves U(x) at the end of piece i, infinite if no f(x) with vEnd >= 0 does
+    private double timeLeavingAtEnd(int i, double aDown, double L) {
+        double speedAtEnd = speedAtEnd(i);
+        double gEnd = speedAtEnd * speedAtEnd + 2 * aDown * (L - endX[i]);
+        if (gEnd < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return prefixTime[i + 1] + (Math.sqrt(gEnd) - speedAtEnd) / aDown;
+    }
+
+    // Root of a x^2 + b x + c = 0 in [low, high], allowing for rounding, or NaN if there is none
+    private static double solveQuadratic(double a, double b, double c, double low, double high) {
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            if (discriminant < -1e-9 * b * b) {
+                return Double.NaN;
+            }
+            discriminant = 0; // Double root, lost to rounding
+        }
+        double q = -0.5 * (b + Math.copySign(Math.sqrt(discriminant), b));
+        double tolerance = 1e-9 * (1 + Math.abs(high));
+        double best = Double.NaN;
+        for (int r = 0; r < 2; r++) {
+            double root = r == 0 ? q / a : (q != 0 ? c / q : q / a);
+            if (root >= low - tolerance && root <= high + tolerance
+                    && (Double.isNaN(best) || Math.abs(root - (low + high) / 2) < Math.abs(best - (low + high) / 2))) {
+                best = root;
+            }
+        }
+        return Double.isNaN(best) ? best : Math.min(high, Math.max(low, best));
+    }
+
+    /**
+     * Finds the lowest final speed by bisection on vEnd, integrating the min witness in every step.
+     * Kept as the reference for calculateVDownFinal.
+     */
+    double calculateVDownFinalByBisection(double aDown, double deltaT, double L) {
+
+        // Step 1: Initialize binary search bounds for vEnd
+        double vEndLower = 0;
+        double vEndUpper = this.getSpeed(L);  // Maximum speed at the end of U(x)
+        double vEndCurrent = (vEndLower + vEndUpper) / 2;
+        double tolerance = 1e-6;  // Precision for matching deltaT
+        double travelTime = Double.MAX_VALUE;  // Initialize travel time
+        // Step 4: Perform binary search
+        int iteration = 0;
+        while (Math.abs(travelTime - deltaT) > tolerance) {
+            iteration++;
+            // Step 4.1: Construct f(x) for the current vEnd
+            double maxVStart = calculateSpeedBackwards(0, L, vEndCurrent, aDown);
+
+            // Step 4.2: Find the intersection point
+            double xIntMin = findIntersection(0, L, maxVStart, aDown);
+            //System.out.println("Intersection Point: " + xIntMin);
+
+            // Step 4.3: Calculate the total travel time for U(x) + f(x)
+            UFunction witness = this.getUFunctionUpTo(xIntMin, witness());
+
+            // Add new f(x) to the witness
+            witness.addSegment(xIntMin, L, calculateSpeedBackwards(xIntMin, L, vEndCurrent, aDown), vEndCurrent, FunctionType.DECELERATION, aDown);
+            // Integrate to calculate travel time
+            travelTime = witness.integrateOneOverU();
+
+            // Step 4.4: Adjust vEnd based on the travel time
+            if (travelTime > deltaT) {
+                vEndLower = vEndCurrent;
+            } else {
+                vEndUpper = vEndCurrent;
+            }
+
+            // Update vEndCurrent to the midpoint
+            vEndCurrent = (vEndLower + vEndUpper) / 2;
+            // Optional: Add an iteration limit to prevent infinite loops
+            if (iteration > 100) {
+                //System.out.println("Iteration limit reached.");
+                break;
+            }
+        }
+
+        // Step 5: Return the final adjusted vEnd
+        return vEndCurrent;
+    }
+
+    /**
+     * Compares the closed-form x' with the golden section search on random inputs.
+     * Usage: UFunction [cases]
+     */
+    public static void main(String[] args) {
+        int cases = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        double a = 5.0;
+        java.util.Random random = new java.util.Random(42);
+        double[][] inputs = new double[cases][];
+        for (int i = 0; i < cases; i++) {
+            double vDown = random.nextDouble() * 30;
+            double length = 1 + random.nextDouble() * 500;
+            double decelEnd = Math.min(length, vDown * vDown / (2 * a));
+            inputs[i] = new double[]{decelEnd, vDown, length, random.nextDouble() * 60};
+        }
+
+        double[] analytic = new double[cases];
+        double[] search = new double[cases];
+        for (int round = 0; round < 3; round++) { // The last round is timed
+            long startTime1 = System.nanoTime();
+            for (int i = 0; i < cases; i++) {
+                analytic[i] = calculateXPrime(inputs[i][0], inputs[i][1], -a, a, inputs[i][3], inputs[i][2]);
+            }
+            long startTime2 = System.nanoTime();
+            for (int i = 0; i < cases; i++) {
+                search[i] = calculateXPrimeBySearch(inputs[i][0], inputs[i][1], -a, a, inputs[i][3], inputs[i][2]);
+            }
+            long endTime = System.nanoTime();
+            if (round == 2) {
+                System.out.printf("Closed form: %.3f us per solve%n", (startTime2 - startTime1) / 1000.0 / cases);
+                System.out.printf("Golden section search: %.3f us per solve%n", (endTime - startTime2) / 1000.0 / cases);
+            }
+        }
+        double maxDifference = 0;
+        for (int i = 0; i < cases; i++) {
+            maxDifference = Math.max(maxDifference, Math.abs(analytic[i] - search[i]));
+        }
+        System.out.println("Largest difference in x': " + maxDifference + " m");
+    }
+}
@@ -0,0 +1,204 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Constructs the U(x) function from a list of PathSegments.
+ */
+class UFunctionBuilder {
+
+    /**
+     * Constructs the U(x) function from a list of PathSegments.
+     *
+     * @param pathSegments List of PathSegment objects.
+     * @param vStartMin    Lower bound of the initial speed (m/s).
+     * @param vStartMax    Initial speed at the start of the route (m/s).
+     * @param a            Maximum acceleration and deceleration bound (m/s²).
+     * @return UFunction representing the piecewise upper bound of speeds, or null if no valid witness exists.
+     */
+    public static UFunction sisToUFunction(List<PathSegment> pathSegments, double vStartMin, double vStartMax, double a) {
+        UFunction uFunction = new UFunction();
+        return sisToUFunction(pathSegments, vStartMin, vStartMax, a, uFunction) ? uFunction : null;
+    }
+
+    /**
+     * Constructs the U(x) function from a list of PathSegments into an existing UFunction, reusing its arrays.
+     * Routes that are evaluated for several start intervals should use a RouteProfile, which caches U(x).
+     *
+     * @param target The function to overwrite. It is empty if no valid witness exists.
+     * @return false if no valid witness exists.
+     */
+    public static boolean sisToUFunction(List<PathSegment> pathSegments, double vStartMin, double vStartMax, double a, UFunction target) {
+        double maxStartSpeedMin = buildUFunction(new RouteProfile(pathSegments), vStartMax, a, target);
+        if (Double.isNaN(maxStartSpeedMin) || maxStartSpeedMin < vStartMin) {
+            //System.out.println("No valid witness found: Deceleration curve does not match initial speed at x=0.");
+            target.clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Constructs the U(x) function of a route for the upper start speed vStartMax. U(x) does not depend on
+     * the lower start speed vStartMin, which only decides whether a witness exists: a deceleration curve
+     * that reaches back to x=0 must not start below vStartMin. The result therefore holds for all vStartMin
+     * up to the returned bound.
+     *
+     * @param route     The path segments of the route.
+     * @param vStartMax Initial speed at the start of the route (m/s).
+     * @param a         Maximum acceleration and deceleration bound (m/s²).
+     * @param target    The function to overwrite.
+     * @return The highest vStartMin with a valid witness (infinite if there is no bound), or NaN if no start speed has one.
+     */
+    static double buildUFunction(RouteProfile route, double vStartMax, double a, UFunction target) {
+        if (vStartMax < 0 || a <= 0) {
+            throw new IllegalArgumentException("Initial speed must be non-negative, and acceleration/deceleration must be valid.");
+        }
+        double aUp = a;
+        double aDown = -a;
+
+        // The pieces of target are used as the stack: pieces are pushed with addSegment and popped by
+        // decreasing target.size, which leaves the values of the popped piece readable until the next push
+        UFunction stack = target;
+        stack.clear();
+        double currentSpeed = vStartMax;
+        double currentX = 0;
+        double maxStartSpeedMin = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < route.size; i++) {
+            double vMax = route.speedLimits[i];
+            double length = route.lengths[i];
+            double segmentEndX = currentX + length;
+
+            if (currentSpeed == vMax) {
+                // Case 1: Maintain constant speed
+                stack.addSegment(currentX, segmentEndX, currentSpeed, vMax, UFunction.FunctionType.CONSTANT, 0);
+                currentX = segmentEndX;
+            } else if (currentSpeed < vMax) {
+                // Case 2: Acceleration required
+                double accelDistance = (vMax * vMax - currentSpeed * currentSpeed) / (2 * aUp);
+
+                if (accelDistance <= length) {
+                    // Acceleration completes within the segment
+                    stack.addSegment(currentX, currentX + accelDistance, currentSpeed, vMax, UFunction.FunctionType.ACCELERATION, aUp);
+
+                    // Update state
+                    currentSpeed = vMax;
+                    currentX += accelDistance;
+
+                    // Add remaining part of the segment as constant-speed (if applicable)
+                    if (currentX < segmentEndX) {
+                        stack.addSegment(currentX, segmentEndX, currentSpeed, vMax, UFunction.FunctionType.CONSTANT, 0);
+                        currentX = segmentEndX;
+                    }
+                } else {
+                    // Acceleration spans the entire segment
+                    double newSpeed = Math.sqrt(currentSpeed * currentSpeed + 2 * aUp * length);
+                    stack.addSegment(currentX, segmentEndX, currentSpeed, newSpeed, UFunction.FunctionType.ACCELERATION, aUp);
+                    currentSpeed=newSpeed;
+                    currentX = segmentEndX;
+                }
+            } else { // currentSpeed > vMax
+                // Case 3: Deceleration required
+                double vFinal = vMax;
+                double xDecelEnd = segmentEndX - length ; // Deceleration ends at the current segment's start
+                boolean intersectionFound = false;
+
+                while (stack.size > 0) {
+                    int last = --stack.size;
+                    double lastStartX = stack.startX[last];
+                    double lastEndX = stack.endX[last];
+                    double lastInitialSpeed = stack.initialSpeed[last];
+                    double lastAcceleration = stack.acceleration[last];
+                    UFunction.FunctionType lastFunctionType = stack.functionType[last];
+
+                    // Check intersection of deceleration curve with the last segment
+                    double intersectionX = (vFinal * vFinal - lastInitialSpeed * lastInitialSpeed
+                                            + 2 * lastAcceleration * lastStartX
+                                            - 2 * aDown * xDecelEnd)
+                                            / (2 * (lastAcceleration - aDown));
+
+                    if (intersectionX >= lastStartX && intersectionX <= lastEndX) {
+                        //Calculate the deceleration speed at the intersection point
+                        double vAtIntersection = Math.sqrt(lastInitialSpeed * lastInitialSpeed + 2 * lastAcceleration * (intersectionX - lastStartX));
+
+                        // Intersection found: split the segment
+                        if (intersectionX > lastStartX) {
+                            // Truncate the previous segment up to the intersection point
+                            stack.addSegment(lastStartX, intersectionX, lastInitialSpeed, vAtIntersection, lastFunctionType, lastAcceleration);
+                        }
+
+                        // Add the deceleration segment from the intersection to the end of the current segment
+                        stack.addSegment(intersectionX, xDecelEnd, vAtIntersection, vFinal, UFunction.FunctionType.DECELERATION, aDown);
+                        // Add the continue speed of the current segment
+                        stack.addSegment(xDecelEnd, segmentEndX, vFinal, vFinal, UFunction.FunctionType.CONSTANT, 0);
+
+                        // Update the deceleration start point
+                        intersectionFound = true;
+                        break;
+                    }
+                }
+
+                // Handle case where no intersection was found
+                if (!intersectionFound) {
+                    // Check deceleration curve speed at x=0
+                    double speedAtZero = Math.sqrt(vFinal * vFinal - 2 * aDown * xDecelEnd);
+                    if ((vFinal * vFinal - 2 * aDown * xDecelEnd)<0) {
+                        stack.clear();
+                        return Double.NaN;
+                    }else{
+                        maxStartSpeedMin = Math.min(maxStartSpeedMin, speedAtZero); // Slower starts cannot follow the curve
+                        //To Do fix this here
+                        if(xDecelEnd!=0){
+                            stack.addSegment(0, xDecelEnd, speedAtZero, vFinal, UFunction.FunctionType.DECELERATION, aDown);
+                            stack.addSegment(xDecelEnd, segmentEndX, vFinal, vFinal, UFunction.FunctionType.CONSTANT, 0);
+                        }
+                        else{
+                            stack.addSegment(0, segmentEndX, vFinal, vFinal, UFunction.FunctionType.CONSTANT, 0);
+                        }
+                    }
+                }
+
+                // Update current speed and position
+                currentSpeed = vMax;
+                currentX = segmentEndX;
+            }
+
+        }
+
+        // U(x) is evaluated from the end of the route backwards
+        target.descending = true;
+        return maxStartSpeedMin;
+    }
+
+    public static void main(String[] args) {
+        // Example segments
+        List<PathSegment> pathSegments = new ArrayList<>();
+        pathSegments.add(new PathSegment(150, 40));
+        pathSegments.add(new PathSegment(10, 10));
+        pathSegments.add(new PathSegment(100, 10)); // Requires deceleration
+
+        double vStartMin = 0;  // Initial speed
+        double vStartMax = 30; // Initial speed bound
+        double a = 5.0; // Acceleration bound
+
+        UFunction uFunction = sisToUFunction(pathSegments, vStartMin, vStartMax, a);
+        System.out.println(uFunction);
+        double[] speedInterval = uFunction.computeSpeedInterval(vStartMin, vStartMax, -a, a, 17.5);
+        System.out.println(speedInterval[0] + " " + speedInterval[1]);
+
+        // Repeated computations reuse one UFunction and one result array
+        UFunction reused = new UFunction();
+        double[] result = new double[2];
+        int runs = 200_000;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            if (sisToUFunction(pathSegments, vStartMin, vStartMax, a, reused)) {
+                reused.computeSpeedInterval(vStartMin, vStartMax, -a, a, 17.5, result);
+            }
+        }
+        long endTime = System.nanoTime();
+        System.out.println("Speed interval: " + (endTime - startTime) / 1000.0 / runs + " us per computation");
+    }
+}
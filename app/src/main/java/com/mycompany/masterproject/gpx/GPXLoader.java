@@ -4,6 +4,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -84,4 +85,27 @@ public class GPXLoader {
         }
         return null; // Return null if there's an error
     }
+
+    /**
+     * Loads all .gpx files of a directory, sorted by file name. Files that cannot be read are skipped.
+     *
+     * @param directory The directory to read.
+     * @return The loaded tracks, empty if the directory holds no readable GPX file.
+     */
+    public List<GPXData> loadGPXDirectory(File directory) {
+        List<GPXData> tracks = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".gpx"));
+        if (files == null) {
+            System.err.println("Not a directory: " + directory);
+            return tracks;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            GPXData gpxData = loadGPXTrack(file);
+            if (gpxData != null) {
+                tracks.add(gpxData);
+            }
+        }
+        return tracks;
+    }
 }
\ No newline at end of file
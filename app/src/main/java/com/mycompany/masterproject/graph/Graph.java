@@ -18,6 +18,7 @@ import com.mycompany.masterproject.grid.Endpoint;
 public class Graph {
 
     private final Map<Long, Node> adjacencyList;
+    private List<long[]> edgeList; // Undirected edges, built on first use
 
     public static class Node {
         long nodeId;
@@ -34,6 +35,18 @@ public class Graph {
         public double getLat() {
             return lat;
         }
+
+        public double getLon() {
+            return lon;
+        }
+
+        public long getNodeId() {
+            return nodeId;
+        }
+
+        public Map<Long, Edge> getNeighbors() {
+            return neighbors;
+        }
     
         public void addNeighbor(long neighborId, Edge edge) {
             neighbors.put(neighborId, edge);
@@ -102,7 +115,52 @@ public class Graph {
         return adjacencyList;
     }
 
+    /**
+     * Lists every undirected edge of the graph once as {nodeId, neighborId}, ordered by node ID.
+     * The position of an edge in this list is its edge index; grids built from this graph refer
+     * to edges by that index. Temporary nodes (negative IDs) are not included.
+     *
+     * @return The indexed edge list.
+     */
+    public synchronized List<long[]> getEdgeList() {
+        if (edgeList == null) {
+            List<Long> nodeIds = new ArrayList<>();
+            for (Long nodeId : adjacencyList.keySet()) {
+                if (nodeId >= 0) {
+                    nodeIds.add(nodeId);
+                }
+            }
+            Collections.sort(nodeIds);
+
+            List<long[]> edges = new ArrayList<>();
+            for (long nodeId : nodeIds) {
+                List<Long> neighborIds = new ArrayList<>(adjacencyList.get(nodeId).neighbors.keySet());
+                Collections.sort(neighborIds);
+                for (long neighborId : neighborIds) {
+                    if (neighborId < 0 || neighborId == nodeId) {
+                        continue;
+                    }
+                    Node neighbor = adjacencyList.get(neighborId);
+                    // Each direction is stored separately, keep the edge once
+                    if (nodeId < neighborId || neighbor == null || !neighbor.neighbors.containsKey(nodeId)) {
+                        edges.add(new long[]{nodeId, neighborId});
+                    }
+                }
+            }
+            edgeList = Collections.unmodifiableList(edges);
+        }
+        return edgeList;
+    }
+
     public Map<String, Object> dijkstraWithPath(long startNodeId, long targetNodeId) {
+        return dijkstraWithPath(startNodeId, targetNodeId, new Overlay());
+    }
+
+    /**
+     * Dijkstra on the graph extended by the temporary nodes of one query. The graph itself is only read,
+     * so any number of queries can run on it concurrently.
+     */
+    private Map<String, Object> dijkstraWithPath(long startNodeId, long targetNodeId, Overlay overlay) {
         PriorityQueue<Map.Entry<Long, Double>> pq = new PriorityQueue<>(Map.Entry.comparingByValue());
         pq.add(Map.entry(startNodeId, 0.0));
     
@@ -123,9 +181,9 @@ public class Graph {
     
             if (currentNodeId == targetNodeId) break;
     
-            Node currentNode = getNode(currentNodeId);
+            Node currentNode = overlay.getNode(currentNodeId);
             if (currentNode != null) {
-                for (Map.Entry<Long, Edge> entry : currentNode.neighbors.entrySet()) {
+                for (Map.Entry<Long, Edge> entry : overlay.neighbors(currentNode)) {
                     if (entry.getKey() == currentNodeId) {
                         System.err.println("Self-loop detected: Node " + currentNodeId);
                     }
@@ -147,16 +205,18 @@ public class Graph {
     
         // Reconstruct path
         List<Long> path = new ArrayList<>();
+        List<Node> nodes = new ArrayList<>();
         List<Edge> edges = new ArrayList<>();
         Long currentNodeId = targetNodeId;
         while (currentNodeId != null && predecessors.containsKey(currentNodeId)) {
             Long previousNodeId = predecessors.get(currentNodeId);
             path.add(0, currentNodeId);
+            nodes.add(0, overlay.getNode(currentNodeId));
     
             // Retrieve the edge between the previous and current nodes
-            Node previousNode = getNode(previousNodeId);
-            if (previousNode != null && previousNode.neighbors.containsKey(currentNodeId)) {
-                Edge edge = previousNode.neighbors.get(currentNodeId);
+            Node previousNode = overlay.getNode(previousNodeId);
+            Edge edge = previousNode != null ? overlay.getEdge(previousNode, currentNodeId) : null;
+            if (edge != null) {
                 if (edge.distance == 0.0) {
                     System.err.println("Zero-length edge detected between nodes: " + previousNodeId + " and " + currentNodeId);
                 }
@@ -168,12 +228,14 @@ public class Graph {
     
         if (!path.isEmpty() && path.get(0) != startNodeId) {
             path.add(0, startNodeId);
+            nodes.add(0, overlay.getNode(startNodeId));
         }
     
         // Prepare result
         Map<String, Object> result = new HashMap<>();
         result.put("distance", distances.getOrDefault(targetNodeId, Double.POSITIVE_INFINITY));
         result.put("path", path);
+        result.put("nodes", nodes); // The nodes of the path, including temporary ones that are not in the graph
         result.put("edges", edges); // Include edges in the result
         return result;
     }
@@ -186,33 +248,64 @@ public class Graph {
                 '}';
     }
 
-    // Reserved for generating unique negative node IDs for temporary nodes.
-    private static long temporaryNodeId = -1;
+    // IDs of the temporary nodes of a query. They are negative, so they never conflict with graph nodes.
+    private static final long TEMPORARY_START_ID = -1;
+    private static final long TEMPORARY_TARGET_ID = -2;
 
     /**
-     * Generates a unique negative node ID for temporary nodes.
-     * This ensures no conflict with existing positive node IDs in the graph.
-     *
-     * @return A unique negative long ID.
+     * The temporary nodes of one query and the edges that connect them to the graph. Edges from graph
+     * nodes to temporary nodes are kept here instead of in the graph nodes, so the graph is never changed.
      */
-    private static long getNextTemporaryNodeId() {
-        return temporaryNodeId--; // Decrement to ensure each ID is unique
+    private class Overlay {
+        private final Map<Long, Node> temporaryNodes = new HashMap<>(4);
+        private final Map<Long, Map<Long, Edge>> addedNeighbors = new HashMap<>(4);
+
+        Node getNode(long nodeId) {
+            Node node = temporaryNodes.get(nodeId);
+            return node != null ? node : adjacencyList.get(nodeId);
+        }
+
+        Iterable<Map.Entry<Long, Edge>> neighbors(Node node) {
+            Map<Long, Edge> added = addedNeighbors.get(node.nodeId);
+            if (added == null) {
+                return node.neighbors.entrySet();
+            }
+            List<Map.Entry<Long, Edge>> all = new ArrayList<>(node.neighbors.entrySet());
+            all.addAll(added.entrySet());
+            return all;
+        }
+
+        Edge getEdge(Node from, long toNodeId) {
+            Edge edge = from.neighbors.get(toNodeId);
+            if (edge == null) {
+                Map<Long, Edge> added = addedNeighbors.get(from.nodeId);
+                edge = added != null ? added.get(toNodeId) : null;
+            }
+            return edge;
+        }
+
+        void addEdge(Node from, long toNodeId, Edge edge) {
+            if (temporaryNodes.containsKey(from.nodeId)) {
+                from.addNeighbor(toNodeId, edge);
+            } else {
+                addedNeighbors.computeIfAbsent(from.nodeId, id -> new HashMap<>(4)).put(toNodeId, edge);
+            }
+        }
     }
 
     /**
-     * Adds a temporary node to the graph based on a TimedGeoPosition and connects it
+     * Adds a temporary node for a TimedGeoPosition to the overlay of a query and connects it
      * to the endpoints of the given segment.
      *
-     * @param graph The graph adjacency list.
      * @param timedGeoPosition The snapped position to be added.
      * @param segment The segment to which the temporary node will be connected.
-     * @return The newly created temporary node.
-     */    private Node addTemporaryNode(TimedGeoPosition timedGeoPosition, Segment segment) {
+     * @param tempNodeId The ID of the temporary node.
+     * @param overlay The overlay of the query.
+     * @return The newly created temporary node, or the endpoint the position coincides with.
+     */
+    private Node addTemporaryNode(TimedGeoPosition timedGeoPosition, Segment segment, long tempNodeId, Overlay overlay) {
 
         final double EPSILON = 1e-6; // Adjust as needed
-
-        // Generate a unique negative ID for the temporary node
-        long tempNodeId = getNextTemporaryNodeId();
     
         double tempLat = timedGeoPosition.getPosition().getLatitude();
         double tempLon = timedGeoPosition.getPosition().getLongitude();
@@ -227,6 +320,7 @@ public class Graph {
     
         // Create the temporary node
         Node tempNode = new Node(tempNodeId, tempLat, tempLon);
+        overlay.temporaryNodes.put(tempNodeId, tempNode);
     
         // Connect the temporary node to the endpoints of the segment
         for (Endpoint endpoint : segment.endpoints) {
@@ -252,52 +346,59 @@ public class Graph {
                 Edge edgeToTemp = new Edge(distance, existingEdge.streetType, existingEdge.maxSpeed, existingEdge.wayId);
     
                 // Add the connection in both directions
-                tempNode.addNeighbor(endpoint.nodeId, edgeToTemp);
-                endpointNode.addNeighbor(tempNodeId, edgeToTemp);
+                overlay.addEdge(tempNode, endpoint.nodeId, edgeToTemp);
+                overlay.addEdge(endpointNode, tempNodeId, edgeToTemp);
             }
         }
     
-        // Add the temporary node to the graph
-        adjacencyList.put(tempNodeId, tempNode);
-    
         return tempNode; // Return the created temporary node
     }
 
     /**
      * Main function to run Dijkstra's algorithm between two ClosestStreetResults
-     * by inserting temporary nodes into the graph.
+     * by inserting temporary nodes into an overlay of the graph. The graph is not changed,
+     * so this can be called from several threads at once.
      *
-     * @param graph The graph adjacency list.
      * @param start The starting ClosestStreetResult.
      * @param target The target ClosestStreetResult.
      * @return The result of Dijkstra's algorithm, including the distance and path.
      */
     public Map<String, Object> dijkstraBetweenClosestStreetResults(ClosestStreetResult start, ClosestStreetResult target) {
+        Overlay overlay = new Overlay();
+
         // Add a temporary node for the start position
-        Node startNode = addTemporaryNode(start.getPosition(), start.getSegment());
+        Node startNode = addTemporaryNode(start.getPosition(), start.getSegment(), TEMPORARY_START_ID, overlay);
     
         // Add a temporary node for the target position
-        Node targetNode = addTemporaryNode(target.getPosition(), target.getSegment());
+        Node targetNode = addTemporaryNode(target.getPosition(), target.getSegment(), TEMPORARY_TARGET_ID, overlay);
     
         // Run Dijkstra's algorithm between the two temporary nodes
-        Map<String, Object> result = dijkstraWithPath(startNode.nodeId, targetNode.nodeId);
+        Map<String, Object> result = dijkstraWithPath(startNode.nodeId, targetNode.nodeId, overlay);
     
         return result; // Return the shortest path and distance
     }
 
     //Used to convert a path of node IDs to a GPXData object with the map matcher
     public GPXData convertPathToGPXData(List<Long> path, String name) {
-        List<TimedGeoPosition> trackPoints = new ArrayList<>();
-        Set<Waypoint> waypoints = new HashSet<>();
-    
-        // Iterate through the path to retrieve coordinates
+        List<Node> nodes = new ArrayList<>();
         for (Long nodeId : path) {
             Node node = adjacencyList.get(nodeId);
             if (node == null) {
                 System.err.println("Node " + nodeId + " does not exist in the graph.");
                 continue;
             }
+            nodes.add(node);
+        }
+        return convertNodesToGPXData(nodes, name);
+    }
+
+    // Used to convert the "nodes" of dijkstra results, which include the temporary nodes of each query
+    public GPXData convertNodesToGPXData(List<Node> nodes, String name) {
+        List<TimedGeoPosition> trackPoints = new ArrayList<>();
+        Set<Waypoint> waypoints = new HashSet<>();
     
+        // Iterate through the path to retrieve coordinates
+        for (Node node : nodes) {
             // Convert the node to TimedGeoPosition (use a dummy timestamp if not provided)
             double lat = node.lat;
             double lon = node.lon;
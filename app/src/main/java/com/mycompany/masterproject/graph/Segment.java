@@ -8,10 +8,26 @@ import com.mycompany.masterproject.grid.Endpoint;
 public class Segment {
     public int way_id;
     public List<Endpoint> endpoints;
+    // ID assigned when the segment is loaded, -1 if it has none. Segments with the same ID are the same
+    // street segment, so equality and hashing only need the ID. Segments of a grid file are interned by way
+    // and node IDs in the order they first appear in grid.jsonl, so the copies of a street clipped into
+    // several cells share one ID, and the eager, lazy and binary grid of one file give the same IDs. Grids
+    // built from the graph use the edge index in Graph.getEdgeList(). IDs of different files, or of a file
+    // and a graph-built grid, are not comparable.
+    public final int id;
 
     public Segment(int way_id, List<Endpoint> endpoints) {
+        this(way_id, endpoints, -1);
+    }
+
+    public Segment(int way_id, List<Endpoint> endpoints, int id) {
         this.way_id = way_id;
         this.endpoints = endpoints;
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
     }
 
     public boolean equals(Object obj) {
@@ -20,9 +36,18 @@ public class Segment {
 
         Segment other = (Segment) obj;
 
+        // Segments with IDs are compared by ID only, a segment with an ID never equals one without
+        if (this.id >= 0 || other.id >= 0) {
+            return this.id == other.id;
+        }
+
         // Compare `way_id` and `endpoints` for equality
-        return this.way_id == other.way_id && 
+        return this.way_id == other.way_id &&
                Objects.equals(this.endpoints, other.endpoints);
     }
-}
 
+    @Override
+    public int hashCode() {
+        return id >= 0 ? id : Objects.hash(way_id, endpoints);
+    }
+}
@@ -35,6 +35,11 @@ public class TimedGeoPosition {
                this.timestamp == other.timestamp;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(position, timestamp);
+    }
+
     @Override
     public String toString() {
         return "TimedGeoPosition [position=" + position + ", timestamp=" + timestamp + "]";
@@ -0,0 +1,266 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Street index whose cells adapt to the road density. It is a quadtree over the bounds of a StreetGrid:
+ * a cell holding more than maxSegmentsPerLeaf segments is split into four quadrants, down to a quarter
+ * of the original cell size. Sparse regions are never split, so one large leaf covers what would be many
+ * almost empty cells of the fixed grid, while dense areas get leaves much smaller than cell_size.
+ *
+ * A query looks at all leaves overlapping the box of +-cell_size around the point, which covers the
+ * same area as the 3x3 cells searched by StreetGrid, and ranks the segments the same way.
+ */
+public class AdaptiveStreetGrid implements StreetIndex {
+
+    public static final int DEFAULT_MAX_SEGMENTS_PER_LEAF = 32;
+    private static final int MIN_LEAF_FRACTION = 4; // Smallest leaf: cell_size / 4
+
+    private final Node root;
+    private final double searchRadius;
+    private final QueryStats queryStats = new QueryStats();
+    private int leafCount = 0;
+    private long referenceCount = 0;
+    private int maxDepth = 0;
+
+    /**
+     * Quadtree node. Inner nodes have four children, leaves hold their segments.
+     */
+    private static class Node {
+        final double minLat, minLon, maxLat, maxLon;
+        Node[] children;
+        List<Segment> segments;
+        SegmentColumns columns;
+
+        Node(double minLat, double minLon, double maxLat, double maxLon) {
+            this.minLat = minLat;
+            this.minLon = minLon;
+            this.maxLat = maxLat;
+            this.maxLon = maxLon;
+        }
+
+        boolean overlaps(double lowLat, double lowLon, double highLat, double highLon) {
+            return minLat <= highLat && maxLat >= lowLat && minLon <= highLon && maxLon >= lowLon;
+        }
+    }
+
+    /**
+     * Builds the quadtree from the segments of a loaded or built grid.
+     *
+     * @param grid               The fixed-size grid, e.g. from StreetGridLoader or StreetGridBuilder.
+     * @param maxSegmentsPerLeaf Leaves with more segments are split.
+     */
+    public AdaptiveStreetGrid(StreetGrid grid, int maxSegmentsPerLeaf) {
+        if (maxSegmentsPerLeaf < 1) {
+            throw new IllegalArgumentException("A leaf must be allowed to hold at least one segment.");
+        }
+        GridBounds bounds = grid.getBounds();
+        this.searchRadius = bounds.cell_size;
+
+        // Every segment once (a segment can be listed in several cells), in a stable order
+        List<GridCell> cells = new ArrayList<>(grid.getCells());
+        cells.sort(Comparator.comparingInt(GridCell::getOriginalRow).thenComparingInt(GridCell::getOriginalCol));
+        Set<Segment> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Segment> segments = new ArrayList<>();
+        for (GridCell cell : cells) {
+            for (Segment segment : cell.segments) {
+                if (seen.add(segment)) {
+                    segments.add(segment);
+                }
+            }
+        }
+
+        root = new Node(bounds.min_lat, bounds.min_lon, bounds.max_lat, bounds.max_lon);
+        build(root, segments, maxSegmentsPerLeaf, bounds.cell_size / MIN_LEAF_FRACTION, 0);
+    }
+
+    private void build(Node node, List<Segment> segments, int maxSegmentsPerLeaf, double minLeafSize, int depth) {
+        double height = node.maxLat - node.minLat;
+        double width = node.maxLon - node.minLon;
+        if (segments.size() <= maxSegmentsPerLeaf || (height / 2 < minLeafSize && width / 2 < minLeafSize)) {
+            node.segments = segments;
+            node.columns = SegmentColumns.of(segments);
+            leafCount++;
+            referenceCount += segments.size();
+            maxDepth = Math.max(maxDepth, depth);
+            return;
+        }
+        double midLat = node.minLat + height / 2;
+        double midLon = node.minLon + width / 2;
+        node.children = new Node[]{
+            new Node(node.minLat, node.minLon, midLat, midLon),
+            new Node(node.minLat, midLon, midLat, node.maxLon),
+            new Node(midLat, node.minLon, node.maxLat, midLon),
+            new Node(midLat, midLon, node.maxLat, node.maxLon)
+        };
+        for (Node child : node.children) {
+            List<Segment> childSegments = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (intersects(segment, child)) {
+                    childSegments.add(segment);
+                }
+            }
+            build(child, childSegments, maxSegmentsPerLeaf, minLeafSize, depth + 1);
+        }
+    }
+
+    private static boolean intersects(Segment segment, Node node) {
+        Endpoint start = segment.endpoints.get(0);
+        Endpoint end = segment.endpoints.get(1);
+        if (start.lat == end.lat && start.lon == end.lon) {
+            return node.overlaps(start.lat, start.lon, start.lat, start.lon); // Degenerate segment
+        }
+        return StreetGridBuilder.crossesBox(start, end, node.minLat, node.minLon, node.maxLat, node.maxLon);
+    }
+
+    @Override
+    public List<ClosestStreetResult> findClosestStreets(TimedGeoPosition timedGeoPosition, int c) {
+        double lat = timedGeoPosition.getPosition().getLatitude();
+        double lon = timedGeoPosition.getPosition().getLongitude();
+        double[] pointMeters = GridGeometry.latLonToMeters(lat, lon);
+
+        List<Node> leaves = new ArrayList<>();
+        collectLeaves(root, lat - searchRadius, lon - searchRadius, lat + searchRadius, lon + searchRadius, leaves);
+
+        PriorityQueue<ClosestStreetResult> closestResults = new PriorityQueue<>(
+            Comparator.comparingDouble(result -> GridGeometry.pointToMeters(
+                lat, lon,
+                result.getPosition().getPosition().getLatitude(),
+                result.getPosition().getPosition().getLongitude()))
+        );
+
+        int segmentsScanned = 0;
+        for (Node leaf : leaves) {
+            SegmentColumns columns = leaf.columns;
+            double[] t = SegmentProjection.scratch(columns.size);
+            SegmentProjection.project(columns, pointMeters[0], pointMeters[1], t);
+            segmentsScanned += columns.size;
+
+            // Segments crossing several leaves show up more than once, the wayId check below drops the copies
+            for (int i = 0; i < columns.size; i++) {
+                Segment segment = leaf.segments.get(i);
+                double[] closestPoint = StreetGrid.closestPointOnSegment(columns, i, t[i], segment);
+                closestResults.add(new ClosestStreetResult(
+                    new TimedGeoPosition(
+                        new GeoPosition(closestPoint[0], closestPoint[1]),
+                        timedGeoPosition.getTimestamp()
+                    ),
+                    segment
+                ));
+            }
+        }
+        queryStats.record(leaves.size(), segmentsScanned);
+
+        // Retrieve the top 'c' closest streets without duplicate wayIds
+        Set<Integer> seenWayIds = new HashSet<>();
+        List<ClosestStreetResult> result = new ArrayList<>();
+        while (!closestResults.isEmpty() && result.size() < c) {
+            ClosestStreetResult next = closestResults.poll();
+            if (seenWayIds.add(next.getSegment().way_id)) {
+                result.add(next);
+            }
+        }
+        return result;
+    }
+
+    private static void collectLeaves(Node node, double lowLat, double lowLon, double highLat, double highLon, List<Node> leaves) {
+        if (!node.overlaps(lowLat, lowLon, highLat, highLon)) {
+            return;
+        }
+        if (node.children == null) {
+            if (node.columns.size > 0) {
+                leaves.add(node);
+            }
+            return;
+        }
+        for (Node child : node.children) {
+            collectLeaves(child, lowLat, lowLon, highLat, highLon, leaves);
+        }
+    }
+
+    /**
+     * Returns the counters of the queries answered by this grid.
+     */
+    public QueryStats getQueryStats() {
+        return queryStats;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    // Number of segment entries over all leaves
+    long getReferenceCount() {
+        return referenceCount;
+    }
+
+    /**
+     * Compares segment scans per query of the fixed grid and the adaptive grid.
+     * Usage: AdaptiveStreetGrid [grid.jsonl] [maxSegmentsPerLeaf] [queries]
+     */
+    public static void main(String[] args) throws IOException {
+        String gridPath = args.length > 0 ? args[0] : "./input/grid.jsonl";
+        int maxSegmentsPerLeaf = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SEGMENTS_PER_LEAF;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        StreetGrid grid = StreetGridLoader.loadStreetGrid(gridPath);
+        long startTime = System.nanoTime();
+        AdaptiveStreetGrid adaptiveGrid = new AdaptiveStreetGrid(grid, maxSegmentsPerLeaf);
+        long endTime = System.nanoTime();
+        System.out.println("Time to build adaptive grid: " + (endTime - startTime) / 1_000_000.0 + " ms ("
+                + adaptiveGrid.getLeafCount() + " leaves, depth " + adaptiveGrid.getMaxDepth()
+                + ", fixed grid has " + grid.getCells().size() + " cells)");
+
+        // Random queries over the bounds of the grid
+        GridBounds bounds = grid.getBounds();
+        Random random = new Random(42);
+        List<TimedGeoPosition> points = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            points.add(new TimedGeoPosition(new GeoPosition(
+                    bounds.min_lat + random.nextDouble() * (bounds.max_lat - bounds.min_lat),
+                    bounds.min_lon + random.nextDouble() * (bounds.max_lon - bounds.min_lon)), i));
+        }
+
+        int sameClosest = 0;
+        int bothFound = 0;
+        long fixedNanos = 0;
+        long adaptiveNanos = 0;
+        for (TimedGeoPosition point : points) {
+            long start1 = System.nanoTime();
+            List<ClosestStreetResult> fixed = grid.findClosestStreets(point, 4);
+            long start2 = System.nanoTime();
+            List<ClosestStreetResult> adaptive = adaptiveGrid.findClosestStreets(point, 4);
+            long end2 = System.nanoTime();
+            fixedNanos += start2 - start1;
+            adaptiveNanos += end2 - start2;
+            if (!fixed.isEmpty() && !adaptive.isEmpty()) {
+                bothFound++;
+                if (fixed.get(0).getSegment().way_id == adaptive.get(0).getSegment().way_id) {
+                    sameClosest++;
+                }
+            }
+        }
+        System.out.printf("Fixed grid:    %s, %.1f us/query%n", grid.getQueryStats(), fixedNanos / 1000.0 / queries);
+        System.out.printf("Adaptive grid: %s, %.1f us/query%n", adaptiveGrid.getQueryStats(), adaptiveNanos / 1000.0 / queries);
+        System.out.println("Same closest way: " + sameClosest + " of " + bothFound + " queries with results in both");
+    }
+}
@@ -0,0 +1,52 @@
+package com.mycompany.masterproject.grid;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.mycompany.masterproject.data.CandidateTable;
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Implementation of StreetIndex.findClosestStreets for whole trajectories.
+ */
+final class BatchLookup {
+
+    // Raster used to order the points, the default grid cell size
+    private static final double ORDER_CELL_SIZE = StreetGridBuilder.DEFAULT_CELL_SIZE;
+
+    private BatchLookup() {
+    }
+
+    static CandidateTable run(StreetIndex index, List<TimedGeoPosition> trackPoints, int c, boolean parallel) {
+        CandidateTable table = new CandidateTable(trackPoints.size(), c);
+
+        // Visit the points cell by cell (row, then col) instead of in track order
+        Integer[] order = new Integer[trackPoints.size()];
+        long[] rows = new long[trackPoints.size()];
+        long[] cols = new long[trackPoints.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            rows[i] = (long) Math.floor(trackPoints.get(i).getPosition().getLatitude() / ORDER_CELL_SIZE);
+            cols[i] = (long) Math.floor(trackPoints.get(i).getPosition().getLongitude() / ORDER_CELL_SIZE);
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> rows[i]).thenComparingLong(i -> cols[i]));
+
+        IntStream positions = IntStream.range(0, order.length);
+        if (parallel) {
+            positions = positions.parallel();
+        }
+        // Every point writes only its own entry of the table
+        positions.forEach(k -> {
+            int pointIndex = order[k];
+            List<ClosestStreetResult> candidates = index.findClosestStreets(trackPoints.get(pointIndex), c);
+            for (ClosestStreetResult candidate : candidates) {
+                candidate.setPointIndex(pointIndex);
+            }
+            table.set(pointIndex, candidates);
+        });
+        return table;
+    }
+}
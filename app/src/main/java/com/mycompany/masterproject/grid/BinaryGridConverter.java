@@ -0,0 +1,172 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mycompany.masterproject.graph.Segment;
+
+/**
+ * Converts a grid.jsonl file into the binary grid format read by MappedStreetGrid.
+ *
+ * Layout (little endian, every section starts at a multiple of 8 bytes):
+ * <pre>
+ * Header      magic "SGRD", version, min_lon, max_lon, min_lat, max_lat, cell_size,
+ *             cellCount, referenceCount, segmentCount, vertexCount
+ * Cells       cellCount x (int row, int col, int firstReference, int referenceCount), sorted by (row, col)
+ * References  referenceCount x int segment index
+ * Segments    segmentCount x (int wayId, int startVertex, int endVertex, int segmentId)
+ * Vertices    vertexCount x (long nodeId, double lat, double lon, double x, double y)
+ * </pre>
+ * Endpoints that repeat across segments and cells are stored once in the vertex table, and a segment
+ * that is listed in several cells is stored once in the segment table. The vertex table also holds the
+ * meter projection (x, y) so queries do not need to recompute it.
+ *
+ * The segment ID is the one the segment has in the grid that was converted. For a grid.jsonl file that is
+ * its interned ID (see StreetGridLoader.SegmentInterner), which copies clipped into different cells share
+ * although they are separate entries of the segment table.
+ */
+public class BinaryGridConverter {
+
+    static final int MAGIC = 0x53475244; // "SGRD"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 64;
+    static final int CELL_BYTES = 16;
+    static final int REFERENCE_BYTES = 4;
+    static final int SEGMENT_BYTES = 16;
+    static final int VERTEX_BYTES = 40;
+
+    private record SegmentKey(int wayId, int startVertex, int endVertex, int id) {
+    }
+
+    /**
+     * Reads a grid.jsonl file and writes it in the binary format.
+     *
+     * @param jsonlPath  The grid.jsonl file produced by the preprocessing.
+     * @param binaryPath The output file.
+     * @return The numbers of cells, segments, references and vertices written.
+     * @throws IOException If reading or writing fails.
+     */
+    public static int[] convert(String jsonlPath, String binaryPath) throws IOException {
+        return convert(StreetGridLoader.loadStreetGrid(jsonlPath), binaryPath);
+    }
+
+    /**
+     * Writes a loaded grid in the binary format.
+     *
+     * @return The numbers of cells, segments, references and vertices written.
+     */
+    static int[] convert(StreetGrid grid, String binaryPath) throws IOException {
+        GridBounds bounds = grid.getBounds();
+
+        List<GridCell> cells = new ArrayList<>(grid.getCells());
+        cells.sort(Comparator.comparingInt(GridCell::getOriginalRow).thenComparingInt(GridCell::getOriginalCol));
+
+        // Deduplicate endpoints and segments
+        Map<Endpoint, Integer> vertexIndex = new HashMap<>();
+        List<Endpoint> vertices = new ArrayList<>();
+        Map<SegmentKey, Integer> segmentIndex = new HashMap<>();
+        List<SegmentKey> segments = new ArrayList<>();
+        int referenceCount = 0;
+        for (GridCell cell : cells) {
+            for (Segment segment : cell.segments) {
+                int start = vertexIndex.computeIfAbsent(segment.endpoints.get(0), endpoint -> {
+                    vertices.add(endpoint);
+                    return vertices.size() - 1;
+                });
+                int end = vertexIndex.computeIfAbsent(segment.endpoints.get(1), endpoint -> {
+                    vertices.add(endpoint);
+                    return vertices.size() - 1;
+                });
+                segmentIndex.computeIfAbsent(new SegmentKey(segment.way_id, start, end, segment.id), key -> {
+                    segments.add(key);
+                    return segments.size() - 1;
+                });
+                referenceCount++;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(Path.of(binaryPath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = newSection(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.putDouble(bounds.min_lon).putDouble(bounds.max_lon);
+            header.putDouble(bounds.min_lat).putDouble(bounds.max_lat);
+            header.putDouble(bounds.cell_size);
+            header.putInt(cells.size()).putInt(referenceCount).putInt(segments.size()).putInt(vertices.size());
+            writeSection(channel, header);
+
+            ByteBuffer cellTable = newSection((long) cells.size() * CELL_BYTES);
+            ByteBuffer references = newSection((long) referenceCount * REFERENCE_BYTES);
+            int firstReference = 0;
+            for (GridCell cell : cells) {
+                cellTable.putInt(cell.getOriginalRow()).putInt(cell.getOriginalCol());
+                cellTable.putInt(firstReference).putInt(cell.segments.size());
+                for (Segment segment : cell.segments) {
+                    int start = vertexIndex.get(segment.endpoints.get(0));
+                    int end = vertexIndex.get(segment.endpoints.get(1));
+                    references.putInt(segmentIndex.get(new SegmentKey(segment.way_id, start, end, segment.id)));
+                }
+                firstReference += cell.segments.size();
+            }
+            writeSection(channel, cellTable);
+            writeSection(channel, references);
+
+            ByteBuffer segmentTable = newSection((long) segments.size() * SEGMENT_BYTES);
+            for (SegmentKey segment : segments) {
+                segmentTable.putInt(segment.wayId()).putInt(segment.startVertex()).putInt(segment.endVertex()).putInt(segment.id());
+            }
+            writeSection(channel, segmentTable);
+
+            ByteBuffer vertexTable = newSection((long) vertices.size() * VERTEX_BYTES);
+            for (Endpoint vertex : vertices) {
+                double[] meters = GridGeometry.latLonToMeters(vertex.lat, vertex.lon);
+                vertexTable.putLong(vertex.nodeId).putDouble(vertex.lat).putDouble(vertex.lon);
+                vertexTable.putDouble(meters[0]).putDouble(meters[1]);
+            }
+            writeSection(channel, vertexTable);
+        }
+        return new int[]{cells.size(), segments.size(), referenceCount, vertices.size()};
+    }
+
+    /**
+     * Rounds a section length up to the next multiple of 8 bytes.
+     */
+    static long padded(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static ByteBuffer newSection(long bytes) throws IOException {
+        if (padded(bytes) > Integer.MAX_VALUE) {
+            throw new IOException("Grid section of " + bytes + " bytes is too large for the binary grid format.");
+        }
+        return ByteBuffer.allocate((int) padded(bytes)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeSection(FileChannel channel, ByteBuffer section) throws IOException {
+        section.position(0);
+        while (section.hasRemaining()) {
+            channel.write(section);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String jsonlPath = args.length > 0 ? args[0] : "./input/grid.jsonl";
+        String binaryPath = args.length > 1 ? args[1] : "./input/grid.bin";
+
+        long startTime = System.nanoTime();
+        int[] counts = convert(jsonlPath, binaryPath);
+        long endTime = System.nanoTime();
+        System.out.println("Binary grid written to " + binaryPath + ": " + counts[0] + " cells, "
+                + counts[1] + " segments (" + counts[2] + " references), " + counts[3] + " vertices");
+        System.out.println("Time to convert grid: " + (endTime - startTime) / 1_000_000.0 + " ms");
+    }
+}
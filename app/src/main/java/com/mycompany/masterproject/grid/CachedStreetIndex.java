@@ -0,0 +1,201 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.data.GPXData;
+import com.mycompany.masterproject.gpx.GPXLoader;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Caches the candidate segments of another StreetIndex for positions that are close to each other,
+ * e.g. vehicles driving the same roads in different trajectories. Positions are quantized to a raster
+ * of the given step (in degrees); the key is the raster cell together with c.
+ *
+ * A cache entry holds the candidate segments and their meter projection. On a hit the exact point is
+ * projected onto these segments again and the results are re-sorted by distance, so the snapped points
+ * are exact; only the choice of candidate segments is the one made for the first position of the cell.
+ * The step therefore trades hit rate against accuracy and should stay well below the cell size.
+ *
+ * The cache holds at most maxEntries entries; the oldest entries are evicted first.
+ */
+public class CachedStreetIndex implements StreetIndex {
+
+    public static final double DEFAULT_STEP = 0.00005; // About 5 m
+
+    private record SnapKey(long row, long col, int c) {
+    }
+
+    private record CacheEntry(List<Segment> segments, SegmentColumns columns) {
+    }
+
+    private final StreetIndex delegate;
+    private final double step;
+    private final int maxEntries;
+    private final Map<SnapKey, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Queue<SnapKey> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param delegate   The index answering cache misses.
+     * @param step       Quantization step in degrees.
+     * @param maxEntries Maximum number of cached positions.
+     */
+    public CachedStreetIndex(StreetIndex delegate, double step, int maxEntries) {
+        if (!(step > 0)) {
+            throw new IllegalArgumentException("Quantization step must be positive.");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one entry.");
+        }
+        this.delegate = delegate;
+        this.step = step;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public List<ClosestStreetResult> findClosestStreets(TimedGeoPosition timedGeoPosition, int c) {
+        double lat = timedGeoPosition.getPosition().getLatitude();
+        double lon = timedGeoPosition.getPosition().getLongitude();
+        SnapKey key = new SnapKey((long) Math.floor(lat / step), (long) Math.floor(lon / step), c);
+
+        CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            misses.increment();
+            List<ClosestStreetResult> results = delegate.findClosestStreets(timedGeoPosition, c);
+            List<Segment> segments = new ArrayList<>(results.size());
+            for (ClosestStreetResult result : results) {
+                segments.add(result.getSegment());
+            }
+            if (cache.putIfAbsent(key, new CacheEntry(segments, SegmentColumns.of(segments))) == null) {
+                insertionOrder.add(key);
+                evict();
+            }
+            return results;
+        }
+        hits.increment();
+
+        // Snap the exact point onto the cached segments and order them by the new distances
+        double[] pointMeters = GridGeometry.latLonToMeters(lat, lon);
+        SegmentColumns columns = entry.columns();
+        double[] t = SegmentProjection.scratch(columns.size);
+        SegmentProjection.project(columns, pointMeters[0], pointMeters[1], t);
+        List<ClosestStreetResult> results = new ArrayList<>(columns.size);
+        double[] distances = new double[columns.size];
+        for (int i = 0; i < columns.size; i++) {
+            double[] closestPoint = StreetGrid.closestPointOnSegment(columns, i, t[i], entry.segments().get(i));
+            distances[i] = GridGeometry.pointToMeters(lat, lon, closestPoint[0], closestPoint[1]);
+            results.add(new ClosestStreetResult(
+                new TimedGeoPosition(new GeoPosition(closestPoint[0], closestPoint[1]), timedGeoPosition.getTimestamp()),
+                entry.segments().get(i)
+            ));
+        }
+        // Insertion sort, the lists hold only c entries
+        for (int i = 1; i < results.size(); i++) {
+            for (int k = i; k > 0 && distances[k] < distances[k - 1]; k--) {
+                double distance = distances[k];
+                distances[k] = distances[k - 1];
+                distances[k - 1] = distance;
+                Collections.swap(results, k, k - 1);
+            }
+        }
+        return results;
+    }
+
+    private void evict() {
+        while (cache.size() > maxEntries) {
+            SnapKey oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            cache.remove(oldest);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long total = hits.sum() + misses.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+        insertionOrder.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachedStreetIndex[step=%g, entries=%d, hits=%d, misses=%d, hitRate=%.3f]",
+                step, cache.size(), hits.sum(), misses.sum(), getHitRate());
+    }
+
+    /**
+     * Replays all GPX tracks of a directory through caches of different quantization steps and reports
+     * the hit rate and how often the closest street differs from the uncached index.
+     * Usage: CachedStreetIndex [grid file] [gpx directory] [c]
+     */
+    public static void main(String[] args) throws IOException {
+        String gridPath = args.length > 0 ? args[0] : "./input/grid.jsonl";
+        String gpxDirectory = args.length > 1 ? args[1] : "./TestData";
+        int c = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        StreetIndex index = StreetGridLoader.loadStreetIndex(gridPath);
+        List<GPXData> tracks = new GPXLoader().loadGPXDirectory(new File(gpxDirectory));
+        if (tracks.isEmpty()) {
+            System.err.println("No GPX files found in " + gpxDirectory);
+            return;
+        }
+        List<TimedGeoPosition> points = new ArrayList<>();
+        for (GPXData track : tracks) {
+            points.addAll(track.getTrackPoints());
+        }
+        System.out.println("Replaying " + points.size() + " points from " + tracks.size() + " tracks");
+
+        List<List<ClosestStreetResult>> reference = new ArrayList<>();
+        for (TimedGeoPosition point : points) {
+            reference.add(index.findClosestStreets(point, c));
+        }
+        for (double step : new double[]{0.00001, 0.00005, 0.0001, 0.0002}) {
+            CachedStreetIndex cachedIndex = new CachedStreetIndex(index, step, 100_000);
+            int changed = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < points.size(); i++) {
+                List<ClosestStreetResult> results = cachedIndex.findClosestStreets(points.get(i), c);
+                List<ClosestStreetResult> expected = reference.get(i);
+                if (results.isEmpty() != expected.isEmpty()
+                        || (!results.isEmpty() && results.get(0).getSegment().way_id != expected.get(0).getSegment().way_id)) {
+                    changed++;
+                }
+            }
+            long endTime = System.nanoTime();
+            System.out.printf("%s, %.2f ms, closest street changed for %d points%n",
+                    cachedIndex, (endTime - startTime) / 1_000_000.0, changed);
+        }
+    }
+}
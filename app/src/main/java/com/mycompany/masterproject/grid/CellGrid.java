@@ -0,0 +1,154 @@
+package com.mycompany.masterproject.grid;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * The closest-street query over a grid of fixed-size cells. Subclasses only decide where a cell comes from:
+ * StreetGrid holds all its cells, LazyStreetGrid reads them from its file on first access.
+ */
+abstract class CellGrid implements StreetIndex {
+    private final GridBounds bounds;
+    private final QueryStats queryStats = new QueryStats();
+
+    CellGrid(GridBounds bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * Returns the cell with the given ID, or null if the grid has no segments there.
+     */
+    abstract GridCell getCell(CellId cellId);
+
+    private List<CellId> getNearbyCells(double lat, double lon) {
+        List<CellId> cells = new ArrayList<>();
+        double[] dLat = {0, bounds.cell_size, -bounds.cell_size};
+        double[] dLon = {0, bounds.cell_size, -bounds.cell_size};
+    
+        for (double dLatOffset : dLat) {
+            for (double dLonOffset : dLon) {
+                double nearbyLat = lat + dLatOffset;
+                double nearbyLon = lon + dLonOffset;
+                cells.add(getCellId(nearbyLat, nearbyLon));
+            }
+        }
+        return cells;
+    }
+        
+    //returns the c closest streets to the given point. It returns the point on the street segment and the segment itself. Additionally it does not return the same wayID twice.
+    @Override
+    public List<ClosestStreetResult> findClosestStreets(TimedGeoPosition timedGeoPosition, int c) {
+        double lat = timedGeoPosition.getPosition().getLatitude();
+        double lon = timedGeoPosition.getPosition().getLongitude();
+        double[] pointMeters = GridGeometry.latLonToMeters(lat, lon);
+        List<CellId> nearbyCells = getNearbyCells(lat, lon); // Retrieve nearby cells based on coordinates.
+    
+        PriorityQueue<ClosestStreetResult> closestResults = new PriorityQueue<>(
+            Comparator.comparingDouble(result -> GridGeometry.pointToMeters(
+                lat, lon, 
+                result.getPosition().getPosition().getLatitude(), 
+                result.getPosition().getPosition().getLongitude()))
+        );
+    
+        // Iterate over each nearby cell and find the closest street segments.
+        int cellsVisited = 0;
+        int segmentsScanned = 0;
+        for (CellId cellId : nearbyCells) {
+            GridCell cell = getCell(cellId); // Get the cell from the grid.
+            if (cell != null) {
+                cellsVisited++;
+                segmentsScanned += cell.segments.size();
+                // Project the point onto all segments of the cell in one pass
+                SegmentColumns columns = cell.getColumns();
+                double[] t = SegmentProjection.scratch(columns.size);
+                SegmentProjection.project(columns, pointMeters[0], pointMeters[1], t);
+
+                for (int i = 0; i < columns.size; i++) { // Check each segment in the cell.
+                    Segment segment = cell.segments.get(i);
+                    double[] closestPoint = closestPointOnSegment(columns, i, t[i], segment); // Closest point on the segment.
+    
+                    // Create ClosestStreetResult
+                    ClosestStreetResult result = new ClosestStreetResult(
+                        new TimedGeoPosition(
+                            new GeoPosition(closestPoint[0], closestPoint[1]), 
+                            timedGeoPosition.getTimestamp()
+                        ),
+                        segment
+                    );
+    
+                    // Add to priority queue
+                    closestResults.add(result);
+                }
+            }
+        }
+    
+        queryStats.record(cellsVisited, segmentsScanned);
+
+        // Retrieve the top 'c' closest streets without duplicate wayIds
+        Set<Integer> seenWayIds = new HashSet<>();
+        List<ClosestStreetResult> result = new ArrayList<>();
+    
+        while (!closestResults.isEmpty() && result.size() < c) {
+            ClosestStreetResult next = closestResults.poll();
+            int wayId = next.getSegment().way_id;
+    
+            if (!seenWayIds.contains(wayId)) {
+                seenWayIds.add(wayId);
+                result.add(next);
+            }
+        }
+    
+        return result;
+    }
+    
+    
+    /**
+     * Converts the projection factor t of segment i back to the closest point (lat, lon) on that segment.
+     */
+    static double[] closestPointOnSegment(SegmentColumns columns, int i, double t, Segment segment) {
+        if (columns.lengthSquared[i] == 0) {
+            // The segment is a point
+            Endpoint start = segment.endpoints.get(0);
+            System.out.println("Segment is a point at (" + start.lat + ", " + start.lon + ")");
+            return new double[]{start.lat, start.lon};
+        }
+    
+        // Closest point in meters
+        double closestX = columns.startX[i] + t * columns.deltaX[i];
+        double closestY = columns.startY[i] + t * columns.deltaY[i];
+    
+        // Convert back to lat/lon for the closest point
+        return GridGeometry.metersToLatLon(closestX, closestY);
+    }
+
+    /**
+     * Returns the counters of the queries answered by this grid.
+     */
+    public QueryStats getQueryStats() {
+        return queryStats;
+    }
+
+    GridBounds getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Helper method to calculate the CellId for a given latitude and longitude.
+     * Interprets coordinates as (lon, lat) in the input.
+     */
+    private CellId getCellId(double lat, double lon) {
+        int row = (int) ((lat - bounds.min_lat) / bounds.cell_size);
+        int col = (int) ((lon - bounds.min_lon) / bounds.cell_size);
+        return new CellId(row, col);
+    }
+}
@@ -0,0 +1,221 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.data.GPXData;
+import com.mycompany.masterproject.gpx.GPXLoader;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Benchmarks grid layouts on sample trajectories and recommends one. For a range of cell sizes a grid is
+ * built from the graph (plus adaptive grids on top of the default cell size), and the points of the GPX
+ * tracks are replayed through findClosestStreets. For each layout it reports the p50/p99 query latency,
+ * the segments scanned per query, an estimate of the memory footprint and the recall of the true nearest
+ * segment, which is found by projecting the point onto every segment of the network.
+ *
+ * The recommendation is the layout with the lowest p99 latency among those with the best recall (within
+ * 0.1 percentage points).
+ *
+ * Usage: CellSizeTuner [graph.jsonl] [gpx directory] [c] [max points]
+ */
+public class CellSizeTuner {
+
+    private static final double[] CELL_SIZES = {0.00025, 0.0005, 0.001, 0.002};
+    private static final int[] LEAF_THRESHOLDS = {8, 32, 128};
+    private static final double DISTANCE_TOLERANCE = 1e-6; // meters
+    private static final int WARMUP_ROUNDS = 3;
+
+    // Rough per-object sizes for the memory estimate (64-bit JVM with compressed references)
+    private static final long BYTES_PER_CELL = 200;      // map entry, CellId, GridCell, list, columns and array headers
+    private static final long BYTES_PER_REFERENCE = 44;  // list slot plus five doubles of SegmentColumns
+    private static final long BYTES_PER_SEGMENT = 72;    // Segment and its endpoint list; endpoints are shared
+
+    /**
+     * Result of one layout.
+     */
+    private record Measurement(String name, double p50Micros, double p99Micros, double segmentsPerQuery,
+                               long estimatedBytes, double recall) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String graphPath = args.length > 0 ? args[0] : "./input/graph.jsonl";
+        String gpxDirectory = args.length > 1 ? args[1] : "./TestData";
+        int c = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int maxPoints = args.length > 3 ? Integer.parseInt(args[3]) : 5000;
+
+        Graph graph = new Graph();
+        graph.readFromJsonl(graphPath);
+
+        List<TimedGeoPosition> points = new ArrayList<>();
+        for (GPXData track : new GPXLoader().loadGPXDirectory(new File(gpxDirectory))) {
+            points.addAll(track.getTrackPoints());
+        }
+        if (points.isEmpty()) {
+            System.err.println("No track points found in " + gpxDirectory);
+            return;
+        }
+        if (points.size() > maxPoints) {
+            // Keep a random sample so the brute-force reference stays affordable
+            Collections.shuffle(points, new Random(42));
+            points = new ArrayList<>(points.subList(0, maxPoints));
+        }
+        System.out.println("Replaying " + points.size() + " points, c = " + c);
+
+        // Layouts to compare
+        Map<String, StreetIndex> layouts = new LinkedHashMap<>();
+        Map<String, Long> memory = new HashMap<>();
+        StreetGrid defaultGrid = null;
+        for (double cellSize : CELL_SIZES) {
+            StreetGrid grid = StreetGridBuilder.fromGraph(graph, cellSize);
+            String name = "grid " + cellSize;
+            layouts.put(name, grid);
+            memory.put(name, estimateBytes(grid));
+            if (cellSize == StreetGridBuilder.DEFAULT_CELL_SIZE) {
+                defaultGrid = grid;
+            }
+        }
+        if (defaultGrid == null) {
+            defaultGrid = StreetGridBuilder.fromGraph(graph, StreetGridBuilder.DEFAULT_CELL_SIZE);
+        }
+        for (int threshold : LEAF_THRESHOLDS) {
+            AdaptiveStreetGrid adaptiveGrid = new AdaptiveStreetGrid(defaultGrid, threshold);
+            String name = "adaptive " + threshold;
+            layouts.put(name, adaptiveGrid);
+            memory.put(name, adaptiveGrid.getLeafCount() * BYTES_PER_CELL
+                    + adaptiveGrid.getReferenceCount() * BYTES_PER_REFERENCE
+                    + graph.getEdgeList().size() * BYTES_PER_SEGMENT);
+        }
+
+        double[] nearestDistances = bruteForceNearest(defaultGrid, points);
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (Map.Entry<String, StreetIndex> layout : layouts.entrySet()) {
+            measurements.add(measure(layout.getKey(), layout.getValue(), points, c, nearestDistances,
+                    memory.get(layout.getKey())));
+        }
+
+        System.out.printf("%-16s %10s %10s %14s %12s %8s%n", "layout", "p50 (us)", "p99 (us)", "segments/query", "memory (MB)", "recall");
+        double bestRecall = 0;
+        for (Measurement m : measurements) {
+            System.out.printf("%-16s %10.1f %10.1f %14.1f %12.2f %8.4f%n", m.name(), m.p50Micros(), m.p99Micros(),
+                    m.segmentsPerQuery(), m.estimatedBytes() / 1_000_000.0, m.recall());
+            bestRecall = Math.max(bestRecall, m.recall());
+        }
+        Measurement recommended = null;
+        for (Measurement m : measurements) {
+            if (m.recall() >= bestRecall - 0.001 && (recommended == null || m.p99Micros() < recommended.p99Micros())) {
+                recommended = m;
+            }
+        }
+        System.out.println("Recommended: " + recommended.name() + " (recall " + recommended.recall()
+                + ", p99 " + String.format("%.1f", recommended.p99Micros()) + " us)");
+    }
+
+    private static Measurement measure(String name, StreetIndex index, List<TimedGeoPosition> points, int c,
+                                       double[] nearestDistances, long estimatedBytes) {
+        // Warm up, then time every query
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (TimedGeoPosition point : points) {
+                index.findClosestStreets(point, c);
+            }
+        }
+        QueryStats stats = queryStats(index);
+        if (stats != null) {
+            stats.reset();
+        }
+        long[] nanos = new long[points.size()];
+        int hits = 0;
+        for (int i = 0; i < points.size(); i++) {
+            TimedGeoPosition point = points.get(i);
+            long start = System.nanoTime();
+            List<ClosestStreetResult> results = index.findClosestStreets(point, c);
+            nanos[i] = System.nanoTime() - start;
+            if (!results.isEmpty()) {
+                double distance = distance(point, results.get(0));
+                if (distance <= nearestDistances[i] + DISTANCE_TOLERANCE) {
+                    hits++;
+                }
+            }
+        }
+        Arrays.sort(nanos);
+        return new Measurement(name,
+                nanos[(int) (0.50 * (nanos.length - 1))] / 1000.0,
+                nanos[(int) (0.99 * (nanos.length - 1))] / 1000.0,
+                stats != null ? stats.getSegmentsPerQuery() : Double.NaN,
+                estimatedBytes,
+                (double) hits / points.size());
+    }
+
+    private static QueryStats queryStats(StreetIndex index) {
+        if (index instanceof StreetGrid grid) {
+            return grid.getQueryStats();
+        }
+        if (index instanceof AdaptiveStreetGrid adaptiveGrid) {
+            return adaptiveGrid.getQueryStats();
+        }
+        return null;
+    }
+
+    /**
+     * Distance from every point to the nearest segment of the whole network.
+     */
+    private static double[] bruteForceNearest(StreetGrid grid, List<TimedGeoPosition> points) {
+        Map<Integer, Segment> unique = new HashMap<>();
+        for (GridCell cell : grid.getCells()) {
+            for (Segment segment : cell.segments) {
+                unique.putIfAbsent(segment.id, segment);
+            }
+        }
+        List<Segment> segments = new ArrayList<>(unique.values());
+        SegmentColumns columns = SegmentColumns.of(segments);
+        double[] t = new double[columns.size];
+        double[] nearest = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            double lat = points.get(i).getPosition().getLatitude();
+            double lon = points.get(i).getPosition().getLongitude();
+            double[] pointMeters = GridGeometry.latLonToMeters(lat, lon);
+            SegmentProjection.project(columns, pointMeters[0], pointMeters[1], t);
+            nearest[i] = Double.POSITIVE_INFINITY;
+            for (int k = 0; k < columns.size; k++) {
+                double[] closestPoint = columns.lengthSquared[k] == 0
+                    ? new double[]{segments.get(k).endpoints.get(0).lat, segments.get(k).endpoints.get(0).lon}
+                    : GridGeometry.metersToLatLon(columns.startX[k] + t[k] * columns.deltaX[k],
+                                                  columns.startY[k] + t[k] * columns.deltaY[k]);
+                nearest[i] = Math.min(nearest[i], GridGeometry.pointToMeters(lat, lon, closestPoint[0], closestPoint[1]));
+            }
+        }
+        return nearest;
+    }
+
+    private static double distance(TimedGeoPosition point, ClosestStreetResult result) {
+        return GridGeometry.pointToMeters(point.getPosition().getLatitude(), point.getPosition().getLongitude(),
+                result.getPosition().getPosition().getLatitude(), result.getPosition().getPosition().getLongitude());
+    }
+
+    private static long estimateBytes(StreetGrid grid) {
+        long references = 0;
+        Set<Integer> segments = new HashSet<>();
+        for (GridCell cell : grid.getCells()) {
+            references += cell.segments.size();
+            for (Segment segment : cell.segments) {
+                segments.add(segment.id);
+            }
+        }
+        return grid.getCells().size() * BYTES_PER_CELL + references * BYTES_PER_REFERENCE
+                + segments.size() * BYTES_PER_SEGMENT;
+    }
+}
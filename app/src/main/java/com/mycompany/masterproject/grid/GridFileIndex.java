@@ -0,0 +1,325 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sidecar index of a grid.jsonl file: the grid bounds, for every cell the byte offset and length of its
+ * line, and the interned ID of every segment of the file in file order. It is stored next to the grid file
+ * as grid.jsonl.idx and lets LazyStreetGrid read single cells without scanning the file, with the same
+ * segment IDs as StreetGridLoader.loadStreetGrid.
+ *
+ * Layout of the index file (DataOutputStream, big endian):
+ * <pre>
+ * magic "SGIX", version, grid file length, grid file last modified,
+ * min_lon, max_lon, min_lat, max_lat, cell_size, cellCount,
+ * cellCount x (int row, int col, long offset, int length, int firstSegment),
+ * segmentCount, segmentCount x int segment ID
+ * </pre>
+ * The length and modification time of the grid file are recorded so a stale index is rebuilt.
+ */
+public class GridFileIndex {
+
+    static final int MAGIC = 0x53474958; // "SGIX"
+    static final int VERSION = 3;
+    static final String SUFFIX = ".idx";
+
+    /**
+     * Position of one cell line in the grid file, and the position of the cell's first segment among
+     * all segments of the file (its index in getSegmentIds()).
+     */
+    record CellRange(long offset, int length, int firstSegment) {
+    }
+
+    /**
+     * State of the scan in build().
+     */
+    private static class Scan {
+        GridBounds bounds;
+        int segmentCount;
+        int[] segmentIds = new int[1024];
+        final StreetGridLoader.SegmentInterner interner = new StreetGridLoader.SegmentInterner();
+        final Map<CellId, CellRange> cells = new HashMap<>();
+    }
+
+    private final GridBounds bounds;
+    private final Map<CellId, CellRange> cells;
+    private final int[] segmentIds;
+
+    private GridFileIndex(GridBounds bounds, Map<CellId, CellRange> cells, int[] segmentIds) {
+        this.bounds = bounds;
+        this.cells = cells;
+        this.segmentIds = segmentIds;
+    }
+
+    GridBounds getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the byte range of the cell's line, or null if the grid file has no such cell.
+     */
+    CellRange getRange(CellId cellId) {
+        return cells.get(cellId);
+    }
+
+    int getCellCount() {
+        return cells.size();
+    }
+
+    /**
+     * Returns the interned IDs of all segments of the file, in file order; the IDs of a cell start at
+     * the firstSegment of its range.
+     */
+    int[] getSegmentIds() {
+        return segmentIds;
+    }
+
+    /**
+     * Reads the index of the given grid file, or builds and saves it if it is missing or stale.
+     * If the index cannot be saved (e.g. read-only directory) it is only kept in memory.
+     *
+     * @param jsonlPath The grid.jsonl file.
+     * @return The index of the file.
+     * @throws IOException If the grid file cannot be read.
+     */
+    public static GridFileIndex loadOrBuild(String jsonlPath) throws IOException {
+        File gridFile = new File(jsonlPath);
+        File indexFile = new File(jsonlPath + SUFFIX);
+        if (indexFile.isFile()) {
+            GridFileIndex index = read(indexFile, gridFile);
+            if (index != null) {
+                return index;
+            }
+        }
+        GridFileIndex index = build(jsonlPath);
+        try {
+            index.write(indexFile, gridFile);
+        } catch (IOException e) {
+            System.err.println("Could not write grid index " + indexFile + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Scans the grid file once and records the byte range of every cell line.
+     *
+     * @param jsonlPath The grid.jsonl file.
+     * @return The index of the file.
+     * @throws IOException If the file cannot be read or has no bounds line.
+     */
+    public static GridFileIndex build(String jsonlPath) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonFactory factory = mapper.getFactory();
+        Scan scan = new Scan();
+
+        try (InputStream in = new FileInputStream(jsonlPath)) {
+            byte[] chunk = new byte[1 << 16];
+            byte[] line = new byte[1 << 12];
+            int lineLength = 0;
+            long lineStart = 0;
+            long position = 0;
+            int read;
+            do {
+                read = in.read(chunk);
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != '\n') {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = chunk[i];
+                        continue;
+                    }
+                    indexLine(mapper, factory, line, lineLength, lineStart, scan);
+                    lineStart = position + i + 1;
+                    lineLength = 0;
+                }
+                position += Math.max(read, 0);
+            } while (read >= 0);
+            indexLine(mapper, factory, line, lineLength, lineStart, scan); // Last line without newline
+        }
+        if (scan.bounds == null) {
+            throw new IOException("No grid bounds found in the file.");
+        }
+        return new GridFileIndex(scan.bounds, scan.cells, Arrays.copyOf(scan.segmentIds, scan.segmentCount));
+    }
+
+    /**
+     * Handles one line of the grid file: the first JSON line holds the bounds, every later one a cell.
+     */
+    private static void indexLine(ObjectMapper mapper, JsonFactory factory, byte[] line, int length,
+                                  long offset, Scan scan) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (scan.bounds == null) {
+            // Skip description/comment lines until the grid bounds line
+            String text = new String(line, 0, length, StandardCharsets.UTF_8);
+            if (StreetGridLoader.isValidJson(text)) {
+                scan.bounds = mapper.readValue(text, GridBounds.class);
+            }
+            return;
+        }
+        CellLine cell = readCell(factory, line, length);
+        if (cell != null) {
+            scan.cells.put(new CellId(cell.row, cell.col), new CellRange(offset, length, scan.segmentCount));
+            if (scan.segmentIds.length < scan.segmentCount + cell.segmentCount) {
+                scan.segmentIds = Arrays.copyOf(scan.segmentIds,
+                        Math.max(2 * scan.segmentIds.length, scan.segmentCount + cell.segmentCount));
+            }
+            for (int i = 0; i < cell.segmentCount; i++) {
+                scan.segmentIds[scan.segmentCount++] = scan.interner.intern((int) cell.segments[3 * i],
+                        cell.segments[3 * i + 1], cell.segments[3 * i + 2]);
+            }
+        }
+    }
+
+    /**
+     * The cell_id of a cell line and the way and node IDs of its segments, as {wayId, startNodeId, endNodeId}
+     * triples.
+     */
+    private static class CellLine {
+        int row;
+        int col;
+        long[] segments = new long[3 * 16];
+        int segmentCount;
+    }
+
+    /**
+     * Reads the cell_id and the way and node IDs of the segments of a cell line with the streaming parser,
+     * without creating the segments.
+     *
+     * @return The cell line, or null if the line is not a valid cell record.
+     */
+    private static CellLine readCell(JsonFactory factory, byte[] line, int length) {
+        try (JsonParser parser = factory.createParser(line, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            CellLine cell = new CellLine();
+            boolean hasCellId = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("cell_id".equals(field)) {
+                    cell.row = parser.nextIntValue(0);
+                    cell.col = parser.nextIntValue(0);
+                    hasCellId = true;
+                    parser.nextToken(); // End of the cell_id array
+                } else if ("segments".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readSegment(parser, cell);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!hasCellId || parser.nextToken() != null) {
+                return null;
+            }
+            return cell;
+        } catch (IOException e) {
+            return null; // Line is not valid JSON
+        }
+    }
+
+    // Reads the way and node IDs of the segment object the parser is at, and skips the rest of it
+    private static void readSegment(JsonParser parser, CellLine cell) throws IOException {
+        if (cell.segments.length < 3 * (cell.segmentCount + 1)) {
+            cell.segments = Arrays.copyOf(cell.segments, 2 * cell.segments.length);
+        }
+        int base = 3 * cell.segmentCount++;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("way_id".equals(field)) {
+                cell.segments[base] = parser.getIntValue();
+            } else if ("node_ids".equals(field) && value == JsonToken.START_ARRAY) {
+                parser.nextToken();
+                cell.segments[base + 1] = parser.getLongValue();
+                parser.nextToken();
+                cell.segments[base + 2] = parser.getLongValue();
+                parser.nextToken(); // End of the node_ids array
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void write(File indexFile, File gridFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(gridFile.length());
+            out.writeLong(gridFile.lastModified());
+            out.writeDouble(bounds.min_lon);
+            out.writeDouble(bounds.max_lon);
+            out.writeDouble(bounds.min_lat);
+            out.writeDouble(bounds.max_lat);
+            out.writeDouble(bounds.cell_size);
+            out.writeInt(cells.size());
+            for (Map.Entry<CellId, CellRange> entry : cells.entrySet()) {
+                out.writeInt(entry.getKey().row);
+                out.writeInt(entry.getKey().col);
+                out.writeLong(entry.getValue().offset());
+                out.writeInt(entry.getValue().length());
+                out.writeInt(entry.getValue().firstSegment());
+            }
+            out.writeInt(segmentIds.length);
+            for (int segmentId : segmentIds) {
+                out.writeInt(segmentId);
+            }
+        }
+    }
+
+    /**
+     * Reads an index file.
+     *
+     * @return The index, or null if it does not belong to the current version of the grid file.
+     */
+    private static GridFileIndex read(File indexFile, File gridFile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != gridFile.length() || in.readLong() != gridFile.lastModified()) {
+                return null;
+            }
+            GridBounds bounds = new GridBounds();
+            bounds.min_lon = in.readDouble();
+            bounds.max_lon = in.readDouble();
+            bounds.min_lat = in.readDouble();
+            bounds.max_lat = in.readDouble();
+            bounds.cell_size = in.readDouble();
+            int cellCount = in.readInt();
+            Map<CellId, CellRange> cells = new HashMap<>(cellCount * 2);
+            for (int i = 0; i < cellCount; i++) {
+                int row = in.readInt();
+                int col = in.readInt();
+                cells.put(new CellId(row, col), new CellRange(in.readLong(), in.readInt(), in.readInt()));
+            }
+            int[] segmentIds = new int[in.readInt()];
+            for (int i = 0; i < segmentIds.length; i++) {
+                segmentIds[i] = in.readInt();
+            }
+            return new GridFileIndex(bounds, cells, segmentIds);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable grid index " + indexFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.mycompany.masterproject.grid;
+
+/**
+ * Coordinate helpers shared by the street grid implementations.
+ */
+final class GridGeometry {
+
+    static final double PROJECTION_RADIUS = 6378137.0; // Earth’s radius in meters (WGS84 equator)
+    static final double HAVERSINE_RADIUS = 6371000; // Mean Earth radius in meters
+
+    private GridGeometry() {
+    }
+
+    /**
+     * Converts latitude and longitude to approximate meters based on the WGS84 ellipsoid.
+     */
+    static double[] latLonToMeters(double lat, double lon) {
+        // Convert degrees to radians
+        double latRad = Math.toRadians(lat);
+        double lonRad = Math.toRadians(lon);
+
+        // Approximate conversion
+        double x = PROJECTION_RADIUS * lonRad * Math.cos(latRad); // Adjust for latitude's impact on longitude
+        double y = PROJECTION_RADIUS * latRad;
+
+        return new double[]{x, y};
+    }
+
+    /**
+     * Converts meters to latitude and longitude (approximate).
+     */
+    static double[] metersToLatLon(double xMeters, double yMeters) {
+        double lat = metersToLat(yMeters);
+        return new double[]{lat, metersToLon(xMeters, lat)};
+    }
+
+    /**
+     * The latitude of metersToLatLon, without allocating.
+     */
+    static double metersToLat(double yMeters) {
+        return Math.toDegrees(yMeters / PROJECTION_RADIUS);
+    }
+
+    /**
+     * The longitude of metersToLatLon at the given latitude, without allocating.
+     */
+    static double metersToLon(double xMeters, double lat) {
+        return Math.toDegrees(xMeters / (PROJECTION_RADIUS * Math.cos(Math.toRadians(lat))));
+    }
+
+    /**
+     * Calculates distance in meters between two latitude/longitude points.
+     */
+    static double pointToMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                   Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                   Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return HAVERSINE_RADIUS * c;
+    }
+}
@@ -0,0 +1,169 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Street index over a grid.jsonl file that parses cells only when a query first touches them.
+ * The cell lines are located with a GridFileIndex and read with positional FileChannel reads,
+ * so concurrent queries do not share a file position.
+ *
+ * Parsed cells are kept in a least-recently-used cache of at most maxCachedCells entries. The entries
+ * are soft references, so the garbage collector can also drop cells under memory pressure; such
+ * cells are simply read again on the next access.
+ *
+ * A lazy grid never holds all its cells, so it is not a StreetGrid: code that works on every cell
+ * (AdaptiveStreetGrid, BinaryGridConverter, the benchmarks) needs a grid from StreetGridLoader.loadStreetGrid.
+ */
+public class LazyStreetGrid extends CellGrid implements Closeable {
+
+    public static final int DEFAULT_MAX_CACHED_CELLS = 4096;
+
+    private final GridFileIndex index;
+    private final FileChannel channel;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<CellId, SoftReference<GridCell>> cache;
+    private long cellReads = 0;
+
+    /**
+     * Opens the grid file for lazy reading.
+     *
+     * @param filePath       The grid.jsonl file.
+     * @param index          The index of that file.
+     * @param maxCachedCells The maximum number of parsed cells kept in memory.
+     * @throws IOException If the file cannot be opened.
+     */
+    public LazyStreetGrid(String filePath, GridFileIndex index, int maxCachedCells) throws IOException {
+        super(index.getBounds());
+        if (maxCachedCells < 1) {
+            throw new IllegalArgumentException("The cell cache must hold at least one cell.");
+        }
+        this.index = index;
+        this.channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) { // Access order for LRU eviction
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CellId, SoftReference<GridCell>> eldest) {
+                return size() > maxCachedCells;
+            }
+        };
+    }
+
+    @Override
+    GridCell getCell(CellId cellId) {
+        synchronized (cache) {
+            SoftReference<GridCell> cached = cache.get(cellId);
+            GridCell cell = cached != null ? cached.get() : null;
+            if (cell != null) {
+                return cell;
+            }
+        }
+        GridFileIndex.CellRange range = index.getRange(cellId);
+        if (range == null) {
+            return null; // No segments in this cell
+        }
+        GridCell cell = readCell(range);
+        synchronized (cache) {
+            cache.put(cellId, new SoftReference<>(cell));
+            cellReads++;
+        }
+        return cell;
+    }
+
+    private GridCell readCell(GridFileIndex.CellRange range) {
+        ByteBuffer buffer = ByteBuffer.allocate(range.length());
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, range.offset() + buffer.position()) < 0) {
+                    throw new IOException("Grid file ended inside a cell, the index is out of date.");
+                }
+            }
+            return StreetGridLoader.parseCell(mapper.readTree(buffer.array()), index.getSegmentIds(), range.firstSegment());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read grid cell at byte " + range.offset(), e);
+        }
+    }
+
+    /**
+     * Returns the number of parsed cells that are currently cached.
+     */
+    public int getCachedCellCount() {
+        synchronized (cache) {
+            int count = 0;
+            for (SoftReference<GridCell> reference : cache.values()) {
+                if (reference.get() != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Returns how many cell lines have been read from the file so far.
+     */
+    public long getCellReads() {
+        synchronized (cache) {
+            return cellReads;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Compares opening a grid lazily with loading it completely, for queries in a small area.
+     * Usage: LazyStreetGrid [grid.jsonl] [queries]
+     */
+    public static void main(String[] args) throws IOException {
+        String gridPath = args.length > 0 ? args[0] : "./input/grid.jsonl";
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        long startTime1 = System.nanoTime();
+        StreetGrid grid = StreetGridLoader.loadStreetGrid(gridPath);
+        long endTime1 = System.nanoTime();
+        System.out.println("Time to load the whole grid: " + (endTime1 - startTime1) / 1_000_000.0 + " ms ("
+                + grid.getCells().size() + " cells)");
+
+        long startTime2 = System.nanoTime();
+        try (LazyStreetGrid lazyGrid = StreetGridLoader.loadLazyStreetGrid(gridPath)) {
+            long endTime2 = System.nanoTime();
+            System.out.println("Time to open the grid lazily: " + (endTime2 - startTime2) / 1_000_000.0 + " ms ("
+                    + lazyGrid.index.getCellCount() + " cells indexed)");
+
+            // Queries in a window of about one square kilometre around the centre of the grid
+            GridBounds bounds = grid.getBounds();
+            double centerLat = (bounds.min_lat + bounds.max_lat) / 2;
+            double centerLon = (bounds.min_lon + bounds.max_lon) / 2;
+            Random random = new Random(42);
+            int mismatches = 0;
+            long startTime3 = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                TimedGeoPosition position = new TimedGeoPosition(new GeoPosition(
+                        centerLat + (random.nextDouble() - 0.5) * 0.009,
+                        centerLon + (random.nextDouble() - 0.5) * 0.013), i);
+                if (!lazyGrid.findClosestStreets(position, 4).equals(grid.findClosestStreets(position, 4))) {
+                    mismatches++;
+                }
+            }
+            long endTime3 = System.nanoTime();
+            System.out.println(queries + " queries on both grids: " + (endTime3 - startTime3) / 1_000_000.0 + " ms, "
+                    + lazyGrid.getCellReads() + " cells read lazily, " + mismatches + " mismatches");
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Street grid backed by a memory-mapped file in the format written by BinaryGridConverter.
+ * Opening the file only maps it; cells, segments and endpoints are read from the mapped tables
+ * during a query, and Segment objects are created only for the returned results.
+ *
+ * All reads use absolute buffer positions, so one instance can be queried from several threads.
+ */
+public class MappedStreetGrid implements StreetIndex {
+    private final GridBounds bounds;
+    private final int cellCount;
+    private final ByteBuffer cells;
+    private final ByteBuffer references;
+    private final ByteBuffer segments;
+    private final ByteBuffer vertices;
+
+    /**
+     * Maps the given binary grid file.
+     *
+     * @param filePath Path of a file written by BinaryGridConverter.
+     * @throws IOException If the file cannot be mapped or is not a binary grid.
+     */
+    public MappedStreetGrid(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            if (channel.size() < BinaryGridConverter.HEADER_BYTES) {
+                throw new IOException("File is too small to be a binary grid: " + filePath);
+            }
+            ByteBuffer header = map(channel, 0, BinaryGridConverter.HEADER_BYTES);
+            if (header.getInt(0) != BinaryGridConverter.MAGIC) {
+                throw new IOException("Not a binary grid file: " + filePath);
+            }
+            if (header.getInt(4) != BinaryGridConverter.VERSION) {
+                throw new IOException("Unsupported binary grid version " + header.getInt(4) + " in " + filePath);
+            }
+            bounds = new GridBounds();
+            bounds.min_lon = header.getDouble(8);
+            bounds.max_lon = header.getDouble(16);
+            bounds.min_lat = header.getDouble(24);
+            bounds.max_lat = header.getDouble(32);
+            bounds.cell_size = header.getDouble(40);
+            cellCount = header.getInt(48);
+            int referenceCount = header.getInt(52);
+            int segmentCount = header.getInt(56);
+            int vertexCount = header.getInt(60);
+
+            // The sections follow each other, each padded to 8 bytes
+            long offset = BinaryGridConverter.HEADER_BYTES;
+            cells = map(channel, offset, (long) cellCount * BinaryGridConverter.CELL_BYTES);
+            offset += BinaryGridConverter.padded((long) cellCount * BinaryGridConverter.CELL_BYTES);
+            references = map(channel, offset, (long) referenceCount * BinaryGridConverter.REFERENCE_BYTES);
+            offset += BinaryGridConverter.padded((long) referenceCount * BinaryGridConverter.REFERENCE_BYTES);
+            segments = map(channel, offset, (long) segmentCount * BinaryGridConverter.SEGMENT_BYTES);
+            offset += BinaryGridConverter.padded((long) segmentCount * BinaryGridConverter.SEGMENT_BYTES);
+            vertices = map(channel, offset, (long) vertexCount * BinaryGridConverter.VERTEX_BYTES);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (offset + length > channel.size()) {
+            throw new IOException("Binary grid file is truncated.");
+        }
+        // The mapping stays valid after the channel is closed
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Per-thread buffers of a query, grown to the largest query so far and then reused
+    private static final class QueryBuffers {
+        SegmentColumns columns = new SegmentColumns(64);
+        int[] cellSegments = new int[64];
+        double[] distances = new double[64];
+        double[] snappedLat = new double[64];
+        double[] snappedLon = new double[64];
+        int[] segmentIndices = new int[64];
+        int[] heap = new int[64];
+        int[] seenWayIds = new int[8];
+
+        void ensureCellCapacity(int size) {
+            if (columns.capacity() < size) {
+                columns = new SegmentColumns(Math.max(size, 2 * columns.capacity()));
+                cellSegments = new int[columns.capacity()];
+            }
+            columns.size = size;
+        }
+
+        void ensureCandidateCapacity(int size) {
+            if (distances.length < size) {
+                int capacity = Math.max(size, 2 * distances.length);
+                distances = Arrays.copyOf(distances, capacity);
+                snappedLat = Arrays.copyOf(snappedLat, capacity);
+                snappedLon = Arrays.copyOf(snappedLon, capacity);
+                segmentIndices = Arrays.copyOf(segmentIndices, capacity);
+                heap = new int[capacity];
+            }
+        }
+    }
+
+    private static final ThreadLocal<QueryBuffers> BUFFERS = ThreadLocal.withInitial(QueryBuffers::new);
+
+    @Override
+    public List<ClosestStreetResult> findClosestStreets(TimedGeoPosition timedGeoPosition, int c) {
+        double lat = timedGeoPosition.getPosition().getLatitude();
+        double lon = timedGeoPosition.getPosition().getLongitude();
+        double[] pointMeters = GridGeometry.latLonToMeters(lat, lon);
+        QueryBuffers buffers = BUFFERS.get();
+
+        // Candidates of all nearby cells: distance, snapped lat/lon and segment index
+        int candidateCount = 0;
+        double[] offsets = {0, bounds.cell_size, -bounds.cell_size};
+        for (double dLatOffset : offsets) {
+            for (double dLonOffset : offsets) {
+                int row = (int) ((lat + dLatOffset - bounds.min_lat) / bounds.cell_size);
+                int col = (int) ((lon + dLonOffset - bounds.min_lon) / bounds.cell_size);
+                int cell = findCell(row, col);
+                if (cell < 0) {
+                    continue;
+                }
+                int firstReference = cells.getInt(cell * BinaryGridConverter.CELL_BYTES + 8);
+                int referenceCount = cells.getInt(cell * BinaryGridConverter.CELL_BYTES + 12);
+
+                // Gather the cell's segments into columns and project the point onto all of them
+                buffers.ensureCellCapacity(referenceCount);
+                SegmentColumns columns = buffers.columns;
+                int[] cellSegments = buffers.cellSegments;
+                for (int i = 0; i < referenceCount; i++) {
+                    int segment = references.getInt((firstReference + i) * BinaryGridConverter.REFERENCE_BYTES);
+                    int start = startVertex(segment);
+                    int end = endVertex(segment);
+                    double dx = vertexX(end) - vertexX(start);
+                    double dy = vertexY(end) - vertexY(start);
+                    cellSegments[i] = segment;
+                    columns.startX[i] = vertexX(start);
+                    columns.startY[i] = vertexY(start);
+                    columns.deltaX[i] = dx;
+                    columns.deltaY[i] = dy;
+                    columns.lengthSquared[i] = dx * dx + dy * dy;
+                }
+                double[] t = SegmentProjection.scratch(referenceCount);
+                SegmentProjection.project(columns, pointMeters[0], pointMeters[1], t);
+
+                buffers.ensureCandidateCapacity(candidateCount + referenceCount);
+                for (int i = 0; i < referenceCount; i++) {
+                    double closestLat;
+                    double closestLon;
+                    if (columns.lengthSquared[i] == 0) {
+                        int start = startVertex(cellSegments[i]);
+                        closestLat = vertexLat(start);
+                        closestLon = vertexLon(start);
+                    } else {
+                        closestLat = GridGeometry.metersToLat(columns.startY[i] + t[i] * columns.deltaY[i]);
+                        closestLon = GridGeometry.metersToLon(columns.startX[i] + t[i] * columns.deltaX[i], closestLat);
+                    }
+                    buffers.distances[candidateCount] = GridGeometry.pointToMeters(lat, lon, closestLat, closestLon);
+                    buffers.snappedLat[candidateCount] = closestLat;
+                    buffers.snappedLon[candidateCount] = closestLon;
+                    buffers.segmentIndices[candidateCount] = cellSegments[i];
+                    candidateCount++;
+                }
+            }
+        }
+
+        // Order the candidates by distance and keep the top 'c' without duplicate wayIds.
+        // Candidates enter the heap in the same order as in StreetGrid, so ties resolve the same way.
+        int[] heap = buffers.heap;
+        double[] distances = buffers.distances;
+        for (int i = 0; i < candidateCount; i++) {
+            siftUp(heap, i, i, distances);
+        }
+
+        if (buffers.seenWayIds.length < c) {
+            buffers.seenWayIds = new int[c];
+        }
+        int[] seenWayIds = buffers.seenWayIds;
+        List<ClosestStreetResult> result = new ArrayList<>(c);
+        for (int size = candidateCount; size > 0 && result.size() < c; size--) {
+            int candidate = poll(heap, size, distances);
+            int segment = buffers.segmentIndices[candidate];
+            int wayId = wayId(segment);
+            if (!contains(seenWayIds, result.size(), wayId)) {
+                seenWayIds[result.size()] = wayId;
+                result.add(new ClosestStreetResult(
+                    new TimedGeoPosition(
+                        new GeoPosition(buffers.snappedLat[candidate], buffers.snappedLon[candidate]),
+                        timedGeoPosition.getTimestamp()
+                    ),
+                    getSegment(segment)
+                ));
+            }
+        }
+        return result;
+    }
+
+    // A binary min-heap of candidate indices keyed by distance. The sift steps are those of java.util.PriorityQueue,
+    // so equal distances come out in the same order as from the queue of StreetGrid.
+    private static void siftUp(int[] heap, int k, int candidate, double[] key) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            int e = heap[parent];
+            if (Double.compare(key[candidate], key[e]) >= 0) {
+                break;
+            }
+            heap[k] = e;
+            k = parent;
+        }
+        heap[k] = candidate;
+    }
+
+    // Removes and returns the smallest of the size candidates in the heap
+    private static int poll(int[] heap, int size, double[] key) {
+        int result = heap[0];
+        int n = size - 1;
+        int x = heap[n];
+        int k = 0;
+        int half = n >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < n && Double.compare(key[c], key[heap[right]]) > 0) {
+                c = heap[child = right];
+            }
+            if (Double.compare(key[x], key[c]) <= 0) {
+                break;
+            }
+            heap[k] = c;
+            k = child;
+        }
+        if (n > 0) {
+            heap[k] = x;
+        }
+        return result;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the Segment object for an entry of the segment table, with the segment ID stored in the table.
+     */
+    Segment getSegment(int segment) {
+        int start = startVertex(segment);
+        int end = endVertex(segment);
+        return new Segment(wayId(segment), List.of(
+            new Endpoint(vertexNodeId(start), vertexLat(start), vertexLon(start)),
+            new Endpoint(vertexNodeId(end), vertexLat(end), vertexLon(end))
+        ), segmentId(segment));
+    }
+
+    /**
+     * Binary search in the cell table, which is sorted by (row, col).
+     *
+     * @return The index of the cell, or -1 if the cell holds no segments.
+     */
+    private int findCell(int row, int col) {
+        int low = 0;
+        int high = cellCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midRow = cells.getInt(mid * BinaryGridConverter.CELL_BYTES);
+            int midCol = cells.getInt(mid * BinaryGridConverter.CELL_BYTES + 4);
+            int compare = midRow != row ? Integer.compare(midRow, row) : Integer.compare(midCol, col);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int wayId(int segment) {
+        return segments.getInt(segment * BinaryGridConverter.SEGMENT_BYTES);
+    }
+
+    private int segmentId(int segment) {
+        return segments.getInt(segment * BinaryGridConverter.SEGMENT_BYTES + 12);
+    }
+
+    private int startVertex(int segment) {
+        return segments.getInt(segment * BinaryGridConverter.SEGMENT_BYTES + 4);
+    }
+
+    private int endVertex(int segment) {
+        return segments.getInt(segment * BinaryGridConverter.SEGMENT_BYTES + 8);
+    }
+
+    private long vertexNodeId(int vertex) {
+        return vertices.getLong(vertex * BinaryGridConverter.VERTEX_BYTES);
+    }
+
+    private double vertexLat(int vertex) {
+        return vertices.getDouble(vertex * BinaryGridConverter.VERTEX_BYTES + 8);
+    }
+
+    private double vertexLon(int vertex) {
+        return vertices.getDouble(vertex * BinaryGridConverter.VERTEX_BYTES + 16);
+    }
+
+    private double vertexX(int vertex) {
+        return vertices.getDouble(vertex * BinaryGridConverter.VERTEX_BYTES + 24);
+    }
+
+    private double vertexY(int vertex) {
+        return vertices.getDouble(vertex * BinaryGridConverter.VERTEX_BYTES + 32);
+    }
+}
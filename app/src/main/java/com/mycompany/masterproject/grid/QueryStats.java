@@ -0,0 +1,49 @@
+package com.mycompany.masterproject.grid;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the work done by findClosestStreets: queries, visited cells and segments the
+ * point was projected onto. Safe to update from concurrent queries.
+ */
+public class QueryStats {
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder cellsVisited = new LongAdder();
+    private final LongAdder segmentsScanned = new LongAdder();
+
+    void record(int cells, int segments) {
+        queries.increment();
+        cellsVisited.add(cells);
+        segmentsScanned.add(segments);
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public long getCellsVisited() {
+        return cellsVisited.sum();
+    }
+
+    public long getSegmentsScanned() {
+        return segmentsScanned.sum();
+    }
+
+    public double getSegmentsPerQuery() {
+        long count = queries.sum();
+        return count == 0 ? 0 : (double) segmentsScanned.sum() / count;
+    }
+
+    public void reset() {
+        queries.reset();
+        cellsVisited.reset();
+        segmentsScanned.reset();
+    }
+
+    @Override
+    public String toString() {
+        long count = queries.sum();
+        return String.format("QueryStats[queries=%d, cells/query=%.2f, segments/query=%.2f]",
+                count, count == 0 ? 0 : (double) cellsVisited.sum() / count, getSegmentsPerQuery());
+    }
+}
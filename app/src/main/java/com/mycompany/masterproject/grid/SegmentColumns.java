@@ -0,0 +1,57 @@
+package com.mycompany.masterproject.grid;
+
+import java.util.List;
+
+import com.mycompany.masterproject.graph.Segment;
+
+/**
+ * Column-oriented copy of a list of segments in the planar meter projection used for snapping.
+ * Index i of every column belongs to the i-th segment of the source list, so the projection
+ * kernels can stream over plain double arrays instead of chasing Segment/Endpoint references.
+ */
+final class SegmentColumns {
+    final double[] startX;        // Start point x in meters
+    final double[] startY;        // Start point y in meters
+    final double[] deltaX;        // End x minus start x
+    final double[] deltaY;        // End y minus start y
+    final double[] lengthSquared; // Squared segment length, 0 for degenerate segments
+    int size;                     // Segments in use, below the capacity only for reused query buffers
+
+    SegmentColumns(int size) {
+        this.size = size;
+        this.startX = new double[size];
+        this.startY = new double[size];
+        this.deltaX = new double[size];
+        this.deltaY = new double[size];
+        this.lengthSquared = new double[size];
+    }
+
+    int capacity() {
+        return startX.length;
+    }
+
+    /**
+     * Stores the segment from (startLat, startLon) to (endLat, endLon) at the given index.
+     */
+    void set(int index, double startLat, double startLon, double endLat, double endLon) {
+        double[] startMeters = GridGeometry.latLonToMeters(startLat, startLon);
+        double[] endMeters = GridGeometry.latLonToMeters(endLat, endLon);
+        double dx = endMeters[0] - startMeters[0];
+        double dy = endMeters[1] - startMeters[1];
+        startX[index] = startMeters[0];
+        startY[index] = startMeters[1];
+        deltaX[index] = dx;
+        deltaY[index] = dy;
+        lengthSquared[index] = dx * dx + dy * dy;
+    }
+
+    static SegmentColumns of(List<Segment> segments) {
+        SegmentColumns columns = new SegmentColumns(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            Endpoint start = segments.get(i).endpoints.get(0);
+            Endpoint end = segments.get(i).endpoints.get(1);
+            columns.set(i, start.lat, start.lon, end.lat, end.lon);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,162 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Projects a query point onto many segments at once. For every segment i the projection
+ * factor t[i] in [0, 1] is computed, so that start + t * (end - start) is the closest point
+ * on the segment (0 for degenerate segments).
+ *
+ * The SIMD kernel from jdk.incubator.vector is used when the module is present at runtime
+ * (start the JVM with --add-modules jdk.incubator.vector); otherwise, or when
+ * -Dstreetgrid.scalar=true is set, the scalar loop is used. Both produce identical results.
+ */
+public final class SegmentProjection {
+
+    static final boolean VECTOR_ENABLED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !Boolean.getBoolean("streetgrid.scalar");
+
+    // Output buffer of the projection per thread, grown to the largest cell queried on that thread
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[64]);
+
+    private SegmentProjection() {
+    }
+
+    /**
+     * Returns a buffer of at least the given size for the projection factors, reused by later calls on the
+     * same thread. It is only valid until the next call.
+     */
+    static double[] scratch(int size) {
+        double[] t = SCRATCH.get();
+        if (t.length < size) {
+            t = new double[Math.max(size, 2 * t.length)];
+            SCRATCH.set(t);
+        }
+        return t;
+    }
+
+    /**
+     * Computes the projection factors of (px, py) onto all segments of the given columns.
+     *
+     * @param columns The segments in meter coordinates.
+     * @param px      Query x in meters.
+     * @param py      Query y in meters.
+     * @param t       Output array, at least columns.size long.
+     */
+    static void project(SegmentColumns columns, double px, double py, double[] t) {
+        if (VECTOR_ENABLED) {
+            VectorSegmentProjection.project(columns, px, py, t);
+        } else {
+            projectScalar(columns, px, py, t);
+        }
+    }
+
+    static void projectScalar(SegmentColumns columns, double px, double py, double[] t) {
+        for (int i = 0; i < columns.size; i++) {
+            t[i] = projectOne(columns, i, px, py);
+        }
+    }
+
+    static double projectOne(SegmentColumns columns, int i, double px, double py) {
+        double lengthSquared = columns.lengthSquared[i];
+        if (lengthSquared == 0) {
+            return 0; // The segment is a point
+        }
+        double t = ((px - columns.startX[i]) * columns.deltaX[i] + (py - columns.startY[i]) * columns.deltaY[i]) / lengthSquared;
+        return Math.max(0, Math.min(1, t)); // Clamps to segment bounds
+    }
+
+    /**
+     * Benchmark comparing the scalar and the SIMD kernel on the cells of a real grid file.
+     * Usage: SegmentProjection [grid.jsonl] [rounds]
+     */
+    public static void main(String[] args) throws IOException {
+        String gridPath = args.length > 0 ? args[0] : "./input/grid.jsonl";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        StreetGrid grid = StreetGridLoader.loadStreetGrid(gridPath);
+        List<SegmentColumns> cells = new ArrayList<>();
+        long segmentCount = 0;
+        int maxCellSize = 0;
+        for (GridCell cell : grid.getCells()) {
+            if (cell.getColumns().size > 0) {
+                cells.add(cell.getColumns());
+                segmentCount += cell.getColumns().size;
+                maxCellSize = Math.max(maxCellSize, cell.getColumns().size);
+            }
+        }
+        System.out.println("Cells: " + cells.size() + ", segments: " + segmentCount + ", largest cell: " + maxCellSize);
+        if (cells.isEmpty()) {
+            return;
+        }
+
+        // One query point per cell, placed near the cell's first segment
+        Random random = new Random(42);
+        double[] queryX = new double[cells.size()];
+        double[] queryY = new double[cells.size()];
+        for (int i = 0; i < cells.size(); i++) {
+            SegmentColumns columns = cells.get(i);
+            queryX[i] = columns.startX[0] + columns.deltaX[0] * random.nextDouble() + (random.nextDouble() - 0.5) * 40;
+            queryY[i] = columns.startY[0] + columns.deltaY[0] * random.nextDouble() + (random.nextDouble() - 0.5) * 40;
+        }
+
+        double[] scalarT = new double[maxCellSize];
+        double[] vectorT = new double[maxCellSize];
+        double maxDifference = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            projectScalar(cells.get(i), queryX[i], queryY[i], scalarT);
+            if (VECTOR_ENABLED) {
+                VectorSegmentProjection.project(cells.get(i), queryX[i], queryY[i], vectorT);
+                for (int k = 0; k < cells.get(i).size; k++) {
+                    maxDifference = Math.max(maxDifference, Math.abs(scalarT[k] - vectorT[k]));
+                }
+            }
+        }
+
+        // Warm up both kernels before measuring
+        runScalar(cells, queryX, queryY, scalarT, rounds);
+        long startScalar = System.nanoTime();
+        double checksum = runScalar(cells, queryX, queryY, scalarT, rounds);
+        long scalarNanos = System.nanoTime() - startScalar;
+        System.out.printf("Scalar: %.2f ms, %.3f ns/segment (checksum %.3f)%n",
+                scalarNanos / 1_000_000.0, (double) scalarNanos / (segmentCount * rounds), checksum);
+
+        if (!VECTOR_ENABLED) {
+            System.out.println("Vector API not available, start with --add-modules jdk.incubator.vector to compare.");
+            return;
+        }
+        runVector(cells, queryX, queryY, vectorT, rounds);
+        long startVector = System.nanoTime();
+        checksum = runVector(cells, queryX, queryY, vectorT, rounds);
+        long vectorNanos = System.nanoTime() - startVector;
+        System.out.printf("Vector (%d lanes): %.2f ms, %.3f ns/segment (checksum %.3f)%n",
+                VectorSegmentProjection.laneCount(), vectorNanos / 1_000_000.0,
+                (double) vectorNanos / (segmentCount * rounds), checksum);
+        System.out.printf("Speedup: %.2fx, max difference: %g%n", (double) scalarNanos / vectorNanos, maxDifference);
+    }
+
+    private static double runScalar(List<SegmentColumns> cells, double[] queryX, double[] queryY, double[] t, int rounds) {
+        double checksum = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < cells.size(); i++) {
+                projectScalar(cells.get(i), queryX[i], queryY[i], t);
+                checksum += t[0];
+            }
+        }
+        return checksum;
+    }
+
+    private static double runVector(List<SegmentColumns> cells, double[] queryX, double[] queryY, double[] t, int rounds) {
+        double checksum = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < cells.size(); i++) {
+                VectorSegmentProjection.project(cells.get(i), queryX[i], queryY[i], t);
+                checksum += t[0];
+            }
+        }
+        return checksum;
+    }
+}
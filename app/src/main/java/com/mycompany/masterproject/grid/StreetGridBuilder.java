@@ -0,0 +1,186 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.mycompany.masterproject.graph.Edge;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.Segment;
+
+/**
+ * Builds a StreetGrid directly from a loaded Graph, so no separate grid.jsonl has to be read.
+ *
+ * Every undirected graph edge becomes one Segment between its two graph nodes, whose ID is the edge index
+ * from Graph.getEdgeList(). The segment is listed in every cell its line passes through, like the Python
+ * preprocessing does, but the cells share the one Segment object instead of holding clipped copies.
+ * Endpoint objects are shared per node as well.
+ */
+public class StreetGridBuilder {
+
+    public static final double DEFAULT_CELL_SIZE = 0.0005; // Same default as the preprocessing
+
+    /**
+     * Derives the spatial index from the graph. The edges are processed in parallel.
+     *
+     * @param graph    The loaded street graph.
+     * @param cellSize Cell size in degrees.
+     * @return A StreetGrid covering all nodes of the graph.
+     */
+    public static StreetGrid fromGraph(Graph graph, double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive.");
+        }
+        List<long[]> edges = graph.getEdgeList();
+
+        // One shared Endpoint per node, and the bounds of all nodes
+        Map<Long, Endpoint> endpoints = new HashMap<>();
+        GridBounds bounds = new GridBounds();
+        bounds.min_lat = Double.POSITIVE_INFINITY;
+        bounds.min_lon = Double.POSITIVE_INFINITY;
+        bounds.max_lat = Double.NEGATIVE_INFINITY;
+        bounds.max_lon = Double.NEGATIVE_INFINITY;
+        bounds.cell_size = cellSize;
+        for (long[] edge : edges) {
+            for (long nodeId : edge) {
+                if (!endpoints.containsKey(nodeId)) {
+                    Graph.Node node = graph.getNode(nodeId);
+                    endpoints.put(nodeId, new Endpoint(nodeId, node.getLat(), node.getLon()));
+                    bounds.min_lat = Math.min(bounds.min_lat, node.getLat());
+                    bounds.max_lat = Math.max(bounds.max_lat, node.getLat());
+                    bounds.min_lon = Math.min(bounds.min_lon, node.getLon());
+                    bounds.max_lon = Math.max(bounds.max_lon, node.getLon());
+                }
+            }
+        }
+        StreetGrid grid = new StreetGrid(bounds);
+        if (edges.isEmpty()) {
+            return grid;
+        }
+
+        // One segment per edge, indexed like the edge list
+        Segment[] segments = new Segment[edges.size()];
+        IntStream.range(0, edges.size()).parallel().forEach(i -> {
+            long[] edge = edges.get(i);
+            Edge edgeData = graph.getNode(edge[0]).getNeighbors().get(edge[1]);
+            segments[i] = new Segment(edgeData.wayId, List.of(endpoints.get(edge[0]), endpoints.get(edge[1])), i);
+        });
+
+        // Assign the edges to the cells they cross
+        Map<CellId, List<Integer>> cellEdges = IntStream.range(0, edges.size()).parallel().boxed()
+            .flatMap(i -> coveredCells(segments[i], bounds).stream().map(cellId -> Map.entry(cellId, i)))
+            .collect(Collectors.groupingByConcurrent(Map.Entry::getKey,
+                Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+
+        List<GridCell> cells = cellEdges.entrySet().parallelStream().map(entry -> {
+            List<Integer> edgeIndices = entry.getValue();
+            edgeIndices.sort(null); // Keep the cell contents independent of the thread scheduling
+            List<Segment> cellSegments = new ArrayList<>(edgeIndices.size());
+            for (int edgeIndex : edgeIndices) {
+                cellSegments.add(segments[edgeIndex]);
+            }
+            return new GridCell(entry.getKey().row, entry.getKey().col, cellSegments);
+        }).collect(Collectors.toList());
+
+        // Add the cells in a fixed order, so the grid iterates them the same way in every run
+        cells.sort(Comparator.comparingInt(GridCell::getOriginalRow).thenComparingInt(GridCell::getOriginalCol));
+        for (GridCell cell : cells) {
+            grid.addCell(cell);
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the cells whose area the segment passes through with a part of positive length.
+     */
+    static List<CellId> coveredCells(Segment segment, GridBounds bounds) {
+        Endpoint start = segment.endpoints.get(0);
+        Endpoint end = segment.endpoints.get(1);
+        int startRow = (int) ((start.lat - bounds.min_lat) / bounds.cell_size);
+        int startCol = (int) ((start.lon - bounds.min_lon) / bounds.cell_size);
+        int endRow = (int) ((end.lat - bounds.min_lat) / bounds.cell_size);
+        int endCol = (int) ((end.lon - bounds.min_lon) / bounds.cell_size);
+
+        List<CellId> cells = new ArrayList<>();
+        if (start.lat == end.lat && start.lon == end.lon) {
+            cells.add(new CellId(startRow, startCol)); // Degenerate segment
+            return cells;
+        }
+        for (int row = Math.min(startRow, endRow); row <= Math.max(startRow, endRow); row++) {
+            for (int col = Math.min(startCol, endCol); col <= Math.max(startCol, endCol); col++) {
+                double cellMinLat = bounds.min_lat + row * bounds.cell_size;
+                double cellMinLon = bounds.min_lon + col * bounds.cell_size;
+                if (crossesBox(start, end, cellMinLat, cellMinLon, cellMinLat + bounds.cell_size, cellMinLon + bounds.cell_size)) {
+                    cells.add(new CellId(row, col));
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Liang-Barsky clipping of the segment against a lat/lon box. True if a part of positive length
+     * lies in the box.
+     */
+    static boolean crossesBox(Endpoint start, Endpoint end, double minLat, double minLon, double maxLat, double maxLon) {
+        double dLon = end.lon - start.lon;
+        double dLat = end.lat - start.lat;
+        double[] p = {-dLon, dLon, -dLat, dLat};
+        double[] q = {start.lon - minLon, maxLon - start.lon,
+                      start.lat - minLat, maxLat - start.lat};
+        double tEnter = 0;
+        double tExit = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return false; // Parallel to this border and outside
+                }
+            } else {
+                double r = q[i] / p[i];
+                if (p[i] < 0) {
+                    tEnter = Math.max(tEnter, r);
+                } else {
+                    tExit = Math.min(tExit, r);
+                }
+            }
+        }
+        return tEnter < tExit;
+    }
+
+    /**
+     * Compares building the grid from the graph with loading grid.jsonl.
+     * Usage: StreetGridBuilder [graph.jsonl] [grid.jsonl] [cellSize]
+     */
+    public static void main(String[] args) throws IOException {
+        String graphPath = args.length > 0 ? args[0] : "./input/graph.jsonl";
+        String gridPath = args.length > 1 ? args[1] : "./input/grid.jsonl";
+        double cellSize = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_CELL_SIZE;
+
+        long startTime1 = System.nanoTime();
+        Graph graph = new Graph();
+        graph.readFromJsonl(graphPath);
+        long endTime1 = System.nanoTime();
+        System.out.println("Time to load graph: " + (endTime1 - startTime1) / 1_000_000.0 + " ms");
+
+        long startTime2 = System.nanoTime();
+        StreetGrid builtGrid = fromGraph(graph, cellSize);
+        long endTime2 = System.nanoTime();
+        System.out.println("Time to build grid from graph: " + (endTime2 - startTime2) / 1_000_000.0 + " ms ("
+                + builtGrid.getCells().size() + " cells, " + graph.getEdgeList().size() + " segments)");
+
+        long startTime3 = System.nanoTime();
+        StreetGrid loadedGrid = StreetGridLoader.loadStreetGrid(gridPath);
+        long endTime3 = System.nanoTime();
+        long loadedSegments = 0;
+        for (GridCell cell : loadedGrid.getCells()) {
+            loadedSegments += cell.segments.size();
+        }
+        System.out.println("Time to load grid file: " + (endTime3 - startTime3) / 1_000_000.0 + " ms ("
+                + loadedGrid.getCells().size() + " cells, " + loadedSegments + " segments)");
+    }
+}
@@ -48,52 +48,142 @@ public class StreetGridLoader {
             GridBounds bounds = mapper.readValue(line, GridBounds.class);
             grid = new StreetGrid(bounds);
     
-            // Parse each cell data line-by-line
+            // Parse each cell data line-by-line, giving every street one ID however many cells list it
+            SegmentInterner interner = new SegmentInterner();
             while ((line = reader.readLine()) != null) {
                 if (isValidJson(line)) {
                     JsonNode cellNode = mapper.readTree(line);
-                    int row = cellNode.get("cell_id").get(0).asInt();
-                    int col = cellNode.get("cell_id").get(1).asInt();
-    
-                    List<Segment> segments = new ArrayList<>();
-                    for (JsonNode segmentNode : cellNode.get("segments")) {
-                        int wayId = segmentNode.get("way_id").asInt();
-    
-                        // Parse node IDs and endpoints
-                        long startNodeId = segmentNode.get("node_ids").get(0).asLong();
-                        long endNodeId = segmentNode.get("node_ids").get(1).asLong();
-    
-                        JsonNode endpointsNode = segmentNode.get("endpoints");
-                        Endpoint startEndpoint = new Endpoint(
-                            startNodeId,
-                            endpointsNode.get(0).get("lat").asDouble(),
-                            endpointsNode.get(0).get("lon").asDouble()
-                        );
-                        Endpoint endEndpoint = new Endpoint(
-                            endNodeId,
-                            endpointsNode.get(1).get("lat").asDouble(),
-                            endpointsNode.get(1).get("lon").asDouble()
-                        );
-    
-                        // Create and add segment
-                        segments.add(new Segment(wayId, List.of(startEndpoint, endEndpoint)));
-                    }
-    
-                    GridCell cell = new GridCell(row, col, segments);
-                    grid.addCell(cell);
+                    grid.addCell(parseCell(cellNode, interner.intern(cellNode), 0));
                 }
             }
         }
         return grid;
     }
 
+    /**
+     * Numbers the distinct segments of a grid file in the order they first appear. A segment is identified
+     * by its way ID and node IDs, so the copies of a street that the preprocessing clipped into several
+     * cells share one ID. Every reader of the same file (StreetGridLoader, GridFileIndex for LazyStreetGrid,
+     * BinaryGridConverter for MappedStreetGrid) numbers the segments with this class.
+     */
+    static final class SegmentInterner {
+        private record Key(int wayId, long startNodeId, long endNodeId) {
+        }
+
+        private final Map<Key, Integer> ids = new HashMap<>();
+
+        int intern(int wayId, long startNodeId, long endNodeId) {
+            Key key = new Key(wayId, startNodeId, endNodeId);
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = ids.size();
+                ids.put(key, id);
+            }
+            return id;
+        }
+
+        /**
+         * Returns the IDs of the segments of a parsed cell line, in the order of the line.
+         */
+        int[] intern(JsonNode cellNode) {
+            JsonNode segmentsNode = cellNode.get("segments");
+            int[] segmentIds = new int[segmentsNode.size()];
+            for (int i = 0; i < segmentIds.length; i++) {
+                JsonNode segmentNode = segmentsNode.get(i);
+                segmentIds[i] = intern(segmentNode.get("way_id").asInt(),
+                        segmentNode.get("node_ids").get(0).asLong(), segmentNode.get("node_ids").get(1).asLong());
+            }
+            return segmentIds;
+        }
+
+        int size() {
+            return ids.size();
+        }
+    }
+
+    /**
+     * Parses one cell line of a grid.jsonl file.
+     *
+     * @param cellNode   The parsed JSON object of the line.
+     * @param segmentIds The interned IDs of the cell's segments (see SegmentInterner), starting at first.
+     * @param first      The position of the cell's first segment ID in segmentIds.
+     * @return The cell with its segments.
+     */
+    static GridCell parseCell(JsonNode cellNode, int[] segmentIds, int first) {
+        int row = cellNode.get("cell_id").get(0).asInt();
+        int col = cellNode.get("cell_id").get(1).asInt();
+
+        List<Segment> segments = new ArrayList<>();
+        for (JsonNode segmentNode : cellNode.get("segments")) {
+            int wayId = segmentNode.get("way_id").asInt();
+
+            // Parse node IDs and endpoints
+            long startNodeId = segmentNode.get("node_ids").get(0).asLong();
+            long endNodeId = segmentNode.get("node_ids").get(1).asLong();
+
+            JsonNode endpointsNode = segmentNode.get("endpoints");
+            Endpoint startEndpoint = new Endpoint(
+                startNodeId,
+                endpointsNode.get(0).get("lat").asDouble(),
+                endpointsNode.get(0).get("lon").asDouble()
+            );
+            Endpoint endEndpoint = new Endpoint(
+                endNodeId,
+                endpointsNode.get(1).get("lat").asDouble(),
+                endpointsNode.get(1).get("lon").asDouble()
+            );
+
+            // Create and add segment
+            segments.add(new Segment(wayId, List.of(startEndpoint, endEndpoint), segmentIds[first + segments.size()]));
+        }
+        return new GridCell(row, col, segments);
+    }
+
+    /**
+     * Static method to open a grid.jsonl file lazily. Only the sidecar index (grid.jsonl.idx) is read;
+     * it is built first if it is missing or older than the grid file. Cells are parsed on first access.
+     *
+     * @param filePath The path to the JSONL file.
+     * @return A LazyStreetGrid reading its cells from the file on demand.
+     * @throws IOException If the index cannot be built or the file cannot be opened.
+     */
+    public static LazyStreetGrid loadLazyStreetGrid(String filePath) throws IOException {
+        return new LazyStreetGrid(filePath, GridFileIndex.loadOrBuild(filePath), LazyStreetGrid.DEFAULT_MAX_CACHED_CELLS);
+    }
+
+    /**
+     * Static method to open a binary grid file (see BinaryGridConverter) as a memory-mapped grid.
+     *
+     * @param filePath The path to the binary grid file.
+     * @return A MappedStreetGrid that reads its cells directly from the mapped file.
+     * @throws IOException If the file cannot be mapped or has the wrong format.
+     */
+    public static MappedStreetGrid loadMappedStreetGrid(String filePath) throws IOException {
+        return new MappedStreetGrid(filePath);
+    }
+
+    /**
+     * Loads a street index from either format: files ending in .bin are memory-mapped,
+     * everything else is read as grid.jsonl.
+     *
+     * @param filePath The path to the grid file.
+     * @return The loaded street index.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static StreetIndex loadStreetIndex(String filePath) throws IOException {
+        if (filePath.toLowerCase().endsWith(".bin")) {
+            return loadMappedStreetGrid(filePath);
+        }
+        return loadStreetGrid(filePath);
+    }
+
     /**
      * Utility method to check if a string is a valid JSON object.
      *
      * @param line The line to check.
      * @return true if the line is valid JSON; false otherwise.
      */
-    private static boolean isValidJson(String line) {
+    static boolean isValidJson(String line) {
         try {
             new ObjectMapper().readTree(line);
             return true;
@@ -160,11 +250,17 @@ class GridCell {
     private int originalRow;  // Stores the original row from input
     private int originalCol;  // Stores the original column from input
     public List<Segment> segments;
+    private final SegmentColumns columns; // Primitive copy of the segments for the projection kernel
 
     public GridCell(int originalRow, int originalCol, List<Segment> segments) {
         this.originalRow = originalRow;
         this.originalCol = originalCol;
         this.segments = segments;
+        this.columns = SegmentColumns.of(segments);
+    }
+
+    public SegmentColumns getColumns() {
+        return columns;
     }
 
     public int getOriginalRow() {
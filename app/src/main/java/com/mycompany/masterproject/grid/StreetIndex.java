@@ -0,0 +1,38 @@
+package com.mycompany.masterproject.grid;
+
+import java.util.List;
+
+import com.mycompany.masterproject.data.CandidateTable;
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Spatial lookup of street segments near a GPS position. Implemented by the in-memory StreetGrid
+ * and by the grid variants that read their segments from other storage.
+ */
+public interface StreetIndex {
+
+    /**
+     * Returns the c closest streets to the given point, nearest first. Each result holds the snapped
+     * point (with the timestamp of the query) and the segment it lies on. No way ID is returned twice.
+     *
+     * @param timedGeoPosition The GPS position to snap.
+     * @param c                The maximum number of results.
+     * @return The closest streets, possibly fewer than c if there are not enough segments nearby.
+     */
+    List<ClosestStreetResult> findClosestStreets(TimedGeoPosition timedGeoPosition, int c);
+
+    /**
+     * Looks up the candidates of all points of a trajectory at once. The points are processed in the
+     * order of their grid cells, so consecutive lookups touch the same cells; the results are the
+     * same as calling findClosestStreets for every point, with the point index set on every candidate.
+     *
+     * @param trackPoints The points of the trajectory.
+     * @param c           The maximum number of results per point.
+     * @param parallel    Whether to spread the lookups over the common fork-join pool.
+     * @return The candidates of every point, by point index.
+     */
+    default CandidateTable findClosestStreets(List<TimedGeoPosition> trackPoints, int c, boolean parallel) {
+        return BatchLookup.run(this, trackPoints, c, parallel);
+    }
+}
@@ -0,0 +1,49 @@
+package com.mycompany.masterproject.grid;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD version of the point-to-segment projection. Only referenced through SegmentProjection,
+ * which checks that the jdk.incubator.vector module is present before this class gets loaded.
+ */
+final class VectorSegmentProjection {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorSegmentProjection() {
+    }
+
+    static int laneCount() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Same contract and arithmetic as SegmentProjection.projectScalar, one vector of segments per iteration.
+     */
+    static void project(SegmentColumns columns, double px, double py, double[] t) {
+        int n = columns.size;
+        int bound = SPECIES.loopBound(n);
+        DoubleVector pointX = DoubleVector.broadcast(SPECIES, px);
+        DoubleVector pointY = DoubleVector.broadcast(SPECIES, py);
+
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector startX = DoubleVector.fromArray(SPECIES, columns.startX, i);
+            DoubleVector startY = DoubleVector.fromArray(SPECIES, columns.startY, i);
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, columns.deltaX, i);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, columns.deltaY, i);
+            DoubleVector lengthSquared = DoubleVector.fromArray(SPECIES, columns.lengthSquared, i);
+
+            DoubleVector dot = pointX.sub(startX).mul(dx).add(pointY.sub(startY).mul(dy));
+            VectorMask<Double> degenerate = lengthSquared.compare(VectorOperators.EQ, 0.0);
+            dot.div(lengthSquared).min(1.0).max(0.0).blend(0.0, degenerate).intoArray(t, i);
+        }
+        // Remaining segments that do not fill a whole vector
+        for (; i < n; i++) {
+            t[i] = SegmentProjection.projectOne(columns, i, px, py);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.mycompany.masterproject.matching;
 
-import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -9,16 +8,28 @@ import java.util.Map;
 
 import org.jxmapviewer.viewer.GeoPosition;
 
+import com.mycompany.masterproject.data.CandidateTable;
 import com.mycompany.masterproject.data.ClosestStreetResult;
 import com.mycompany.masterproject.data.GPXData;
 import com.mycompany.masterproject.graph.Graph;
 import com.mycompany.masterproject.graph.TimedGeoPosition;
-import com.mycompany.masterproject.grid.StreetGrid;
+import com.mycompany.masterproject.grid.StreetIndex;
+import com.mycompany.masterproject.util.MatchTrace;
 
 public class MapMatcher {
     
 
-    public static boolean mapMatch(GPXData gpxData, StreetGrid streetGrid, Graph graph, String outputFileName) {
+    public static boolean mapMatch(GPXData gpxData, StreetIndex streetGrid, Graph graph, String outputFileName) {
+        //For Debugging: the candidates of every point
+        try (MatchTrace trace = MatchTrace.open("./cleanedfiles/CLOSESTSTREETRESULTS.jsonl", MatchTrace.Level.ROUTE)) {
+            return mapMatch(gpxData, streetGrid, graph, outputFileName, trace);
+        } catch (IOException e) {
+            System.err.println("Error writing trace to file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static boolean mapMatch(GPXData gpxData, StreetIndex streetGrid, Graph graph, String outputFileName, MatchTrace trace) {
         List<TimedGeoPosition> trackPoints = gpxData.getTrackPoints();
     
         if (trackPoints.isEmpty()) {
@@ -26,35 +37,36 @@ public class MapMatcher {
         }
     
         List<TimedGeoPosition> snappedPoints = new ArrayList<>();
-        List<Long> fullPath = new ArrayList<>(); // Store the concatenated path
+        List<Graph.Node> fullPath = new ArrayList<>(); // Store the concatenated path
     
         // Iterate through each point and snap it to the closest street
         List<ClosestStreetResult> closestStreetResults = new ArrayList<>();
 
-        //For Debugging
-        StringBuilder logBuilder = new StringBuilder(); // Accumulate the output
+        MatchTrace.Trajectory trajectory = trace.start(gpxData.getName());
 
-        for (TimedGeoPosition currentPoint : trackPoints) {
-            logBuilder.append("Processing point: ").append(currentPoint.getPosition()).append("\n");
-            List<ClosestStreetResult> streets = streetGrid.findClosestStreets(currentPoint, 10);
-            for (ClosestStreetResult street : streets) {
-                logBuilder.append("  Found street: ").append(street.getPosition().getPosition()).append("\n");
+        CandidateTable candidateTable = streetGrid.findClosestStreets(trackPoints, 10, true);
+        for (int i = 0; i < trackPoints.size(); i++) {
+            trajectory.step(i);
+            List<ClosestStreetResult> streets = candidateTable.get(i);
+            if (trajectory.on(MatchTrace.Level.STEP)) {
+                GeoPosition position = trackPoints.get(i).getPosition();
+                trajectory.event("point").field("lat", position.getLatitude()).field("lon", position.getLongitude())
+                          .field("candidates", streets.size()).end();
+            }
+            if (trajectory.on(MatchTrace.Level.ROUTE)) {
+                for (int k = 0; k < streets.size(); k++) {
+                    GeoPosition street = streets.get(k).getPosition().getPosition();
+                    trajectory.event("candidate").field("index", k).field("lat", street.getLatitude()).field("lon", street.getLongitude()).end();
+                }
             }
             if (streets.isEmpty()) {
-                logBuilder.append("  No street found for this point.\n");
                 break; // If no street found, skip this point
             }
             closestStreetResults.add(streets.get(0)); // Use the closest street result
             snappedPoints.add(streets.get(0).getPosition()); // Save the snapped point
         }
-
-        //Write the log to a file
-        // Write the accumulated log to a file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("./cleanedfiles/CLOSESTSTREETRESULTS.txt"))) {
-            writer.write(logBuilder.toString());
-        } catch (IOException e) {
-            System.err.println("Error writing log to file: " + e.getMessage());
-            return false;
+        if (trajectory.isTraced()) {
+            trajectory.finish().field("points", trackPoints.size()).field("matched", closestStreetResults.size()).end();
         }
     
         // Process each pair of successive snapped points
@@ -68,7 +80,7 @@ public class MapMatcher {
     
                 // Extract the path and add it to the fullPath
                 @SuppressWarnings("unchecked")
-                List<Long> path = (List<Long>) result.get("path");
+                List<Graph.Node> path = (List<Graph.Node>) result.get("nodes");
                 if (path != null) {
                     fullPath.addAll(path);
                 }
@@ -80,7 +92,7 @@ public class MapMatcher {
         }
     
         // Convert the full path to GPX data and write it to a file
-        GPXData pathData = graph.convertPathToGPXData(fullPath, "UnraveledPath");
+        GPXData pathData = graph.convertNodesToGPXData(fullPath, "UnraveledPath");
         writeCleanedGPXToFile(pathData, outputFileName);
     
         return true;
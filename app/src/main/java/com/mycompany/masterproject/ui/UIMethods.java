@@ -16,6 +16,7 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -48,7 +49,8 @@ import com.mycompany.masterproject.data.GPXData;
 import com.mycompany.masterproject.gpx.GPXLoader;
 import com.mycompany.masterproject.gpx.OutlierRemover;
 import com.mycompany.masterproject.graph.Graph;
-import com.mycompany.masterproject.grid.StreetGrid;
+import com.mycompany.masterproject.grid.StreetIndex;
+import com.mycompany.masterproject.grid.StreetGridBuilder;
 import com.mycompany.masterproject.grid.StreetGridLoader;
 import com.mycompany.masterproject.matching.MapMatcher;
 import com.mycompany.masterproject.util.VisualizationListener;
@@ -57,7 +59,7 @@ public class UIMethods implements VisualizationListener{
     
     private JPanel topPanel;
     private JPanel filePanel;
-    private StreetGrid streetGrid;
+    private StreetIndex streetGrid;
     private JComboBox<String> trackComboBox0;
     private JComboBox<String> trackComboBox1;
     private List<String> fileNames = new ArrayList<>();
@@ -335,10 +337,13 @@ public class UIMethods implements VisualizationListener{
             int returnValue = fileChooser.showOpenDialog(null);
             if (returnValue == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile();
-                if (file.getName().toLowerCase().endsWith(".jsonl")) { // Ensure correct file format
+                if (file.getName().toLowerCase().endsWith(".jsonl") || file.getName().toLowerCase().endsWith(".bin")) { // Ensure correct file format
                     try {
-                        // Load the StreetGrid using the static method
-                        streetGrid = StreetGridLoader.loadStreetGrid(file.getAbsolutePath());
+                        clearStreetGrid();
+                        // Map a binary grid, or open grid.jsonl lazily so only the cells around the tracks are parsed
+                        streetGrid = file.getName().toLowerCase().endsWith(".bin")
+                            ? StreetGridLoader.loadMappedStreetGrid(file.getAbsolutePath())
+                            : StreetGridLoader.loadLazyStreetGrid(file.getAbsolutePath());
 
                         // Show a success message
                         JOptionPane.showMessageDialog(null, "Street grid loaded successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -347,7 +352,7 @@ public class UIMethods implements VisualizationListener{
                         JOptionPane.showMessageDialog(null, "Failed to load the street grid:\n" + f.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                     }
                 } else {
-                    JOptionPane.showMessageDialog(null, "Invalid file format. Please select a .jsonl file.");
+                    JOptionPane.showMessageDialog(null, "Invalid file format. Please select a .jsonl or .bin file.");
                 }
             }
         });
@@ -364,6 +369,10 @@ public class UIMethods implements VisualizationListener{
                         // Initialize the graph instance
                         graph = new Graph();
                         graph.readFromJsonl(file.getAbsolutePath());
+                        if (streetGrid == null) {
+                            // No grid file loaded, derive the grid from the graph
+                            streetGrid = StreetGridBuilder.fromGraph(graph, StreetGridBuilder.DEFAULT_CELL_SIZE);
+                        }
                         JOptionPane.showMessageDialog(null, "Street graph loaded successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
                     } catch (IOException ex) {
                         JOptionPane.showMessageDialog(null, "Failed to load the street graph:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -378,7 +387,7 @@ public class UIMethods implements VisualizationListener{
         JButton clearStreetButton = new JButton("Clear Street Data");
         clearStreetButton.addActionListener(e -> {
             // Clear the street grid and any associated data
-            streetGrid = null;
+            clearStreetGrid();
             JOptionPane.showMessageDialog(null, "Street data cleared.", "Info", JOptionPane.INFORMATION_MESSAGE);
         });
 
@@ -476,7 +485,7 @@ public class UIMethods implements VisualizationListener{
         clearCacheButton.addActionListener(e -> {
             // Call the method to clear the found location on the map
             drawingLogic.clearCache();
-            streetGrid = null;
+            clearStreetGrid();
             clearFiles();
 
         });
@@ -600,6 +609,18 @@ public class UIMethods implements VisualizationListener{
         rebuildFilePanel(); // Refresh the panel to display nothing
     }
 
+    // Drops the street grid and releases the file a lazily loaded grid keeps open
+    private void clearStreetGrid() {
+        if (streetGrid instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                System.err.println("Error closing the street grid: " + e.getMessage());
+            }
+        }
+        streetGrid = null;
+    }
+
     private void rebuildFilePanel() {
         filePanel.removeAll(); // Clear the panel's contents
         for (String fileName : fileNames) {
@@ -0,0 +1,358 @@
+package com.mycompany.masterproject.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A trace of the decisions of a matching, written as JSON lines: one object per event, such as
+ * {"track":3,"point":12,"event":"route","from":0,"to":1,"length":87.25,"added":4}.
+ *
+ * Every trajectory gets a Trajectory from start. Its events are buffered for one step and then streamed to
+ * the writer, so the trace never holds more than one step in memory. Events are filtered by level, a share
+ * of the trajectories and every n-th step can be sampled, and at most a fixed number of events are written
+ * per trajectory; the first and the last event of a traced trajectory are always written.
+ *
+ * Callers check on(level) before building an event. A trace at level OFF, or a trajectory that is not
+ * sampled, answers false without any other work, so a disabled trace costs one comparison per check.
+ * A trace can be shared by threads matching different trajectories.
+ */
+public class MatchTrace implements Closeable {
+
+    /**
+     * How much is traced, each level including the ones before it.
+     */
+    public enum Level {
+        OFF,      // Nothing
+        STEP,     // Start and end of a trajectory, every point and the point at which the matching failed
+        ROUTE,    // The candidates of every point and the route of every candidate pair
+        INTERVAL  // Every speed interval computed on a route
+    }
+
+    /**
+     * A trace that writes nothing.
+     */
+    public static final MatchTrace OFF = new MatchTrace(null, Level.OFF);
+
+    private static final int DEFAULT_MAX_EVENTS = 100_000;
+
+    private final Writer writer;
+    private final Level level;
+    private double sampleRate = 1;
+    private int sampleEvery = 1;
+    private int maxEvents = DEFAULT_MAX_EVENTS;
+
+    private final AtomicLong trajectories = new AtomicLong();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder capped = new LongAdder();
+    private volatile boolean failed = false;
+
+    /**
+     * @param writer Receives the events. It is closed with the trace.
+     * @param level  The most detailed level written.
+     */
+    public MatchTrace(Writer writer, Level level) {
+        if (writer == null && level != Level.OFF) {
+            throw new IllegalArgumentException("A trace needs a writer.");
+        }
+        this.writer = writer;
+        this.level = level;
+    }
+
+    /**
+     * Opens a trace that writes to a file, or returns OFF for level OFF without creating the file.
+     */
+    public static MatchTrace open(String filePath, Level level) throws IOException {
+        if (level == Level.OFF) {
+            return OFF;
+        }
+        return new MatchTrace(new BufferedWriter(new FileWriter(filePath)), level);
+    }
+
+    /**
+     * Traces only this share of the trajectories. They are chosen by their name, so the same
+     * trajectories are traced in every run.
+     */
+    public MatchTrace setSampleRate(double sampleRate) {
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("The sample rate must be in (0, 1].");
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * Traces only every n-th point of a trajectory (the events of the step that reaches it).
+     */
+    public MatchTrace setSampleEvery(int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("Every n-th point is traced, n must be at least 1.");
+        }
+        this.sampleEvery = sampleEvery;
+        return this;
+    }
+
+    /**
+     * The maximum number of events written for one trajectory.
+     */
+    public MatchTrace setMaxEvents(int maxEvents) {
+        if (maxEvents < 2) {
+            throw new IllegalArgumentException("At least the first and the last event of a trajectory are written.");
+        }
+        this.maxEvents = maxEvents;
+        return this;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Starts the trace of one trajectory.
+     *
+     * @param name The name of the trajectory, written with its first event.
+     */
+    public Trajectory start(String name) {
+        if (level == Level.OFF || failed) {
+            return new Trajectory(this, -1, Level.OFF);
+        }
+        long id = trajectories.getAndIncrement();
+        if (sampleRate < 1 && (String.valueOf(name).hashCode() & 0x7fffffff) % 10_000 >= sampleRate * 10_000) {
+            return new Trajectory(this, id, Level.OFF);
+        }
+        Trajectory trajectory = new Trajectory(this, id, level);
+        trajectory.event("track").field("name", String.valueOf(name)).end();
+        return trajectory;
+    }
+
+    /**
+     * Returns the number of events written.
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Returns the number of trajectories whose events were cut at the maximum.
+     */
+    public long getCapped() {
+        return capped.sum();
+    }
+
+    private void write(StringBuilder lines, int count) {
+        if (count == 0 || failed) {
+            return;
+        }
+        try {
+            synchronized (writer) {
+                writer.append(lines);
+            }
+            written.add(count);
+        } catch (IOException e) {
+            failed = true; // Stop tracing, the matching goes on
+            System.err.println("Error writing trace, tracing is stopped: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            synchronized (writer) {
+                writer.close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return level + " trace, " + trajectories.get() + " trajectories, " + written.sum() + " events written, "
+                + capped.sum() + " trajectories capped";
+    }
+
+    /**
+     * Events of one trajectory, or of one part of a step evaluated on another thread (see branch).
+     * An Events is used by one thread at a time.
+     */
+    public static class Events {
+        final MatchTrace trace;
+        final long id;
+        final StringBuilder lines = new StringBuilder();
+        Level active;
+        int point = -1;
+        int count = 0;
+
+        Events(MatchTrace trace, long id, Level active) {
+            this.trace = trace;
+            this.id = id;
+            this.active = active;
+        }
+
+        /**
+         * Returns whether events of this level are traced at the current point.
+         */
+        public final boolean on(Level level) {
+            return level.compareTo(active) <= 0;
+        }
+
+        /**
+         * Begins an event at the current point. Fields are appended with field and the event is
+         * completed with end.
+         */
+        public Events event(String name) {
+            lines.append("{\"track\":").append(id);
+            if (point >= 0) {
+                lines.append(",\"point\":").append(point);
+            }
+            lines.append(",\"event\":\"").append(name).append('"');
+            return this;
+        }
+
+        public Events field(String name, long value) {
+            lines.append(",\"").append(name).append("\":").append(value);
+            return this;
+        }
+
+        public Events field(String name, double value) {
+            lines.append(",\"").append(name).append("\":");
+            if (Double.isFinite(value)) {
+                lines.append(value);
+            } else {
+                lines.append('"').append(value).append('"');
+            }
+            return this;
+        }
+
+        public Events field(String name, boolean value) {
+            lines.append(",\"").append(name).append("\":").append(value);
+            return this;
+        }
+
+        public Events field(String name, String value) {
+            lines.append(",\"").append(name).append("\":\"");
+            for (int k = 0; k < value.length(); k++) {
+                char c = value.charAt(k);
+                if (c == '"' || c == '\\') {
+                    lines.append('\\').append(c);
+                } else if (c < 0x20) {
+                    lines.append(String.format("\\u%04x", (int) c));
+                } else {
+                    lines.append(c);
+                }
+            }
+            lines.append('"');
+            return this;
+        }
+
+        public void end() {
+            lines.append("}\n");
+            count++;
+        }
+
+        /**
+         * Returns the events for a part of the current step that runs concurrently with others. Its events
+         * are added to this trajectory in the order of the merge calls, not in the order they happened.
+         */
+        public Events branch() {
+            Events branch = new Events(trace, id, active);
+            branch.point = point;
+            return branch;
+        }
+    }
+
+    /**
+     * The events of one trajectory. Each step is begun with step, and its events are written when the next
+     * step begins or the trajectory ends.
+     */
+    public static class Trajectory extends Events {
+        private final Level level;
+        private int remaining;
+        private boolean cut = false;
+        private boolean finishing = false;
+
+        Trajectory(MatchTrace trace, long id, Level level) {
+            super(trace, id, level);
+            this.level = level;
+            this.remaining = trace.maxEvents - 1; // One is kept for the end of the trajectory
+        }
+
+        /**
+         * Returns whether this trajectory is traced at all.
+         */
+        public boolean isTraced() {
+            return level != Level.OFF;
+        }
+
+        /**
+         * Writes the events of the previous step and begins the step that reaches the given point.
+         */
+        public void step(int point) {
+            if (level == Level.OFF) {
+                return;
+            }
+            flush();
+            this.point = point;
+            active = cut || point % trace.sampleEvery != 0 ? Level.OFF : level;
+        }
+
+        /**
+         * Adds the events of a branch of the current step.
+         */
+        public void merge(Events branch) {
+            if (branch.count > 0) {
+                lines.append(branch.lines);
+                count += branch.count;
+            }
+        }
+
+        /**
+         * Writes the remaining events and begins the last event of a traced trajectory, which is written
+         * by end. Fields of the last event are appended in between.
+         */
+        public Events finish() {
+            if (level == Level.OFF) {
+                throw new IllegalStateException("The trajectory is not traced.");
+            }
+            flush();
+            remaining++;
+            finishing = true;
+            point = -1;
+            return event("end").field("capped", cut);
+        }
+
+        @Override
+        public void end() {
+            super.end();
+            if (finishing) {
+                flush();
+            }
+        }
+
+        // Writes the buffered events, cut to the remaining number
+        private void flush() {
+            if (count == 0) {
+                return;
+            }
+            if (count > remaining) {
+                int length = 0;
+                for (int k = 0; k < remaining; k++) {
+                    length = lines.indexOf("\n", length) + 1;
+                }
+                lines.setLength(length);
+                count = remaining;
+                if (!cut) {
+                    cut = true;
+                    trace.capped.increment();
+                }
+                active = Level.OFF;
+            }
+            trace.write(lines, count);
+            remaining -= count;
+            lines.setLength(0);
+            count = 0;
+        }
+    }
+}
@@ -3,46 +3,71 @@ package com.mycompany.masterproject.util;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import org.jxmapviewer.viewer.GeoPosition;
 
-import com.mycompany.masterproject.data.CandidateInterval;
 import com.mycompany.masterproject.data.ClosestStreetResult;
 import com.mycompany.masterproject.data.GPXData;
+import com.mycompany.masterproject.data.IntervalArena;
 import com.mycompany.masterproject.graph.Graph;
 import com.mycompany.masterproject.graph.TimedGeoPosition;
 
 public class WitnessReconstructor {
 
-    // Reconstruct a path from the final CandidateInterval
-    public List<ClosestStreetResult> reconstructPath(CandidateInterval finalInterval) {
+    // Reconstruct a path from the final interval by following the predecessor handles in the arena
+    public List<ClosestStreetResult> reconstructPath(IntervalArena arena, int finalInterval) {
         List<ClosestStreetResult> path = new ArrayList<>();
     
-        CandidateInterval current = finalInterval;
-        while (current != null) {
-            // Add ClosestStreetResult to the start of the path
-            path.add(0, current.getCandidate());
-            current = current.getPredecessor(); // Move to the predecessor
+        int current = finalInterval;
+        while (current != IntervalArena.NONE) {
+            path.add(arena.getCandidate(current));
+            current = arena.getPredecessor(current); // Move to the predecessor
         }
+        Collections.reverse(path); // Start of the path first
     
         return path;
     }
     
-    public void reconstructAndExport(CandidateInterval finalInterval, String filePath, Graph graph) {
-        List<ClosestStreetResult> closestStreetResults = null;
-        List<Long> fullPath = new ArrayList<>();
-        double totalScore = 0.0; // Initialize the cumulative score
+    public void reconstructAndExport(IntervalArena arena, int finalInterval, String filePath, Graph graph) {
+        reconstructAndExport(arena, finalInterval, List.of(), 0.0, filePath, graph);
+    }
+
+    /**
+     * Exports the path of the final interval, preceded by the points committed by a MatchHistory.
+     */
+    public void reconstructAndExport(IntervalArena arena, int finalInterval, List<ClosestStreetResult> committedPath,
+                                     double committedScore, String filePath, Graph graph) {
+        double totalScore = committedScore; // Initialize the cumulative score
     
-        // Reconstruct the path and calculate the score
+        // Calculate the score
+        int current = finalInterval;
+        while (current != IntervalArena.NONE) {
+            totalScore += arena.getScore(current); // Accumulate scores
+            current = arena.getPredecessor(current);
+        }
+    
+        // Append the total score to the file name
+        String newFilePath = filePath.substring(0, filePath.lastIndexOf('/') + 1) + String.format("score_%.2f_", totalScore) + filePath.substring(filePath.lastIndexOf('/') + 1);
+
+        // Convert the full path to GPX data and write it to a file
+        GPXData pathData = reconstructGPXData(arena, finalInterval, committedPath, graph);
+        writeCleanedGPXToFile(pathData, newFilePath);
+    }
+
+    /**
+     * Reconstructs the road path of the final interval, preceded by the points committed by a MatchHistory,
+     * by joining the shortest paths between successive candidates.
+     */
+    public GPXData reconstructGPXData(IntervalArena arena, int finalInterval, List<ClosestStreetResult> committedPath, Graph graph) {
+        List<ClosestStreetResult> closestStreetResults = new ArrayList<>(committedPath);
+        List<Graph.Node> fullPath = new ArrayList<>();
+    
+        // Reconstruct the path
         try {
-            closestStreetResults = reconstructPath(finalInterval);
-            CandidateInterval current = finalInterval;
-            while (current != null) {
-                totalScore += current.getScore(); // Accumulate scores
-                current = current.getPredecessor();
-            }
+            closestStreetResults.addAll(reconstructPath(arena, finalInterval));
         } catch (Exception e) {
             System.err.println("Error reconstructing path: " + e.getMessage());
         }
@@ -58,7 +83,7 @@ public class WitnessReconstructor {
     
                 // Extract the path and add it to the fullPath
                 @SuppressWarnings("unchecked")
-                List<Long> path = (List<Long>) result.get("path");
+                List<Graph.Node> path = (List<Graph.Node>) result.get("nodes");
                 if (path != null) {
                     fullPath.addAll(path);
                 }
@@ -69,26 +94,15 @@ public class WitnessReconstructor {
             }
         }
     
-        // Append the total score to the file name
-        String newFilePath = filePath.substring(0, filePath.lastIndexOf('/') + 1) + String.format("score_%.2f_", totalScore) + filePath.substring(filePath.lastIndexOf('/') + 1);
-
-
-    
-        // Convert the full path to GPX data and write it to a file
-        GPXData pathData = graph.convertPathToGPXData(fullPath, "UnraveledPath");
-        writeCleanedGPXToFile(pathData, newFilePath);
+        return graph.convertNodesToGPXData(fullPath, "UnraveledPath");
     }
 
-    public void reconstructAndExport2(CandidateInterval finalInterval, String filePath, Graph graph) {
+    public void reconstructAndExport2(IntervalArena arena, int finalInterval, String filePath, Graph graph) {
         List<ClosestStreetResult> closestStreetResults = null;
     
         // Reconstruct the path and calculate the score
         try {
-            closestStreetResults = reconstructPath(finalInterval);
-            CandidateInterval current = finalInterval;
-            while (current != null) {
-                current = current.getPredecessor();
-            }
+            closestStreetResults = reconstructPath(arena, finalInterval);
         } catch (Exception e) {
             System.err.println("Error reconstructing path: " + e.getMessage());
         }
@@ -123,13 +137,26 @@ public class WitnessReconstructor {
 
     // Method to write cleaned GPX data to a file
     private static void writeCleanedGPXToFile(GPXData cleanedData, String outputFileName) {
+        try {
+            writeGPX(cleanedData, outputFileName);
+            System.out.println("Cleaned GPX track written to " + outputFileName);
+        } catch (IOException e) {
+            System.err.println("Error writing cleaned GPX to file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the track points of the GPX data to a file.
+     */
+    public static void writeGPX(GPXData data, String outputFileName) throws IOException {
         try (FileWriter writer = new FileWriter(outputFileName)) {
             writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
             writer.write("<gpx version=\"1.1\" creator=\"OutlierRemover\">\n");
             writer.write("  <trk>\n");
             writer.write("    <trkseg>\n");
 
-            for (TimedGeoPosition timedGeoPos : cleanedData.getTrackPoints()) {
+            for (TimedGeoPosition timedGeoPos : data.getTrackPoints()) {
                 GeoPosition pos = timedGeoPos.getPosition();
                 writer.write(String.format("      <trkpt lat=\"%f\" lon=\"%f\">\n", pos.getLatitude(), pos.getLongitude()));
                 writer.write(String.format("        <time>%s</time>\n", 
@@ -140,11 +167,6 @@ public class WitnessReconstructor {
             writer.write("    </trkseg>\n");
             writer.write("  </trk>\n");
             writer.write("</gpx>\n");
-
-            System.out.println("Cleaned GPX track written to " + outputFileName);
-        } catch (IOException e) {
-            System.err.println("Error writing cleaned GPX to file: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 }
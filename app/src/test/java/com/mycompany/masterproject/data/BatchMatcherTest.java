@@ -0,0 +1,152 @@
+package com.mycompany.masterproject.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.grid.StreetGridBuilder;
+import com.mycompany.masterproject.util.WitnessReconstructor;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of batch matching a directory with a valid and a corrupt GPX file.
+ */
+public class BatchMatcherTest
+    extends TestCase
+{
+    private File directory;
+
+    public BatchMatcherTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( BatchMatcherTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory( "batch" ).toFile();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        delete( directory );
+    }
+
+    /**
+     * The corrupt track is reported as failed in its summary row, and the tracks after it are still matched.
+     */
+    public void testCorruptTrackDoesNotStopBatch() throws Exception
+    {
+        File input = new File( directory, "input" );
+        assertTrue( input.mkdir() );
+        File valid = new File( input, "valid.gpx" );
+        WitnessReconstructor.writeGPX( ConsistencyMatcherTest.track( 2 ), valid.getPath() );
+        File corrupt = new File( input, "corrupt.gpx" );
+        Files.write( corrupt.toPath(), "<gpx><trk><trkseg><trkpt lat=\"48".getBytes( StandardCharsets.UTF_8 ) );
+        File validAgain = new File( input, "valid2.gpx" );
+        WitnessReconstructor.writeGPX( ConsistencyMatcherTest.track( 4 ), validAgain.getPath() );
+
+        Graph graph = ConsistencyMatcherTest.gridGraph();
+        ConsistencyMatcher matcher = new ConsistencyMatcher( graph,
+            StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE ),
+            new ConsistencyMatcher.Config().setParallelLookup( false ) );
+        File output = new File( directory, "output" );
+        BatchMatcher batch = new BatchMatcher( matcher, 1, output );
+        batch.run( List.of( valid, corrupt, validAgain ).iterator() ); // One worker, so in this order
+
+        assertEquals( 3, batch.getTracks() );
+        assertEquals( 2, batch.getMatched() );
+        assertEquals( 0, batch.getUnmatched() );
+        assertEquals( 1, batch.getFailed() );
+        assertEquals( 2 * ( ConsistencyMatcherTest.SIZE - 1 ), batch.getPoints() );
+        assertTrue( new File( output, "valid.matched.gpx" ).isFile() );
+        assertTrue( new File( output, "valid2.matched.gpx" ).isFile() );
+        assertFalse( new File( output, "corrupt.matched.gpx" ).exists() );
+
+        List<String> lines = Files.readAllLines( new File( output, "summary.csv" ).toPath() );
+        assertEquals( "track,points,valid,failed_index,score,routes,match_ms,error", lines.get( 0 ) );
+        assertEquals( 4, lines.size() );
+        String[] first = lines.get( 1 ).split( ",", -1 );
+        assertEquals( "valid", first[0] );
+        assertEquals( String.valueOf( ConsistencyMatcherTest.SIZE - 1 ), first[1] );
+        assertEquals( "true", first[2] );
+        assertEquals( "-1", first[3] );
+        assertFalse( first[4].isEmpty() );
+        assertEquals( "", first[7] );
+
+        String[] failedRow = lines.get( 2 ).split( ",", 8 );
+        assertEquals( "corrupt", failedRow[0] );
+        assertEquals( "", failedRow[1] );
+        assertEquals( "", failedRow[4] );
+        assertFalse( failedRow[7].isEmpty() );
+
+        assertTrue( lines.get( 3 ).startsWith( "valid2," + ( ConsistencyMatcherTest.SIZE - 1 ) + ",true," ) );
+    }
+
+    /**
+     * Tracks matched on several workers are all counted, each exactly once.
+     */
+    public void testConcurrentWorkersCountEveryTrack() throws Exception
+    {
+        File input = new File( directory, "input" );
+        assertTrue( input.mkdir() );
+        List<File> files = new ArrayList<>();
+        for ( int row = 1; row < ConsistencyMatcherTest.SIZE - 1; row++ )
+        {
+            File file = new File( input, "row" + row + ".gpx" );
+            WitnessReconstructor.writeGPX( ConsistencyMatcherTest.track( row ), file.getPath() );
+            files.add( file );
+        }
+        Graph graph = ConsistencyMatcherTest.gridGraph();
+        ConsistencyMatcher matcher = new ConsistencyMatcher( graph,
+            StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE ), new ConsistencyMatcher.Config() );
+        File output = new File( directory, "output" );
+        BatchMatcher batch = new BatchMatcher( matcher, 3, output );
+        batch.run( files.iterator() );
+
+        assertEquals( files.size(), batch.getTracks() );
+        assertEquals( files.size(), batch.getMatched() );
+        List<String> rows = new ArrayList<>( Files.readAllLines( new File( output, "summary.csv" ).toPath() ) );
+        rows.remove( 0 );
+        List<String> names = new ArrayList<>();
+        for ( String row : rows )
+        {
+            names.add( row.substring( 0, row.indexOf( ',' ) ) );
+        }
+        Collections.sort( names );
+        List<String> expected = new ArrayList<>();
+        for ( File file : files )
+        {
+            expected.add( file.getName().replace( ".gpx", "" ) );
+        }
+        Collections.sort( expected );
+        assertEquals( expected, names );
+    }
+
+    private static void delete( File file )
+    {
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+}
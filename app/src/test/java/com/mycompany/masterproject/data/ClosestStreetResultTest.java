@@ -0,0 +1,141 @@
+package com.mycompany.masterproject.data;
+
+import java.util.List;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+import com.mycompany.masterproject.grid.Endpoint;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the equals and hashCode contract of Segment and ClosestStreetResult, and the candidate slots of
+ * DataPoint that rely on it.
+ */
+public class ClosestStreetResultTest
+    extends TestCase
+{
+    private static final Endpoint A = new Endpoint( 1, 48.0, 11.0 );
+    private static final Endpoint B = new Endpoint( 2, 48.001, 11.0 );
+
+    public ClosestStreetResultTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ClosestStreetResultTest.class );
+    }
+
+    /**
+     * Segments with IDs are equal exactly when their IDs are, whatever their way and endpoints.
+     */
+    public void testSegmentsWithIds()
+    {
+        Segment segment = new Segment( 7, List.of( A, B ), 3 );
+        Segment sameId = new Segment( 8, List.of( B, A ), 3 );
+        Segment otherId = new Segment( 7, List.of( A, B ), 4 );
+        assertEqualsContract( segment, sameId );
+        assertFalse( segment.equals( otherId ) );
+        assertEquals( 3, segment.hashCode() );
+    }
+
+    /**
+     * Segments without IDs are compared by way and endpoints, and never equal a segment with an ID.
+     */
+    public void testSegmentsWithoutIds()
+    {
+        Segment segment = new Segment( 7, List.of( A, B ) );
+        assertEqualsContract( segment, new Segment( 7, List.of( new Endpoint( 1, 48.0, 11.0 ), B ) ) );
+        assertFalse( segment.equals( new Segment( 8, List.of( A, B ) ) ) );
+        assertFalse( segment.equals( new Segment( 7, List.of( B, A ) ) ) );
+
+        Segment withId = new Segment( 7, List.of( A, B ), 3 );
+        assertFalse( segment.equals( withId ) );
+        assertFalse( withId.equals( segment ) );
+        assertFalse( segment.equals( null ) );
+        assertFalse( segment.equals( "segment" ) );
+        assertTrue( segment.equals( segment ) );
+    }
+
+    /**
+     * A candidate with a point index and a segment ID is identified by those two numbers.
+     */
+    public void testKeyedCandidates()
+    {
+        ClosestStreetResult candidate = keyed( position( 0.25, 0 ), new Segment( 7, List.of( A, B ), 3 ), 5 );
+        assertEqualsContract( candidate, keyed( position( 0.75, 1000 ), new Segment( 9, List.of( B, A ), 3 ), 5 ) );
+        assertFalse( candidate.equals( keyed( position( 0.25, 0 ), new Segment( 7, List.of( A, B ), 3 ), 6 ) ) );
+        assertFalse( candidate.equals( keyed( position( 0.25, 0 ), new Segment( 7, List.of( A, B ), 4 ), 5 ) ) );
+    }
+
+    /**
+     * Without a point index candidates are compared by position and segment, and never equal a keyed one.
+     */
+    public void testUnkeyedCandidates()
+    {
+        ClosestStreetResult candidate = new ClosestStreetResult( position( 0.25, 0 ), new Segment( 7, List.of( A, B ), 3 ) );
+        assertEqualsContract( candidate, new ClosestStreetResult( position( 0.25, 0 ), new Segment( 7, List.of( A, B ), 3 ) ) );
+        assertFalse( candidate.equals( new ClosestStreetResult( position( 0.5, 0 ), new Segment( 7, List.of( A, B ), 3 ) ) ) );
+        assertFalse( candidate.equals( new ClosestStreetResult( position( 0.25, 1 ), new Segment( 7, List.of( A, B ), 3 ) ) ) );
+
+        ClosestStreetResult keyed = keyed( position( 0.25, 0 ), new Segment( 7, List.of( A, B ), 3 ), 5 );
+        assertFalse( candidate.equals( keyed ) );
+        assertFalse( keyed.equals( candidate ) );
+
+        // A segment without ID cannot form a key, so its candidates stay compared by value
+        ClosestStreetResult noId = keyed( position( 0.25, 0 ), new Segment( 7, List.of( A, B ) ), 5 );
+        assertEqualsContract( noId, keyed( position( 0.25, 0 ), new Segment( 7, List.of( A, B ) ), 6 ) );
+    }
+
+    /**
+     * Slot i of a DataPoint belongs to candidate i; asking for it with another candidate is an error.
+     */
+    public void testDataPointSlots()
+    {
+        IntervalArena arena = new IntervalArena();
+        DataPoint point = new DataPoint( position( 0.5, 0 ), 2 );
+        ClosestStreetResult first = keyed( position( 0.25, 0 ), new Segment( 7, List.of( A, B ), 3 ), 0 );
+        ClosestStreetResult second = keyed( position( 0.5, 0 ), new Segment( 8, List.of( A, B ), 4 ), 0 );
+        assertNull( point.getCandidateIntervall( 1 ) );
+
+        CandidateData data = point.getCandidateData( 1, second, 4, arena );
+        assertSame( data, point.getCandidateData( 1, second, 4, arena ) );
+        assertSame( data, point.getCandidateData( 1, keyed( position( 0.5, 0 ), new Segment( 8, List.of( A, B ), 4 ), 0 ), 4, arena ) );
+        assertSame( data.getIntervals(), point.getCandidateIntervall( 1 ) );
+        assertNull( point.getAllCandidates()[0] );
+        try
+        {
+            point.getCandidateData( 1, first, 4, arena );
+            fail( "A slot was shared by two candidates" );
+        }
+        catch ( IllegalStateException expected )
+        {
+        }
+    }
+
+    private static void assertEqualsContract( Object a, Object b )
+    {
+        assertTrue( a.equals( b ) );
+        assertTrue( b.equals( a ) );
+        assertEquals( a.hashCode(), b.hashCode() );
+    }
+
+    private static ClosestStreetResult keyed( TimedGeoPosition position, Segment segment, int pointIndex )
+    {
+        ClosestStreetResult result = new ClosestStreetResult( position, segment );
+        result.setPointIndex( pointIndex );
+        return result;
+    }
+
+    // The position at the fraction of the way from A to B
+    private static TimedGeoPosition position( double fraction, long time )
+    {
+        return new TimedGeoPosition( new GeoPosition( A.lat + ( B.lat - A.lat ) * fraction, A.lon ), time );
+    }
+}
@@ -0,0 +1,270 @@
+package com.mycompany.masterproject.data;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.graph.Edge;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+import com.mycompany.masterproject.grid.StreetGridBuilder;
+import com.mycompany.masterproject.grid.StreetIndex;
+import com.mycompany.masterproject.util.MatchTrace;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the ConsistencyMatcher on a small grid of streets.
+ */
+public class ConsistencyMatcherTest
+    extends TestCase
+{
+    static final int SIZE = 8;
+    private static final double SPACING = 0.001; // About 110 m north-south
+
+    public ConsistencyMatcherTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ConsistencyMatcherTest.class );
+    }
+
+    /**
+     * Trajectories matched concurrently by one matcher give the same paths and scores as sequentially,
+     * and the shared graph is not changed.
+     */
+    public void testConcurrentMatchesEqualSequential() throws Exception
+    {
+        Graph graph = gridGraph();
+        int nodes = graph.getAdjacencyList().size();
+        int edges = countEdges( graph );
+        StreetIndex index = StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE );
+        ConsistencyMatcher matcher = new ConsistencyMatcher( graph, index, new ConsistencyMatcher.Config() );
+
+        List<GPXData> tracks = new ArrayList<>();
+        for ( int row = 1; row < SIZE - 1; row++ )
+        {
+            tracks.add( track( row ) );
+        }
+        List<String> sequential = new ArrayList<>();
+        for ( GPXData track : tracks )
+        {
+            sequential.add( describe( matcher.match( track ) ) );
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            for ( int round = 0; round < 3; round++ )
+            {
+                List<Future<String>> futures = new ArrayList<>();
+                for ( GPXData track : tracks )
+                {
+                    futures.add( pool.submit( () -> describe( matcher.match( track ) ) ) );
+                }
+                for ( int k = 0; k < tracks.size(); k++ )
+                {
+                    assertEquals( sequential.get( k ), futures.get( k ).get() );
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        assertEquals( nodes, graph.getAdjacencyList().size() );
+        assertEquals( edges, countEdges( graph ) );
+    }
+
+    /**
+     * Evaluating the candidate pairs of a step in parallel gives the same intervals, paths, scores and trace.
+     */
+    public void testParallelTransitionsEqualSequential()
+    {
+        Graph graph = gridGraph();
+        StreetIndex index = StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE );
+        StringWriter sequentialTrace = new StringWriter();
+        StringWriter parallelTrace = new StringWriter();
+        ConsistencyMatcher.Config config = new ConsistencyMatcher.Config().setCandidates( 3 ).setMaxIntervals( 4 )
+                .setTrace( new MatchTrace( sequentialTrace, MatchTrace.Level.INTERVAL ) );
+        ConsistencyMatcher sequential = new ConsistencyMatcher( graph, index, config );
+        ConsistencyMatcher parallel = new ConsistencyMatcher( graph, index, config.setParallelTransitions( true )
+                .setTrace( new MatchTrace( parallelTrace, MatchTrace.Level.INTERVAL ) ) );
+
+        for ( int row = 1; row < SIZE - 1; row++ )
+        {
+            MatchResult expected = sequential.match( track( row ) );
+            MatchResult actual = parallel.match( track( row ) );
+            assertEquals( describe( expected ), describe( actual ) );
+            assertEquals( expected.getStats().getUFunctionBuilds(), actual.getStats().getUFunctionBuilds() );
+        }
+        assertTrue( sequentialTrace.toString().contains( "\"event\":\"interval\"" ) );
+        assertEquals( sequentialTrace.toString(), parallelTrace.toString() );
+    }
+
+    /**
+     * Positions added one at a time are emitted along the best path of the whole track, and a jump that
+     * cannot be driven makes the stream start over instead of failing.
+     */
+    public void testOnlineEmitsBestPath()
+    {
+        Graph graph = gridGraph();
+        StreetIndex index = StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE );
+        ConsistencyMatcher matcher = new ConsistencyMatcher( graph, index, new ConsistencyMatcher.Config().setCommitLag( 3 ) );
+
+        for ( int row = 1; row < SIZE - 1; row++ )
+        {
+            GPXData track = track( row );
+            OnlineMatcher online = matcher.startOnline();
+            List<String> emitted = new ArrayList<>();
+            for ( TimedGeoPosition position : track.getTrackPoints() )
+            {
+                for ( ClosestStreetResult candidate : online.add( position ) )
+                {
+                    emitted.add( candidate.getPosition() + " " + candidate.getSegment().id );
+                }
+                assertTrue( online.getPending() <= 4 );
+            }
+            for ( ClosestStreetResult candidate : online.finish() )
+            {
+                emitted.add( candidate.getPosition() + " " + candidate.getSegment().id );
+            }
+
+            MatchResult result = matcher.match( track );
+            List<String> best = new ArrayList<>();
+            for ( ClosestStreetResult candidate : result.getPath( result.getBest() ) )
+            {
+                best.add( candidate.getPosition() + " " + candidate.getSegment().id );
+            }
+            assertEquals( best, emitted );
+            assertEquals( 0, online.getPending() );
+        }
+
+        OnlineMatcher online = matcher.startOnline();
+        int emitted = 0;
+        emitted += online.add( point( 1, 1, 0 ) ).size();
+        emitted += online.add( point( SIZE - 2, SIZE - 2, 1000 ) ).size();
+        assertEquals( 1, online.getRestarts() );
+        emitted += online.finish().size();
+        assertEquals( 2, emitted );
+    }
+
+    /**
+     * A track along a street is matched, and a jump that no car can drive in time is not.
+     */
+    public void testValidity()
+    {
+        Graph graph = gridGraph();
+        StreetIndex index = StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE );
+        ConsistencyMatcher matcher = new ConsistencyMatcher( graph, index, new ConsistencyMatcher.Config().setCommitLag( 2 ) );
+
+        MatchResult result = matcher.match( track( 3 ) );
+        assertTrue( result.isValid() );
+        assertEquals( -1, result.getFailedIndex() );
+        assertEquals( SIZE - 1, result.getPath( result.getBest() ).size() );
+
+        List<TimedGeoPosition> points = new ArrayList<>();
+        points.add( point( 1, 1, 0 ) );
+        points.add( point( SIZE - 2, SIZE - 2, 1000 ) );
+        MatchResult jump = matcher.match( new GPXData( "jump", new HashSet<>(), points ) );
+        assertFalse( jump.isValid() );
+        assertEquals( 0, jump.getFailedIndex() );
+    }
+
+    // Streets between neighbouring nodes of a SIZE x SIZE grid, every street its own way
+    static Graph gridGraph()
+    {
+        Graph graph = new Graph();
+        for ( int row = 0; row < SIZE; row++ )
+        {
+            for ( int col = 0; col < SIZE; col++ )
+            {
+                graph.getAdjacencyList().put( id( row, col ), new Graph.Node( id( row, col ), 48 + row * SPACING, 11 + col * SPACING ) );
+            }
+        }
+        int way = 0;
+        for ( int row = 0; row < SIZE; row++ )
+        {
+            for ( int col = 0; col < SIZE; col++ )
+            {
+                if ( col + 1 < SIZE )
+                {
+                    connect( graph, id( row, col ), id( row, col + 1 ), way++ );
+                }
+                if ( row + 1 < SIZE )
+                {
+                    connect( graph, id( row, col ), id( row + 1, col ), way++ );
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static void connect( Graph graph, long from, long to, int way )
+    {
+        Graph.Node a = graph.getNode( from );
+        Graph.Node b = graph.getNode( to );
+        double distance = Math.hypot( ( a.getLat() - b.getLat() ) * 111_000, ( a.getLon() - b.getLon() ) * 74_000 );
+        Edge edge = new Edge( distance, "residential", "50", way );
+        a.addNeighbor( to, edge );
+        b.addNeighbor( from, edge );
+    }
+
+    private static long id( int row, int col )
+    {
+        return row * SIZE + col;
+    }
+
+    private static int countEdges( Graph graph )
+    {
+        int edges = 0;
+        for ( Graph.Node node : graph.getAdjacencyList().values() )
+        {
+            edges += node.getNeighbors().size();
+        }
+        return edges;
+    }
+
+    // Points slightly off a street in the middle of each block along a row, 10 s apart
+    static GPXData track( int row )
+    {
+        List<TimedGeoPosition> points = new ArrayList<>();
+        for ( int col = 0; col < SIZE - 1; col++ )
+        {
+            points.add( point( row + 0.05, col + 0.5, col * 10_000L ) );
+        }
+        return new GPXData( "row " + row, new HashSet<>(), points );
+    }
+
+    private static TimedGeoPosition point( double row, double col, long time )
+    {
+        return new TimedGeoPosition( new GeoPosition( 48 + row * SPACING, 11 + col * SPACING ), time );
+    }
+
+    private static String describe( MatchResult result )
+    {
+        StringBuilder description = new StringBuilder( result.isValid() + " " + result.getFailedIndex() );
+        for ( int k = 0; k < result.size(); k++ )
+        {
+            description.append( '\n' ).append( result.getScore( k ) ).append( ' ' )
+                       .append( result.getArena().getVMin( result.getInterval( k ) ) ).append( ' ' )
+                       .append( result.getArena().getVMax( result.getInterval( k ) ) );
+            for ( ClosestStreetResult candidate : result.getPath( k ) )
+            {
+                description.append( ' ' ).append( candidate.getSegment().id );
+            }
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,159 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the dominance rules of IntervalFrontier against a brute-force frontier, and of IntervalArena.
+ */
+public class IntervalFrontierTest
+    extends TestCase
+{
+    public IntervalFrontierTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( IntervalFrontierTest.class );
+    }
+
+    /**
+     * Without eviction the frontier holds exactly the inserted intervals that no other one dominates,
+     * keeping the first of equal ones, and stays sorted.
+     */
+    public void testMatchesBruteForce()
+    {
+        Random random = new Random( 1 );
+        for ( int n = 0; n < 2000; n++ )
+        {
+            IntervalArena arena = new IntervalArena();
+            IntervalFrontier frontier = new IntervalFrontier( arena, 1000 );
+            List<double[]> inserted = new ArrayList<>();
+            Set<Integer> kept = new HashSet<>();
+            int count = 1 + random.nextInt( 30 );
+            for ( int i = 0; i < count; i++ )
+            {
+                // Few distinct values, so that equal bounds and scores occur
+                double low = random.nextInt( 6 );
+                double high = low + random.nextInt( 6 );
+                double score = random.nextInt( 4 );
+                inserted.add( new double[] { low, high, score } );
+                int handle = frontier.add( low, high, IntervalArena.NONE, null, score );
+                if ( handle != IntervalArena.NONE )
+                {
+                    assertEquals( low, arena.getVMin( handle ), 0.0 );
+                    assertEquals( score, arena.getTotalScore( handle ), 0.0 );
+                }
+            }
+
+            Set<String> expected = new HashSet<>();
+            for ( int i = 0; i < inserted.size(); i++ )
+            {
+                boolean dominated = false;
+                for ( int j = 0; j < inserted.size() && !dominated; j++ )
+                {
+                    if ( j != i && dominates( inserted.get( j ), inserted.get( i ) )
+                        && ( j < i || !dominates( inserted.get( i ), inserted.get( j ) ) ) )
+                    {
+                        dominated = true;
+                    }
+                }
+                if ( !dominated )
+                {
+                    expected.add( Arrays.toString( inserted.get( i ) ) );
+                }
+            }
+            Set<String> actual = new HashSet<>();
+            for ( int k = 0; k < frontier.size(); k++ )
+            {
+                int handle = frontier.get( k );
+                actual.add( Arrays.toString( new double[] { arena.getVMin( handle ), arena.getVMax( handle ), arena.getTotalScore( handle ) } ) );
+                if ( k > 0 )
+                {
+                    int previous = frontier.get( k - 1 );
+                    assertTrue( arena.getVMin( previous ) < arena.getVMin( handle )
+                        || ( arena.getVMin( previous ) == arena.getVMin( handle ) && arena.getVMax( previous ) >= arena.getVMax( handle ) ) );
+                }
+            }
+            assertEquals( expected.size(), frontier.size() );
+            assertEquals( expected, actual );
+        }
+    }
+
+    public void testCapacityEvictsHighestTotalScore()
+    {
+        IntervalArena arena = new IntervalArena();
+        IntervalFrontier frontier = new IntervalFrontier( arena, 2 );
+        int start = arena.add( 0, 1, IntervalArena.NONE, null, 5 );
+        assertTrue( frontier.add( 0, 2, start, null, 1 ) != IntervalArena.NONE ); // total 6
+        assertTrue( frontier.add( 3, 4, IntervalArena.NONE, null, 3 ) != IntervalArena.NONE );
+        assertTrue( frontier.add( 5, 6, IntervalArena.NONE, null, 4 ) != IntervalArena.NONE );
+        assertEquals( 2, frontier.size() );
+        assertEquals( 3.0, arena.getVMin( frontier.get( 0 ) ), 0.0 );
+
+        // Worse than everything kept, and invalid intervals are not added, not even to the arena
+        int stored = arena.size();
+        assertEquals( IntervalArena.NONE, frontier.add( 7, 8, IntervalArena.NONE, null, 9 ) );
+        assertEquals( IntervalArena.NONE, frontier.add( 2, 1, IntervalArena.NONE, null, 0 ) );
+        assertEquals( IntervalArena.NONE, frontier.add( Double.NaN, 1, IntervalArena.NONE, null, 0 ) );
+        assertEquals( 2, frontier.size() );
+        assertEquals( stored, arena.size() );
+    }
+
+    /**
+     * Intervals spanning several chunks keep their columns, and the predecessor chain can be walked.
+     */
+    public void testArenaChains()
+    {
+        IntervalArena arena = new IntervalArena();
+        int handle = IntervalArena.NONE;
+        for ( int i = 0; i < 10000; i++ )
+        {
+            handle = arena.add( i, i + 1, handle, null, 1 );
+        }
+        assertEquals( 10000, arena.size() );
+        assertEquals( 10000.0, arena.getTotalScore( handle ), 0.0 );
+        int steps = 0;
+        for ( int current = handle; current != IntervalArena.NONE; current = arena.getPredecessor( current ) )
+        {
+            assertEquals( 9999.0 - steps, arena.getVMin( current ), 0.0 );
+            steps++;
+        }
+        assertEquals( 10000, steps );
+        arena.release();
+        assertEquals( 0, arena.size() );
+    }
+
+    /**
+     * A short arena holds only a small first chunk, which grows until it is full.
+     */
+    public void testFirstChunkGrows()
+    {
+        IntervalArena arena = new IntervalArena();
+        int handle = arena.add( 0, 1, IntervalArena.NONE, null, 1 );
+        long first = arena.getAllocatedBytes();
+        assertTrue( first > 0 && first <= 64 * 40 );
+        for ( int i = 1; i < 100; i++ )
+        {
+            arena.add( i, i + 1, handle, null, 1 );
+        }
+        assertTrue( arena.getAllocatedBytes() > first && arena.getAllocatedBytes() < 4096 * 40 );
+        assertEquals( 0.0, arena.getVMin( handle ), 0.0 );
+        assertEquals( 99.0, arena.getVMin( 99 ), 0.0 );
+    }
+
+    private static boolean dominates( double[] a, double[] b )
+    {
+        return a[0] <= b[0] && a[1] >= b[1] && a[2] <= b[2];
+    }
+}
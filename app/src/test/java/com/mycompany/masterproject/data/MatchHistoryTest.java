@@ -0,0 +1,199 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the arena compaction and the fixed-lag commit on randomly grown interval histories.
+ */
+public class MatchHistoryTest
+    extends TestCase
+{
+    private static final int CANDIDATES = 3;
+
+    public MatchHistoryTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MatchHistoryTest.class );
+    }
+
+    /**
+     * Compaction keeps every live chain with its candidates and scores, and frees the dead intervals.
+     */
+    public void testCompactPreservesLiveChains()
+    {
+        Random random = new Random( 1 );
+        IntervalArena arena = new IntervalArena();
+        DataPoint current = firstPoint( arena );
+        for ( int index = 1; index < 60; index++ )
+        {
+            current = nextPoint( arena, current, random );
+        }
+
+        List<String> before = describeChains( arena, current );
+        int size = arena.size();
+        int[] live = liveHandles( current );
+        int[] newHandle = arena.compact( live, live.length );
+        for ( CandidateData candidate : current.getAllCandidates() )
+        {
+            candidate.getIntervals().remap( newHandle );
+        }
+
+        assertTrue( "nothing was freed", arena.size() < size );
+        assertEquals( before, describeChains( arena, current ) );
+        for ( int handle = 1; handle < arena.size(); handle++ )
+        {
+            assertTrue( arena.getPredecessor( handle ) < handle );
+        }
+    }
+
+    /**
+     * With a commit lag, every live interval's chain holds the uncommitted points, and the committed
+     * scores plus its chain add up to its total score. The track is long enough for compactions.
+     */
+    public void testCommitKeepsChainsConsistent()
+    {
+        int lag = 4;
+        Random random = new Random( 2 );
+        IntervalArena arena = new IntervalArena();
+        MatchHistory history = new MatchHistory( arena, lag );
+        DataPoint current = firstPoint( arena );
+        List<ClosestStreetResult> committed = new ArrayList<>();
+        int added = 0;
+        for ( int index = 1; index < 4000; index++ )
+        {
+            int size = arena.size();
+            current = nextPoint( arena, current, random );
+            added += arena.size() - size;
+            history.step( current, index );
+
+            // Commits only append
+            assertEquals( committed, history.getCommittedPath().subList( 0, committed.size() ) );
+            committed = new ArrayList<>( history.getCommittedPath() );
+
+            for ( int handle : liveHandles( current ) )
+            {
+                int length = 0;
+                double score = history.getCommittedScore();
+                for ( int interval = handle; interval != IntervalArena.NONE; interval = arena.getPredecessor( interval ) )
+                {
+                    length++;
+                    score += arena.getScore( interval );
+                }
+                assertEquals( index + 1, committed.size() + length );
+                assertTrue( length <= lag + 1 );
+                assertEquals( arena.getTotalScore( handle ), score, 1e-9 * score );
+            }
+        }
+        assertEquals( 4000 - lag - 1, committed.size() );
+        assertTrue( "history was not compacted", arena.size() < added / 2 );
+    }
+
+    /**
+     * With commits on agreement, the live chains never meet after a step, and committed points plus chain
+     * still cover every point with the right total score.
+     */
+    public void testAgreementCommitsSharedPrefix()
+    {
+        Random random = new Random( 3 );
+        IntervalArena arena = new IntervalArena();
+        MatchHistory history = new MatchHistory( arena, 0 );
+        history.setCommitOnAgreement( true );
+        DataPoint current = firstPoint( arena );
+        List<ClosestStreetResult> committed = new ArrayList<>();
+        for ( int index = 1; index < 2000; index++ )
+        {
+            current = nextPoint( arena, current, random );
+            history.step( current, index );
+            committed.addAll( history.drainCommittedPath() );
+            assertTrue( history.getCommittedPath().isEmpty() );
+
+            int[] live = liveHandles( current );
+            boolean met = true;
+            for ( int handle : live )
+            {
+                int length = 0;
+                double score = history.getCommittedScore();
+                for ( int interval = handle; interval != IntervalArena.NONE; interval = arena.getPredecessor( interval ) )
+                {
+                    length++;
+                    score += arena.getScore( interval );
+                }
+                assertEquals( index + 1, committed.size() + length );
+                assertEquals( arena.getTotalScore( handle ), score, 1e-9 * score );
+                met &= arena.getPredecessor( handle ) != IntervalArena.NONE
+                        && arena.getPredecessor( handle ) == arena.getPredecessor( live[0] );
+            }
+            assertFalse( "the chains meet but were not committed", met );
+        }
+        assertTrue( "nothing was committed", committed.size() > 1000 );
+    }
+
+    private static DataPoint firstPoint( IntervalArena arena )
+    {
+        DataPoint point = new DataPoint( null, CANDIDATES );
+        for ( int c = 0; c < CANDIDATES; c++ )
+        {
+            CandidateData candidate = new CandidateData( new ClosestStreetResult( null, null ), 5, arena );
+            candidate.addInterval( 0, 5, IntervalArena.NONE, 0 );
+            point.setCandidate( c, candidate );
+        }
+        return point;
+    }
+
+    // Every candidate of the next point gets intervals from random live intervals of the current point
+    private static DataPoint nextPoint( IntervalArena arena, DataPoint current, Random random )
+    {
+        int[] live = liveHandles( current );
+        DataPoint next = new DataPoint( null, CANDIDATES );
+        for ( int c = 0; c < CANDIDATES; c++ )
+        {
+            CandidateData candidate = new CandidateData( new ClosestStreetResult( null, null ), 5, arena );
+            for ( int k = 0; k < 8; k++ )
+            {
+                double low = random.nextDouble() * 10;
+                candidate.addInterval( low, low + random.nextDouble() * 10, live[random.nextInt( live.length )], random.nextDouble() * 100 );
+            }
+            next.setCandidate( c, candidate );
+        }
+        return next;
+    }
+
+    private static int[] liveHandles( DataPoint point )
+    {
+        List<Integer> handles = new ArrayList<>();
+        for ( CandidateData candidate : point.getAllCandidates() )
+        {
+            for ( int k = 0; k < candidate.getIntervals().size(); k++ )
+            {
+                handles.add( candidate.getIntervals().get( k ) );
+            }
+        }
+        return handles.stream().mapToInt( Integer::intValue ).toArray();
+    }
+
+    private static List<String> describeChains( IntervalArena arena, DataPoint point )
+    {
+        List<String> chains = new ArrayList<>();
+        for ( int handle : liveHandles( point ) )
+        {
+            StringBuilder chain = new StringBuilder();
+            for ( int interval = handle; interval != IntervalArena.NONE; interval = arena.getPredecessor( interval ) )
+            {
+                chain.append( System.identityHashCode( arena.getCandidate( interval ) ) ).append( ' ' )
+                     .append( arena.getVMin( interval ) ).append( ' ' ).append( arena.getScore( interval ) ).append( ';' );
+            }
+            chains.add( chain.toString() );
+        }
+        return chains;
+    }
+}
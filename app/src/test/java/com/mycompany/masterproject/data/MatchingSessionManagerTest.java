@@ -0,0 +1,137 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+import com.mycompany.masterproject.grid.StreetGridBuilder;
+import com.mycompany.masterproject.grid.StreetIndex;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the MatchingSessionManager with vehicles driving along the rows of the grid of ConsistencyMatcherTest.
+ */
+public class MatchingSessionManagerTest
+    extends TestCase
+{
+    private final long[] clock = new long[1];
+    private final Map<String, List<String>> emitted = new HashMap<>();
+    private ConsistencyMatcher matcher;
+
+    public MatchingSessionManagerTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MatchingSessionManagerTest.class );
+    }
+
+    @Override
+    protected void setUp()
+    {
+        Graph graph = ConsistencyMatcherTest.gridGraph();
+        StreetIndex index = StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE );
+        matcher = new ConsistencyMatcher( graph, index, new ConsistencyMatcher.Config().setCommitLag( 3 ) );
+    }
+
+    /**
+     * Interleaved vehicles are matched as if each was matched alone, and nothing is emitted twice or lost.
+     */
+    public void testInterleavedVehiclesEqualSingleStreams()
+    {
+        MatchingSessionManager manager = manager( 10, 60_000 );
+        replay( manager, ConsistencyMatcherTest.SIZE - 2 );
+        assertEquals( ConsistencyMatcherTest.SIZE - 2, manager.size() );
+        assertEquals( ConsistencyMatcherTest.SIZE - 2, manager.getSessionStats().size() );
+        manager.closeAll();
+        assertEquals( 0, manager.size() );
+
+        for ( int row = 1; row < ConsistencyMatcherTest.SIZE - 1; row++ )
+        {
+            assertEquals( single( row ), emitted.get( "row " + row ) );
+        }
+        assertEquals( 0, manager.getIdleEvictions() + manager.getCapacityEvictions() );
+    }
+
+    /**
+     * With fewer sessions allowed than vehicles, the least recently active sessions are closed and every point
+     * is still emitted exactly once; sessions without positions are closed after the idle timeout.
+     */
+    public void testEviction()
+    {
+        MatchingSessionManager manager = manager( 2, 60_000 );
+        int vehicles = ConsistencyMatcherTest.SIZE - 2;
+        replay( manager, vehicles );
+        assertEquals( 2, manager.size() );
+        assertTrue( manager.getCapacityEvictions() > 0 );
+        for ( MatchingSessionManager.SessionStats session : manager.getSessionStats() )
+        {
+            assertTrue( session.getCpuNanos() > 0 );
+            assertTrue( session.getPeakAllocatedBytes() > 0 );
+        }
+
+        clock[0] += 60_001;
+        manager.evictIdle();
+        assertEquals( 0, manager.size() );
+        assertEquals( 2, manager.getIdleEvictions() );
+        assertEquals( manager.getOpened(), manager.getIdleEvictions() + manager.getCapacityEvictions() );
+        for ( int row = 1; row <= vehicles; row++ )
+        {
+            assertEquals( ConsistencyMatcherTest.SIZE - 1, emitted.get( "row " + row ).size() );
+        }
+    }
+
+    private MatchingSessionManager manager( int maxSessions, long idleTimeout )
+    {
+        return new MatchingSessionManager( matcher, maxSessions, idleTimeout,
+                ( vehicle, decided ) -> collect( vehicle, decided ), () -> clock[0] );
+    }
+
+    // The vehicle of each row sends the points of its track, the vehicles taking turns
+    private void replay( MatchingSessionManager manager, int vehicles )
+    {
+        for ( int k = 0; k < ConsistencyMatcherTest.SIZE - 1; k++ )
+        {
+            for ( int row = 1; row <= vehicles; row++ )
+            {
+                TimedGeoPosition position = ConsistencyMatcherTest.track( row ).getTrackPoints().get( k );
+                clock[0] = position.getTimestamp();
+                collect( "row " + row, manager.add( "row " + row, position ) );
+            }
+        }
+    }
+
+    private void collect( String vehicle, List<ClosestStreetResult> decided )
+    {
+        List<String> path = emitted.computeIfAbsent( vehicle, key -> new ArrayList<>() );
+        for ( ClosestStreetResult candidate : decided )
+        {
+            path.add( candidate.getPosition() + " " + candidate.getSegment().id );
+        }
+    }
+
+    private List<String> single( int row )
+    {
+        OnlineMatcher online = matcher.startOnline();
+        List<ClosestStreetResult> decided = new ArrayList<>();
+        for ( TimedGeoPosition position : ConsistencyMatcherTest.track( row ).getTrackPoints() )
+        {
+            decided.addAll( online.add( position ) );
+        }
+        decided.addAll( online.finish() );
+        List<String> path = new ArrayList<>();
+        for ( ClosestStreetResult candidate : decided )
+        {
+            path.add( candidate.getPosition() + " " + candidate.getSegment().id );
+        }
+        return path;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the U(x) cache of RouteProfile, which is keyed on the upper start speed only.
+ */
+public class RouteProfileTest
+    extends TestCase
+{
+    private static final double A = 5.0;
+
+    public RouteProfileTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RouteProfileTest.class );
+    }
+
+    /**
+     * A function cached for one lower start speed serves every other lower start speed with the same upper
+     * one: it is returned exactly when a fresh build has a witness for it, and gives the same speed intervals.
+     */
+    public void testCachedFunctionMatchesFreshBuild()
+    {
+        double[] limits = { 30 / 3.6, 50 / 3.6, 100 / 3.6, 3 };
+        Random random = new Random( 7 );
+        RouteProfile route = new RouteProfile();
+        int accepted = 0;
+        int rejected = 0;
+        for ( int n = 0; n < 2000; n++ )
+        {
+            List<PathSegment> segments = new ArrayList<>();
+            int count = 1 + random.nextInt( 6 );
+            for ( int i = 0; i < count; i++ )
+            {
+                segments.add( new PathSegment( random.nextDouble() * 100, limits[random.nextInt( limits.length )] ) );
+            }
+            route.load( segments );
+            double vStartMax = random.nextDouble() * 30;
+            route.getUFunction( random.nextDouble() * vStartMax, vStartMax, A ); // Fills the cache
+            long builds = route.getBuilds();
+
+            UFunction fresh = new UFunction();
+            double maxStartSpeedMin = UFunctionBuilder.buildUFunction( new RouteProfile( segments ), vStartMax, A, fresh );
+            for ( int k = 0; k < 5; k++ )
+            {
+                double vStartMin = random.nextDouble() * vStartMax;
+                UFunction cached = route.getUFunction( vStartMin, vStartMax, A );
+                assertEquals( builds, route.getBuilds() );
+                boolean witness = !Double.isNaN( maxStartSpeedMin ) && maxStartSpeedMin >= vStartMin;
+                assertEquals( "witness for " + segments + ", [" + vStartMin + ", " + vStartMax + "]", witness, cached != null );
+                if ( !witness )
+                {
+                    rejected++;
+                    continue;
+                }
+                accepted++;
+                double deltaT = fresh.integrateOneOverU() * ( 0.5 + random.nextDouble() * 2 );
+                assertEquals( Arrays.toString( fresh.computeSpeedInterval( vStartMin, vStartMax, -A, A, deltaT ) ),
+                              Arrays.toString( cached.computeSpeedInterval( vStartMin, vStartMax, -A, A, deltaT ) ) );
+            }
+        }
+        assertTrue( "too few lower start speeds with a witness", accepted > 1000 );
+        assertTrue( "too few lower start speeds without a witness", rejected > 100 );
+    }
+
+    /**
+     * A slow segment right after the start bounds the lower start speed: above the bound there is no
+     * witness, whichever lower start speed built the function.
+     */
+    public void testLowerStartSpeedAboveBoundIsRejected()
+    {
+        List<PathSegment> segments = List.of( new PathSegment( 5, 20 ), new PathSegment( 100, 3 ) );
+        double bound = Math.sqrt( 3 * 3 + 2 * A * 5 ); // Decelerating to 3 m/s over the first 5 m
+
+        RouteProfile route = new RouteProfile( segments );
+        assertNull( route.getUFunction( bound + 0.01, 20, A ) );
+        assertNotNull( route.getUFunction( bound - 0.01, 20, A ) );
+        assertNull( route.getUFunction( bound + 0.01, 20, A ) );
+        assertEquals( 1, route.getBuilds() );
+        assertEquals( 3, route.getLookups() );
+
+        // An upper start speed below the bound is a new cache key and leaves every lower start speed a witness
+        assertNotNull( route.getUFunction( bound - 0.01, bound - 0.005, A ) );
+        assertEquals( 2, route.getBuilds() );
+    }
+
+    /**
+     * Loading another route drops the cached functions, also the verdict on the lower start speed.
+     */
+    public void testLoadDropsCachedFunctions()
+    {
+        List<PathSegment> slowStart = List.of( new PathSegment( 5, 20 ), new PathSegment( 100, 3 ) );
+        List<PathSegment> fastStart = List.of( new PathSegment( 50, 20 ), new PathSegment( 100, 10 ) );
+
+        RouteProfile route = new RouteProfile( slowStart );
+        assertNull( route.getUFunction( 15, 20, A ) );
+
+        route.load( fastStart );
+        UFunction cached = route.getUFunction( 15, 20, A );
+        assertNotNull( cached );
+        assertEquals( 2, route.getBuilds() );
+        UFunction fresh = UFunctionBuilder.sisToUFunction( fastStart, 15, 20, A );
+        assertEquals( fresh.integrateOneOverU(), cached.integrateOneOverU(), 0.0 );
+        assertEquals( fresh.getLength(), cached.getLength(), 0.0 );
+
+        route.load( slowStart );
+        assertNull( route.getUFunction( 15, 20, A ) );
+        assertEquals( 3, route.getBuilds() );
+    }
+}
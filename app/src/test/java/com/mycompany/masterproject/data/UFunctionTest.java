@@ -0,0 +1,390 @@
+package com.mycompany.masterproject.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Differential tests of the UFunction solvers and piece lookups against their search-based and linear-scan references.
+ */
+public class UFunctionTest
+    extends TestCase
+{
+    private static final double A = 5.0;
+    private static final int CASES = 20000;
+
+    public UFunctionTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( UFunctionTest.class );
+    }
+
+    /**
+     * The closed-form x' agrees with the golden section search, and where the witness can take
+     * exactly deltaT it hits deltaT much more closely than the search.
+     */
+    public void testXPrimeMatchesSearch()
+    {
+        Random random = new Random( 1 );
+        int interior = 0;
+        for ( int i = 0; i < CASES; i++ )
+        {
+            double vDown = random.nextDouble() * 30;
+            double length = 1 + random.nextDouble() * 500;
+            double deltaT = random.nextDouble() * 60;
+            double decelEnd = Math.min( length, vDown * vDown / ( 2 * A ) );
+
+            double analytic = UFunction.calculateXPrime( decelEnd, vDown, -A, A, deltaT, length );
+            double search = UFunction.calculateXPrimeBySearch( decelEnd, vDown, -A, A, deltaT, length );
+            assertEquals( "x' for vDown=" + vDown + ", L=" + length + ", deltaT=" + deltaT, search, analytic, 1e-5 );
+            assertTrue( analytic >= 0 && analytic <= decelEnd );
+
+            if ( analytic > 0 && analytic < decelEnd )
+            {
+                interior++;
+                assertEquals( deltaT, witnessTime( analytic, vDown, length ), 1e-9 );
+            }
+        }
+        assertTrue( "too few cases with a solution inside [0, decelEnd]", interior > CASES / 20 );
+    }
+
+    public void testXPrimeBounds()
+    {
+        // Too little time even when accelerating right away, and more time than the slowest witness needs
+        assertEquals( 0.0, UFunction.calculateXPrime( 10, 10, -A, A, 0.1, 100 ), 0.0 );
+        assertEquals( 10.0, UFunction.calculateXPrime( 10, 10, -A, A, 1000, 100 ), 0.0 );
+        assertEquals( 0.0, UFunction.calculateXPrime( 0, 0, -A, A, 5, 100 ), 0.0 );
+    }
+
+    /**
+     * The direct vDownFinal agrees with the bisection, or where it does not, its min witness takes deltaT
+     * more exactly than the bisection's (which returns the midpoint after its last step).
+     */
+    public void testVDownFinalMatchesBisection()
+    {
+        double[] limits = { 30 / 3.6, 50 / 3.6, 100 / 3.6, 3 };
+        Random random = new Random( 2 );
+        UFunction u = new UFunction();
+        int compared = 0;
+        for ( int n = 0; n < CASES; n++ )
+        {
+            List<PathSegment> segments = new ArrayList<>();
+            int count = 1 + random.nextInt( 5 );
+            for ( int i = 0; i < count; i++ )
+            {
+                segments.add( new PathSegment( random.nextDouble() * 300, limits[random.nextInt( limits.length )] ) );
+            }
+            double vStartMax = random.nextDouble() * 30;
+            double vStartMin = random.nextDouble() * vStartMax;
+            if ( !UFunctionBuilder.sisToUFunction( segments, vStartMin, vStartMax, A, u ) )
+            {
+                continue;
+            }
+            double length = u.getLength();
+            double deltaT = u.integrateOneOverU() * ( 1 + random.nextDouble() * 3 );
+            if ( minWitnessTime( u, 0, length ) <= deltaT )
+            {
+                continue; // Stopping at the end is possible, vDownFinal is not needed
+            }
+            compared++;
+            double direct = u.calculateVDownFinal( -A, deltaT, length );
+            double bisection = u.calculateVDownFinalByBisection( -A, deltaT, length );
+            if ( Math.abs( direct - bisection ) > 1e-4 )
+            {
+                assertEquals( "vDownFinal for " + segments + ", deltaT=" + deltaT, deltaT, minWitnessTime( u, direct, length ), 1e-6 );
+            }
+        }
+        assertTrue( "too few routes need vDownFinal", compared > 100 );
+    }
+
+    /**
+     * A U(x) from the route cache, whose transfer map is reused across intervals and time gaps, gives the
+     * same speed intervals as a U(x) built afresh for every interval.
+     */
+    public void testSpeedTransferMatchesFreshFunction()
+    {
+        double[] limits = { 30 / 3.6, 50 / 3.6, 100 / 3.6, 3 };
+        Random random = new Random( 3 );
+        RouteProfile route = new RouteProfile();
+        UFunction fresh = new UFunction();
+        int compared = 0;
+        for ( int n = 0; n < CASES / 10; n++ )
+        {
+            List<PathSegment> segments = new ArrayList<>();
+            int count = 1 + random.nextInt( 5 );
+            for ( int i = 0; i < count; i++ )
+            {
+                segments.add( new PathSegment( random.nextDouble() * 300, limits[random.nextInt( limits.length )] ) );
+            }
+            route.load( segments );
+            double vStartMax = random.nextDouble() * 30;
+            double[] deltaTs = { 5 + random.nextDouble() * 60, 5 + random.nextDouble() * 60 };
+            for ( int k = 0; k < 10; k++ )
+            {
+                double vStartMin = random.nextDouble() * vStartMax;
+                double deltaT = deltaTs[k % 2];
+                UFunction cached = route.getUFunction( vStartMin, vStartMax, A );
+                boolean built = UFunctionBuilder.sisToUFunction( segments, vStartMin, vStartMax, A, fresh );
+                assertEquals( built, cached != null );
+                if ( !built )
+                {
+                    continue;
+                }
+                compared++;
+                double[] expected = fresh.computeSpeedInterval( vStartMin, vStartMax, -A, A, deltaT );
+                double[] actual = cached.computeSpeedInterval( vStartMin, vStartMax, -A, A, deltaT );
+                assertEquals( "interval for " + segments + ", vStartMin=" + vStartMin + ", deltaT=" + deltaT,
+                              Arrays.toString( expected ), Arrays.toString( actual ) );
+            }
+        }
+        assertTrue( "too few intervals with a U(x)", compared > CASES / 4 );
+        assertTrue( route.getBuilds() < route.getLookups() );
+    }
+
+    /**
+     * The travel time bound of a route never exceeds the travel time along its U(x).
+     */
+    public void testMinTravelTimeBoundsU()
+    {
+        double[] limits = { 30 / 3.6, 50 / 3.6, 100 / 3.6, 3 };
+        Random random = new Random( 4 );
+        RouteProfile route = new RouteProfile();
+        int tight = 0;
+        for ( int n = 0; n < CASES; n++ )
+        {
+            List<PathSegment> segments = new ArrayList<>();
+            int count = 1 + random.nextInt( 5 );
+            for ( int i = 0; i < count; i++ )
+            {
+                segments.add( new PathSegment( random.nextDouble() * 300, limits[random.nextInt( limits.length )] ) );
+            }
+            route.load( segments );
+            double vStartMax = random.nextDouble() * 30;
+            UFunction u = route.getUFunction( 0, vStartMax, A );
+            if ( u == null )
+            {
+                continue;
+            }
+            double bound = route.minTravelTime( vStartMax, A );
+            double time = u.integrateOneOverU();
+            assertTrue( "bound " + bound + " above " + time + " for " + segments + ", vStartMax=" + vStartMax,
+                        bound <= time * ( 1 + 1e-12 ) );
+            if ( bound > 0.9 * time )
+            {
+                tight++;
+            }
+        }
+        assertTrue( "bound is rarely close to the travel time", tight > CASES / 2 );
+        assertEquals( Double.POSITIVE_INFINITY, new RouteProfile( List.of( new PathSegment( 10, 0 ) ) ).minTravelTime( 5, A ), 0.0 );
+    }
+
+    /**
+     * The prefix-sum integrals, the binary-searched speed lookup and the truncation agree with linear scans
+     * over the pieces, on U(x) of routes with many speed limit changes and on their truncations.
+     */
+    public void testPieceLookupMatchesLinearScan()
+    {
+        Random random = new Random( 5 );
+        int functions = 0;
+        for ( UFunction u : manyPieceFunctions( random ) )
+        {
+            functions++;
+            assertEquals( referenceIntegral( u ), u.integrateOneOverU(), 1e-9 * u.integrateOneOverU() );
+            for ( double x : positions( random, u ) )
+            {
+                assertEquals( "U(" + x + ") of " + u, referenceSpeed( u, x ), u.getSpeed( x ), 0.0 );
+
+                UFunction truncated = u.getUFunctionUpTo( x, new UFunction() );
+                UFunction expected = referenceUpTo( u, x );
+                assertEquals( expected.size(), truncated.size() );
+                for ( int i = 0; i < expected.size(); i++ )
+                {
+                    assertEquals( expected.startX[i], truncated.startX[i], 0.0 );
+                    assertEquals( expected.endX[i], truncated.endX[i], 0.0 );
+                    assertEquals( expected.initialSpeed[i], truncated.initialSpeed[i], 0.0 );
+                    assertEquals( expected.endSpeed[i], truncated.endSpeed[i], 0.0 );
+                    assertEquals( expected.functionType[i], truncated.functionType[i] );
+                }
+                double time = referenceIntegral( expected );
+                assertEquals( "time up to " + x + " of " + u, time, u.integrateOneOverUUpTo( x ), 1e-9 * Math.max( 1, time ) );
+            }
+        }
+        assertTrue( "too few functions", functions > 1000 );
+    }
+
+    /**
+     * The intersection search, which only visits the pieces where the gap to the curve changes sign when the
+     * curve accelerates less than every piece, finds the same intersection as trying every piece.
+     */
+    public void testIntersectionMatchesLinearScan()
+    {
+        Random random = new Random( 6 );
+        int found = 0;
+        int searches = 0;
+        for ( UFunction u : manyPieceFunctions( random ) )
+        {
+            double length = u.endX[u.size() - 1];
+            for ( int k = 0; k < 20; k++ )
+            {
+                double curveStartX = random.nextBoolean() ? 0 : random.nextDouble() * length;
+                double curveAcceleration = random.nextBoolean() ? -A : ( random.nextDouble() - 0.5 ) * 4 * A;
+                double curveSpeed = random.nextDouble() * 40;
+                double expected = referenceIntersection( u, curveStartX, length, curveSpeed, curveAcceleration );
+                double actual = u.findIntersection( curveStartX, length, curveSpeed, curveAcceleration );
+                assertEquals( "curve from " + curveStartX + " at " + curveSpeed + " with " + curveAcceleration + " on " + u,
+                              expected, actual, 0.0 );
+                searches++;
+                if ( expected >= 0 )
+                {
+                    found++;
+                }
+            }
+        }
+        assertTrue( "too few intersections", found > searches / 10 );
+    }
+
+    // U(x) of random routes with 10 to 40 speed limit changes, and truncations of them (which are in order of x)
+    private static List<UFunction> manyPieceFunctions( Random random )
+    {
+        double[] limits = { 30 / 3.6, 50 / 3.6, 100 / 3.6, 3, 7 / 3.6, 130 / 3.6 };
+        List<UFunction> functions = new ArrayList<>();
+        while ( functions.size() < 2000 )
+        {
+            List<PathSegment> segments = new ArrayList<>();
+            int count = 10 + random.nextInt( 31 );
+            for ( int i = 0; i < count; i++ )
+            {
+                segments.add( new PathSegment( 1 + random.nextDouble() * 150, limits[random.nextInt( limits.length )] ) );
+            }
+            double vStartMax = random.nextDouble() * 30;
+            UFunction u = UFunctionBuilder.sisToUFunction( segments, 0, vStartMax, A );
+            if ( u == null || u.size() < 3 )
+            {
+                continue;
+            }
+            functions.add( u );
+            functions.add( u.getUFunctionUpTo( random.nextDouble() * u.getLength(), new UFunction() ) );
+        }
+        return functions;
+    }
+
+    // Random positions on U(x), and the borders of its pieces
+    private static List<Double> positions( Random random, UFunction u )
+    {
+        List<Double> positions = new ArrayList<>();
+        for ( int i = 0; i < u.size(); i++ )
+        {
+            positions.add( u.startX[i] );
+            positions.add( u.endX[i] );
+            positions.add( u.startX[i] + random.nextDouble() * ( u.endX[i] - u.startX[i] ) );
+        }
+        return positions;
+    }
+
+    // The pieces in visiting order, as the linear scans used them
+    private static int[] visitingOrder( UFunction u )
+    {
+        int[] order = new int[u.size()];
+        for ( int k = 0; k < order.length; k++ )
+        {
+            order[k] = u.descending ? u.size() - 1 - k : k;
+        }
+        return order;
+    }
+
+    private static double referenceIntegral( UFunction u )
+    {
+        double time = 0;
+        for ( int i = 0; i < u.size(); i++ )
+        {
+            time += UFunction.integrateOneOverPiece( u.functionType[i], u.startX[i], u.endX[i], u.initialSpeed[i], u.acceleration[i] );
+        }
+        return time;
+    }
+
+    private static double referenceSpeed( UFunction u, double x )
+    {
+        for ( int i : visitingOrder( u ) )
+        {
+            if ( x >= u.startX[i] && x <= u.endX[i] )
+            {
+                return u.functionType[i] == UFunction.FunctionType.CONSTANT
+                    ? u.endSpeed[i] : UFunction.calculateSpeedForwards( u.startX[i], x, u.initialSpeed[i], u.acceleration[i] );
+            }
+        }
+        throw new IllegalArgumentException( "x out of range" );
+    }
+
+    private static UFunction referenceUpTo( UFunction u, double x )
+    {
+        UFunction target = new UFunction();
+        for ( int i = 0; i < u.size(); i++ )
+        {
+            if ( x >= u.startX[i] && x <= u.endX[i] )
+            {
+                target.addSegment( u.startX[i], x, u.initialSpeed[i],
+                    UFunction.calculateSpeedForwards( u.startX[i], x, u.initialSpeed[i], u.acceleration[i] ), u.functionType[i], u.acceleration[i] );
+                break;
+            }
+            if ( x < u.startX[i] )
+            {
+                break;
+            }
+            target.addSegment( u.startX[i], u.endX[i], u.initialSpeed[i], u.endSpeed[i], u.functionType[i], u.acceleration[i] );
+        }
+        return target;
+    }
+
+    // Every piece in visiting order, with the intersection formulas of UFunction
+    private static double referenceIntersection( UFunction u, double curveStartX, double curveEndX, double v1, double a1 )
+    {
+        for ( int i : visitingOrder( u ) )
+        {
+            double x = Double.NaN;
+            if ( u.functionType[i] != UFunction.FunctionType.CONSTANT )
+            {
+                double a2 = u.acceleration[i];
+                double v2 = u.initialSpeed[i];
+                if ( a1 != a2 )
+                {
+                    x = ( Math.pow( v1, 2 ) - Math.pow( v2, 2 ) + 2 * a2 * u.startX[i] - 2 * a1 * curveStartX ) / ( 2 * ( a2 - a1 ) );
+                }
+            }
+            else if ( a1 != 0 )
+            {
+                x = ( Math.pow( v1, 2 ) - Math.pow( u.endSpeed[i], 2 ) - 2 * a1 * curveStartX ) / ( -2 * a1 );
+            }
+            if ( x >= Math.max( curveStartX, u.startX[i] ) && x <= Math.min( curveEndX, u.endX[i] ) )
+            {
+                return x;
+            }
+        }
+        return -1.0;
+    }
+
+    // Time of U(x) up to its intersection with the deceleration curve ending at vEnd, then that curve
+    private static double minWitnessTime( UFunction u, double vEnd, double length )
+    {
+        double x = u.findIntersection( 0, length, Math.sqrt( vEnd * vEnd + 2 * A * length ), -A );
+        UFunction witness = u.getUFunctionUpTo( x, new UFunction() );
+        witness.addSegment( x, length, Math.sqrt( vEnd * vEnd + 2 * A * ( length - x ) ), vEnd, UFunction.FunctionType.DECELERATION, -A );
+        return witness.integrateOneOverU();
+    }
+
+    // Time of the witness that decelerates from vDown up to xPrime and then accelerates to the end
+    private static double witnessTime( double xPrime, double vDown, double length )
+    {
+        double s = Math.sqrt( vDown * vDown - 2 * A * xPrime );
+        double w = Math.sqrt( s * s + 2 * A * ( length - xPrime ) );
+        return ( vDown - s ) / A + ( w - s ) / A;
+    }
+}
@@ -0,0 +1,80 @@
+package com.mycompany.masterproject.graph;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.grid.Endpoint;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the shortest paths between snapped positions.
+ */
+public class GraphTest
+    extends TestCase
+{
+    public GraphTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( GraphTest.class );
+    }
+
+    /**
+     * Positions on different edges are linked over the node they share, and the graph is not changed by the query.
+     */
+    public void testDifferentEdgesGoOverNode()
+    {
+        Graph graph = graph();
+        Graph.Node third = new Graph.Node( 3, 48.001, 11.002 );
+        graph.getAdjacencyList().put( 3L, third );
+        Edge edge = new Edge( 111, "residential", "50", 8 );
+        graph.getNode( 2 ).addNeighbor( 3, edge );
+        third.addNeighbor( 2, edge );
+
+        Map<String, Object> path = graph.dijkstraBetweenClosestStreetResults(
+            result( graph, segment( graph, 1, 2 ), 0.5 ), result( graph, segment( graph, 2, 3 ), 0.5 ) );
+        assertEquals( List.of( -1L, 2L, -2L ), path.get( "path" ) );
+        assertEquals( 1, graph.getNode( 1 ).getNeighbors().size() );
+        assertEquals( 2, graph.getNode( 2 ).getNeighbors().size() );
+    }
+
+    // One straight east-west street of about 150 m
+    private static Graph graph()
+    {
+        Graph graph = new Graph();
+        Graph.Node west = new Graph.Node( 1, 48.0, 11.0 );
+        Graph.Node east = new Graph.Node( 2, 48.0, 11.002 );
+        graph.getAdjacencyList().put( 1L, west );
+        graph.getAdjacencyList().put( 2L, east );
+        Edge edge = new Edge( 149, "residential", "50", 7 );
+        west.addNeighbor( 2, edge );
+        east.addNeighbor( 1, edge );
+        return graph;
+    }
+
+    private static Segment segment( Graph graph, long from, long to )
+    {
+        Graph.Node a = graph.getNode( from );
+        Graph.Node b = graph.getNode( to );
+        return new Segment( a.getNeighbors().get( to ).wayId, List.of(
+            new Endpoint( from, a.getLat(), a.getLon() ), new Endpoint( to, b.getLat(), b.getLon() ) ) );
+    }
+
+    // The position at the fraction of the way from the first to the second endpoint
+    private static ClosestStreetResult result( Graph graph, Segment segment, double fraction )
+    {
+        Endpoint start = segment.endpoints.get( 0 );
+        Endpoint end = segment.endpoints.get( 1 );
+        return new ClosestStreetResult( new TimedGeoPosition( new GeoPosition(
+            start.lat + ( end.lat - start.lat ) * fraction, start.lon + ( end.lon - start.lon ) * fraction ), 0 ), segment );
+    }
+}
@@ -0,0 +1,151 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the quadtree grid on a street lattice with one dense cluster.
+ */
+public class AdaptiveStreetGridTest
+    extends TestCase
+{
+    private static final int SIZE = 12;
+    private static final double SPACING = 0.0004;
+    private static final double CLUSTER_LAT = GridFixture.MIN_LAT + 5 * SPACING;
+    private static final double CLUSTER_LON = GridFixture.MIN_LON + 5 * SPACING;
+    private static final double CLUSTER_EXTENT = 0.0004;
+    private static final int MAX_SEGMENTS_PER_LEAF = 16;
+
+    private StreetGrid grid;
+
+    public AdaptiveStreetGridTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( AdaptiveStreetGridTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        List<Segment> segments = new ArrayList<>( GridFixture.lattice( SIZE, SPACING, 7 ) );
+        segments.addAll( GridFixture.cluster( CLUSTER_LAT, CLUSTER_LON, 300, CLUSTER_EXTENT, 7 ) );
+        grid = StreetGridLoader.loadStreetGrid( GridFixture.write( GridFixture.tempFile( ".jsonl" ), segments ).getPath() );
+    }
+
+    /**
+     * Wherever the c-th candidate lies within the area both indexes search completely, both return the same
+     * ways at the same distances.
+     */
+    public void testSameTopWaysAsFixedGrid()
+    {
+        AdaptiveStreetGrid adaptive = new AdaptiveStreetGrid( grid, MAX_SEGMENTS_PER_LEAF );
+        Random random = new Random( 37 );
+        int compared = 0;
+        for ( int i = 0; i < 600; i++ )
+        {
+            TimedGeoPosition point = i % 2 == 0
+                ? GridFixture.point( random, CLUSTER_LAT, CLUSTER_LON, CLUSTER_EXTENT )
+                : GridFixture.point( random, GridFixture.MIN_LAT, GridFixture.MIN_LON, SIZE * SPACING );
+            double lat = point.getPosition().getLatitude();
+            double lon = point.getPosition().getLongitude();
+            // The shorter side of the +-cell_size box both indexes search
+            double radius = GridGeometry.pointToMeters( lat, lon, lat, lon + GridFixture.CELL_SIZE );
+            for ( int c : new int[] { 1, 3, 6 } )
+            {
+                List<ClosestStreetResult> fixed = grid.findClosestStreets( point, c );
+                List<ClosestStreetResult> quadtree = adaptive.findClosestStreets( point, c );
+                if ( fixed.size() < c || distance( point, fixed.get( c - 1 ) ) >= radius )
+                {
+                    continue;
+                }
+                compared++;
+                assertEquals( ways( fixed ), ways( quadtree ) );
+                for ( int k = 0; k < c; k++ )
+                {
+                    assertEquals( distance( point, fixed.get( k ) ), distance( point, quadtree.get( k ) ), 1e-9 );
+                }
+            }
+        }
+        assertTrue( "only " + compared + " queries compared", compared > 600 );
+    }
+
+    /**
+     * Around the cluster the fixed grid scans the whole dense cell from every neighbouring cell, while the
+     * quadtree scans only the small leaves within reach; the counters count every query.
+     */
+    public void testQueryStats()
+    {
+        AdaptiveStreetGrid adaptive = new AdaptiveStreetGrid( grid, MAX_SEGMENTS_PER_LEAF );
+        grid.getQueryStats().reset();
+        Random random = new Random( 41 );
+        for ( int i = 0; i < 200; i++ )
+        {
+            TimedGeoPosition point = GridFixture.point( random, CLUSTER_LAT - 2 * CLUSTER_EXTENT,
+                CLUSTER_LON - 2 * CLUSTER_EXTENT, 5 * CLUSTER_EXTENT );
+            grid.findClosestStreets( point, 4 );
+            adaptive.findClosestStreets( point, 4 );
+        }
+        QueryStats fixedStats = grid.getQueryStats();
+        QueryStats adaptiveStats = adaptive.getQueryStats();
+        assertEquals( 200, fixedStats.getQueries() );
+        assertEquals( 200, adaptiveStats.getQueries() );
+        assertTrue( adaptiveStats.getCellsVisited() > 0 );
+        assertTrue( adaptiveStats + " vs " + fixedStats,
+            adaptiveStats.getSegmentsPerQuery() < fixedStats.getSegmentsPerQuery() );
+        assertEquals( (double) adaptiveStats.getSegmentsScanned() / 200, adaptiveStats.getSegmentsPerQuery(), 1e-12 );
+
+        adaptiveStats.reset();
+        assertEquals( 0, adaptiveStats.getQueries() );
+        assertEquals( 0.0, adaptiveStats.getSegmentsPerQuery() );
+    }
+
+    /**
+     * The tree is split where the segments are dense, but never below a quarter of the cell size.
+     */
+    public void testLeafCountAndDepth()
+    {
+        AdaptiveStreetGrid single = new AdaptiveStreetGrid( grid, Integer.MAX_VALUE );
+        assertEquals( 1, single.getLeafCount() );
+        assertEquals( 0, single.getMaxDepth() );
+
+        AdaptiveStreetGrid adaptive = new AdaptiveStreetGrid( grid, MAX_SEGMENTS_PER_LEAF );
+        GridBounds bounds = grid.getBounds();
+        double extent = Math.max( bounds.max_lat - bounds.min_lat, bounds.max_lon - bounds.min_lon );
+        int deepest = (int) Math.ceil( Math.log( extent / ( bounds.cell_size / 4 ) ) / Math.log( 2 ) );
+        assertTrue( "depth " + adaptive.getMaxDepth(), adaptive.getMaxDepth() >= 3 && adaptive.getMaxDepth() <= deepest );
+        assertTrue( "leaves " + adaptive.getLeafCount(), adaptive.getLeafCount() > 1 + 3 * 3 );
+        assertEquals( 0, ( adaptive.getLeafCount() - 1 ) % 3 ); // Every split turns one leaf into four
+        assertTrue( adaptive.getReferenceCount() >= single.getReferenceCount() );
+    }
+
+    private static TreeSet<Integer> ways( List<ClosestStreetResult> results )
+    {
+        TreeSet<Integer> ways = new TreeSet<>();
+        for ( ClosestStreetResult result : results )
+        {
+            ways.add( result.getSegment().way_id );
+        }
+        return ways;
+    }
+
+    private static double distance( TimedGeoPosition point, ClosestStreetResult result )
+    {
+        return GridGeometry.pointToMeters( point.getPosition().getLatitude(), point.getPosition().getLongitude(),
+            result.getPosition().getPosition().getLatitude(), result.getPosition().getPosition().getLongitude() );
+    }
+}
@@ -0,0 +1,75 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.mycompany.masterproject.data.CandidateTable;
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests that the candidates of a whole trajectory equal those of single lookups.
+ */
+public class BatchLookupTest
+    extends TestCase
+{
+    private static final int SIZE = 12;
+    private static final double SPACING = 0.0004;
+
+    public BatchLookupTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( BatchLookupTest.class );
+    }
+
+    public void testSequentialEqualsSingleLookups() throws IOException
+    {
+        check( false );
+    }
+
+    public void testParallelEqualsSingleLookups() throws IOException
+    {
+        check( true );
+    }
+
+    private static void check( boolean parallel ) throws IOException
+    {
+        StreetGrid grid = StreetGridLoader.loadStreetGrid(
+            GridFixture.write( GridFixture.tempFile( ".jsonl" ), GridFixture.lattice( SIZE, SPACING, 13 ) ).getPath() );
+
+        // A random walk over the grid, so the cell order differs from the track order, with a repeated point
+        // and one far outside the grid
+        Random random = new Random( 31 );
+        List<TimedGeoPosition> track = new ArrayList<>();
+        for ( int i = 0; i < 200; i++ )
+        {
+            track.add( GridFixture.point( random, GridFixture.MIN_LAT, GridFixture.MIN_LON, SIZE * SPACING ) );
+        }
+        track.add( track.get( 17 ) );
+        track.add( GridFixture.point( random, GridFixture.MIN_LAT + 1, GridFixture.MIN_LON, SPACING ) );
+
+        CandidateTable table = grid.findClosestStreets( track, 5, parallel );
+        assertEquals( track.size(), table.size() );
+        assertEquals( 5, table.getCandidatesPerPoint() );
+        for ( int i = 0; i < track.size(); i++ )
+        {
+            List<ClosestStreetResult> single = grid.findClosestStreets( track.get( i ), 5 );
+            assertEquals( "point " + i, GridFixture.describe( single ), GridFixture.describe( table.get( i ) ) );
+            for ( ClosestStreetResult candidate : table.get( i ) )
+            {
+                assertEquals( i, candidate.getPointIndex() );
+            }
+        }
+        assertTrue( table.get( track.size() - 1 ).isEmpty() );
+    }
+}
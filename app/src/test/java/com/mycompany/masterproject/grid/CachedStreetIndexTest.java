@@ -0,0 +1,199 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the candidate cache in front of a StreetGrid.
+ */
+public class CachedStreetIndexTest
+    extends TestCase
+{
+    private static final int SIZE = 12;
+    private static final double SPACING = 0.0004;
+    private static final double STEP = 0.00005;
+
+    private StreetGrid grid;
+
+    public CachedStreetIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CachedStreetIndexTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        grid = StreetGridLoader.loadStreetGrid(
+            GridFixture.write( GridFixture.tempFile( ".jsonl" ), GridFixture.lattice( SIZE, SPACING, 19 ) ).getPath() );
+    }
+
+    public void testHitsAndMisses()
+    {
+        CachedStreetIndex cached = new CachedStreetIndex( grid, STEP, 100 );
+        TimedGeoPosition point = at( 0 );
+        cached.findClosestStreets( point, 3 );
+        assertEquals( 0, cached.getHits() );
+        assertEquals( 1, cached.getMisses() );
+
+        cached.findClosestStreets( point, 3 );
+        cached.findClosestStreets( at( STEP / 4 ), 3 ); // Same raster cell
+        assertEquals( 2, cached.getHits() );
+
+        cached.findClosestStreets( point, 4 ); // Another c is another entry
+        cached.findClosestStreets( at( 2 * STEP ), 3 );
+        assertEquals( 3, cached.getMisses() );
+        assertEquals( 3, cached.size() );
+        assertEquals( 0.4, cached.getHitRate(), 1e-12 );
+
+        cached.clear();
+        assertEquals( 0, cached.size() );
+        assertEquals( 0, cached.getHits() + cached.getMisses() );
+        assertEquals( 0.0, cached.getHitRate() );
+    }
+
+    /**
+     * The cache never grows beyond maxEntries, and the oldest entries go first.
+     */
+    public void testEvictionAtMaxEntries()
+    {
+        CachedStreetIndex cached = new CachedStreetIndex( grid, STEP, 3 );
+        for ( int k = 0; k < 5; k++ )
+        {
+            cached.findClosestStreets( at( k * 2 * STEP ), 3 );
+            assertTrue( cached.size() <= 3 );
+        }
+        assertEquals( 3, cached.size() );
+        assertEquals( 5, cached.getMisses() );
+
+        cached.findClosestStreets( at( 4 * 2 * STEP ), 3 ); // Newest entry is still cached
+        assertEquals( 1, cached.getHits() );
+        cached.findClosestStreets( at( 0 ), 3 ); // Oldest entry was evicted
+        assertEquals( 6, cached.getMisses() );
+        assertEquals( 3, cached.size() );
+    }
+
+    /**
+     * On a hit the exact point is snapped again, so wherever the cached entry holds the segments the delegate
+     * would choose, the results are exactly the delegate's.
+     */
+    public void testHitSnapsExactPoint()
+    {
+        CachedStreetIndex cached = new CachedStreetIndex( grid, STEP, 10_000 );
+        Random random = new Random( 43 );
+        int compared = 0;
+        for ( int i = 0; i < 400; i++ )
+        {
+            // Two points in the same raster cell, the second one answered from the cache
+            double lat = GridFixture.MIN_LAT + SPACING + random.nextDouble() * ( SIZE - 3 ) * SPACING;
+            double lon = GridFixture.MIN_LON + SPACING + random.nextDouble() * ( SIZE - 3 ) * SPACING;
+            lat = ( Math.floor( lat / STEP ) + 0.1 ) * STEP;
+            lon = ( Math.floor( lon / STEP ) + 0.1 ) * STEP;
+            cached.findClosestStreets( new TimedGeoPosition( new GeoPosition( lat, lon ), 0 ), 3 );
+            TimedGeoPosition second = new TimedGeoPosition( new GeoPosition( lat + 0.8 * STEP * random.nextDouble(),
+                lon + 0.8 * STEP * random.nextDouble() ), 5 );
+            long hits = cached.getHits();
+            List<ClosestStreetResult> fromCache = cached.findClosestStreets( second, 3 );
+            assertEquals( hits + 1, cached.getHits() );
+
+            List<ClosestStreetResult> expected = grid.findClosestStreets( second, 3 );
+            for ( ClosestStreetResult result : fromCache )
+            {
+                assertEquals( second.getTimestamp(), result.getPosition().getTimestamp() );
+            }
+            if ( segments( expected ).equals( segments( fromCache ) ) )
+            {
+                compared++;
+                assertEquals( GridFixture.describe( expected ), GridFixture.describe( fromCache ) );
+            }
+        }
+        assertTrue( "only " + compared + " hits compared", compared > 200 );
+    }
+
+    /**
+     * Threads querying the same points get the delegate's results, and every query is counted once.
+     */
+    public void testConcurrentUse() throws Exception
+    {
+        CachedStreetIndex cached = new CachedStreetIndex( grid, STEP / 100, 50 );
+        Random random = new Random( 47 );
+        List<TimedGeoPosition> points = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for ( int i = 0; i < 200; i++ )
+        {
+            points.add( GridFixture.point( random, GridFixture.MIN_LAT, GridFixture.MIN_LON, SIZE * SPACING ) );
+            expected.add( GridFixture.describe( grid.findClosestStreets( points.get( i ), 4 ) ) );
+        }
+
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ )
+            {
+                int offset = t * 37;
+                futures.add( executor.submit( () -> {
+                    for ( int round = 0; round < 3; round++ )
+                    {
+                        for ( int k = 0; k < points.size(); k++ )
+                        {
+                            int i = ( k + offset ) % points.size();
+                            assertEquals( expected.get( i ), GridFixture.describe( cached.findClosestStreets( points.get( i ), 4 ) ) );
+                        }
+                    }
+                } ) );
+            }
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertEquals( threads * 3 * points.size(), cached.getHits() + cached.getMisses() );
+        assertTrue( cached.getHits() > 0 );
+        assertTrue( cached.size() <= 50 );
+    }
+
+    // A point the given number of degrees east of a raster corner in the middle of the grid
+    private static TimedGeoPosition at( double east )
+    {
+        double lat = ( Math.floor( ( GridFixture.MIN_LAT + SIZE / 2 * SPACING ) / STEP ) + 0.5 ) * STEP;
+        double lon = ( Math.floor( ( GridFixture.MIN_LON + SIZE / 2 * SPACING ) / STEP ) + 0.1 ) * STEP;
+        return new TimedGeoPosition( new GeoPosition( lat, lon + east ), 0 );
+    }
+
+    // The segments of the results by way and node IDs
+    private static TreeSet<String> segments( List<ClosestStreetResult> results )
+    {
+        TreeSet<String> segments = new TreeSet<>();
+        for ( ClosestStreetResult result : results )
+        {
+            segments.add( result.getSegment().way_id + ":" + result.getSegment().endpoints.get( 0 ).nodeId
+                + "-" + result.getSegment().endpoints.get( 1 ).nodeId );
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,227 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the sidecar index of grid.jsonl files.
+ */
+public class GridFileIndexTest
+    extends TestCase
+{
+    public GridFileIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( GridFileIndexTest.class );
+    }
+
+    /**
+     * Every range covers exactly the cell's line, its first segment counts the segments of the lines
+     * before, and the recorded segment IDs are those StreetGridLoader gives.
+     */
+    public void testOffsetsAndFirstSegments() throws IOException
+    {
+        checkRanges( GridFixture.write( tempGrid(), GridFixture.lattice( 6, 0.0004, 1 ) ) );
+    }
+
+    /**
+     * Lines ending in CRLF are indexed like lines ending in LF; the carriage return stays in the range
+     * and is read as whitespace.
+     */
+    public void testCrlfLines() throws IOException
+    {
+        File grid = GridFixture.write( tempGrid(), GridFixture.lattice( 6, 0.0004, 1 ), GridFixture.CELL_SIZE, "\r\n" );
+        checkRanges( grid );
+        GridFileIndex index = GridFileIndex.build( grid.getPath() );
+        assertEquals( GridFileIndex.build( GridFixture.write( tempGrid(), GridFixture.lattice( 6, 0.0004, 1 ) ).getPath() ).getCellCount(),
+            index.getCellCount() );
+    }
+
+    /**
+     * The last cell is indexed even if its line has no newline.
+     */
+    public void testLastLineWithoutNewline() throws IOException
+    {
+        File grid = GridFixture.write( tempGrid(), GridFixture.lattice( 6, 0.0004, 1 ) );
+        int cells = GridFileIndex.build( grid.getPath() ).getCellCount();
+        try ( RandomAccessFile file = new RandomAccessFile( grid, "rw" ) )
+        {
+            file.setLength( file.length() - 1 );
+        }
+        assertEquals( cells, GridFileIndex.build( grid.getPath() ).getCellCount() );
+        checkRanges( grid );
+    }
+
+    /**
+     * A saved index is reused while the grid file is unchanged, and rebuilt when the file's length or
+     * modification time no longer match.
+     */
+    public void testStaleIndexIsRebuilt() throws IOException
+    {
+        File grid = GridFixture.write( tempGrid(), GridFixture.lattice( 4, 0.0004, 1 ) );
+        File indexFile = new File( grid.getPath() + GridFileIndex.SUFFIX );
+        GridFileIndex index = GridFileIndex.loadOrBuild( grid.getPath() );
+        assertTrue( indexFile.isFile() );
+        assertEquals( grid.lastModified(), recordedModification( indexFile ) );
+        assertEquals( index.getCellCount(), GridFileIndex.loadOrBuild( grid.getPath() ).getCellCount() );
+
+        // A longer file with one more cell
+        try ( FileWriter writer = new FileWriter( grid, StandardCharsets.UTF_8, true ) )
+        {
+            writer.write( "{\"cell_id\":[90,90],\"segments\":[]}\n" );
+        }
+        GridFileIndex rebuilt = GridFileIndex.loadOrBuild( grid.getPath() );
+        assertEquals( index.getCellCount() + 1, rebuilt.getCellCount() );
+        assertNotNull( rebuilt.getRange( new CellId( 90, 90 ) ) );
+        assertEquals( grid.length(), recordedLength( indexFile ) );
+
+        // Same length, a newer modification time
+        long modified = grid.lastModified() + 10_000;
+        assertTrue( grid.setLastModified( modified ) );
+        GridFileIndex.loadOrBuild( grid.getPath() );
+        assertEquals( grid.lastModified(), recordedModification( indexFile ) );
+    }
+
+    /**
+     * A street listed in several cells gets one ID, the same in the eager, lazy and binary grid of the
+     * file, and the IDs number the distinct streets in the order they first appear.
+     */
+    public void testSegmentIdsAreInterned() throws IOException
+    {
+        List<Segment> streets = GridFixture.lattice( 6, 0.0004, 3 );
+        File grid = GridFixture.write( tempGrid(), streets );
+        StreetGrid eager = StreetGridLoader.loadStreetGrid( grid.getPath() );
+        Map<String, Integer> ids = new HashMap<>();
+        int references = 0;
+        for ( GridCell cell : eager.getCells() )
+        {
+            for ( Segment segment : cell.segments )
+            {
+                Integer id = ids.putIfAbsent( key( segment ), segment.id );
+                assertTrue( id == null || id == segment.id );
+                references++;
+            }
+        }
+        assertTrue( references > streets.size() ); // Some streets are listed in several cells
+        assertEquals( streets.size(), ids.size() );
+        assertEquals( idsUpTo( streets.size() ), new HashSet<>( ids.values() ) );
+
+        // The lazy grid gets its IDs from the index, the binary grid from its segment table
+        File binary = GridFixture.tempFile( ".bin" );
+        BinaryGridConverter.convert( grid.getPath(), binary.getPath() );
+        MappedStreetGrid mapped = new MappedStreetGrid( binary.getPath() );
+        try ( LazyStreetGrid lazy = StreetGridLoader.loadLazyStreetGrid( grid.getPath() ) )
+        {
+            Random random = new Random( 3 );
+            for ( int i = 0; i < 200; i++ )
+            {
+                TimedGeoPosition point = GridFixture.point( random, GridFixture.MIN_LAT, GridFixture.MIN_LON, 6 * 0.0004 );
+                for ( StreetIndex index : new StreetIndex[] { eager, lazy, mapped } )
+                {
+                    for ( ClosestStreetResult result : index.findClosestStreets( point, 4 ) )
+                    {
+                        assertEquals( ids.get( key( result.getSegment() ) ).intValue(), result.getSegment().id );
+                    }
+                }
+            }
+        }
+    }
+
+    private static String key( Segment segment )
+    {
+        return segment.way_id + ":" + segment.endpoints.get( 0 ).nodeId + "-" + segment.endpoints.get( 1 ).nodeId;
+    }
+
+    private static Set<Integer> idsUpTo( int count )
+    {
+        Set<Integer> ids = new HashSet<>();
+        for ( int id = 0; id < count; id++ )
+        {
+            ids.add( id );
+        }
+        return ids;
+    }
+
+    // Checks the ranges of the index against the lines of the file
+    private static void checkRanges( File grid ) throws IOException
+    {
+        GridFileIndex index = GridFileIndex.build( grid.getPath() );
+        StreetGrid eager = StreetGridLoader.loadStreetGrid( grid.getPath() );
+        byte[] bytes = Files.readAllBytes( grid.toPath() );
+        List<String> lines = Files.readAllLines( grid.toPath(), StandardCharsets.UTF_8 );
+        int segments = 0;
+        int cells = 0;
+        for ( String line : lines.subList( 2, lines.size() ) ) // Description and bounds first
+        {
+            JsonNode cellId = new ObjectMapper().readTree( line ).get( "cell_id" );
+            GridCell cell = eager.getCell( new CellId( cellId.get( 0 ).asInt(), cellId.get( 1 ).asInt() ) );
+            GridFileIndex.CellRange range = index.getRange( new CellId( cell.getOriginalRow(), cell.getOriginalCol() ) );
+            assertNotNull( range );
+            assertEquals( line, new String( bytes, (int) range.offset(), range.length(), StandardCharsets.UTF_8 ).trim() );
+            assertEquals( segments, range.firstSegment() );
+            for ( int k = 0; k < cell.segments.size(); k++ )
+            {
+                assertEquals( cell.segments.get( k ).id, index.getSegmentIds()[range.firstSegment() + k] );
+            }
+            segments += cell.segments.size();
+            cells++;
+        }
+        assertEquals( cells, index.getCellCount() );
+        assertEquals( segments, index.getSegmentIds().length );
+    }
+
+    private static long recordedLength( File indexFile ) throws IOException
+    {
+        try ( DataInputStream in = new DataInputStream( new FileInputStream( indexFile ) ) )
+        {
+            in.readInt(); // Magic
+            in.readInt(); // Version
+            return in.readLong();
+        }
+    }
+
+    private static long recordedModification( File indexFile ) throws IOException
+    {
+        try ( DataInputStream in = new DataInputStream( new FileInputStream( indexFile ) ) )
+        {
+            in.readInt();
+            in.readInt();
+            in.readLong();
+            return in.readLong();
+        }
+    }
+
+    static File tempGrid() throws IOException
+    {
+        File grid = GridFixture.tempFile( ".jsonl" );
+        new File( grid.getPath() + GridFileIndex.SUFFIX ).deleteOnExit();
+        return grid;
+    }
+}
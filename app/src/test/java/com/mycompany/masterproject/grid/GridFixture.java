@@ -0,0 +1,182 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.data.ClosestStreetResult;
+import com.mycompany.masterproject.graph.Segment;
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+/**
+ * Small street networks for the grid tests, written as grid.jsonl files like the preprocessing does.
+ */
+class GridFixture
+{
+    static final double MIN_LAT = 48.0;
+    static final double MIN_LON = 7.8;
+    static final double CELL_SIZE = 0.0005;
+
+    /**
+     * A jittered lattice of size x size nodes. Row r is way r, column c is way 1000 + c, and one
+     * zero-length segment lies on the middle node.
+     */
+    static List<Segment> lattice( int size, double spacing, long seed )
+    {
+        Random random = new Random( seed );
+        Endpoint[][] nodes = new Endpoint[size][size];
+        for ( int row = 0; row < size; row++ )
+        {
+            for ( int col = 0; col < size; col++ )
+            {
+                nodes[row][col] = new Endpoint( row * size + col + 1,
+                    MIN_LAT + row * spacing + ( random.nextDouble() - 0.5 ) * spacing * 0.3,
+                    MIN_LON + col * spacing + ( random.nextDouble() - 0.5 ) * spacing * 0.3 );
+            }
+        }
+        List<Segment> segments = new ArrayList<>();
+        for ( int row = 0; row < size; row++ )
+        {
+            for ( int col = 0; col < size; col++ )
+            {
+                if ( col + 1 < size )
+                {
+                    segments.add( new Segment( row, List.of( nodes[row][col], nodes[row][col + 1] ) ) );
+                }
+                if ( row + 1 < size )
+                {
+                    segments.add( new Segment( 1000 + col, List.of( nodes[row][col], nodes[row + 1][col] ) ) );
+                }
+            }
+        }
+        Endpoint middle = nodes[size / 2][size / 2];
+        segments.add( new Segment( 999, List.of( middle, middle ) ) );
+        return segments;
+    }
+
+    /**
+     * Many short ways in a small square around (lat, lon), for a grid with one dense cluster.
+     */
+    static List<Segment> cluster( double lat, double lon, int count, double extent, long seed )
+    {
+        Random random = new Random( seed );
+        List<Segment> segments = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            double startLat = lat + random.nextDouble() * extent;
+            double startLon = lon + random.nextDouble() * extent;
+            segments.add( new Segment( 5000 + i, List.of(
+                new Endpoint( 100_000 + 2 * i, startLat, startLon ),
+                new Endpoint( 100_001 + 2 * i, startLat + ( random.nextDouble() - 0.5 ) * extent * 0.1,
+                    startLon + ( random.nextDouble() - 0.5 ) * extent * 0.1 ) ) ) );
+        }
+        return segments;
+    }
+
+    /**
+     * Writes the segments as a grid.jsonl file: a description line, the bounds and one line per cell in
+     * (row, col) order, each segment listed in every cell it crosses.
+     */
+    static File write( File file, List<Segment> segments, double cellSize, String newline ) throws IOException
+    {
+        GridBounds bounds = new GridBounds();
+        bounds.min_lat = Double.POSITIVE_INFINITY;
+        bounds.min_lon = Double.POSITIVE_INFINITY;
+        bounds.max_lat = Double.NEGATIVE_INFINITY;
+        bounds.max_lon = Double.NEGATIVE_INFINITY;
+        bounds.cell_size = cellSize;
+        for ( Segment segment : segments )
+        {
+            for ( Endpoint endpoint : segment.endpoints )
+            {
+                bounds.min_lat = Math.min( bounds.min_lat, endpoint.lat );
+                bounds.max_lat = Math.max( bounds.max_lat, endpoint.lat );
+                bounds.min_lon = Math.min( bounds.min_lon, endpoint.lon );
+                bounds.max_lon = Math.max( bounds.max_lon, endpoint.lon );
+            }
+        }
+
+        Map<Long, List<Segment>> cells = new TreeMap<>();
+        for ( Segment segment : segments )
+        {
+            for ( CellId cell : StreetGridBuilder.coveredCells( segment, bounds ) )
+            {
+                cells.computeIfAbsent( ( (long) cell.row << 32 ) | cell.col, key -> new ArrayList<>() ).add( segment );
+            }
+        }
+
+        try ( PrintWriter writer = new PrintWriter( file, "UTF-8" ) )
+        {
+            writer.print( "# Test grid" + newline );
+            writer.print( "{\"min_lon\":" + bounds.min_lon + ",\"max_lon\":" + bounds.max_lon + ",\"min_lat\":"
+                + bounds.min_lat + ",\"max_lat\":" + bounds.max_lat + ",\"cell_size\":" + cellSize + "}" + newline );
+            for ( Map.Entry<Long, List<Segment>> cell : cells.entrySet() )
+            {
+                StringBuilder line = new StringBuilder();
+                line.append( "{\"cell_id\":[" ).append( cell.getKey() >> 32 ).append( ',' )
+                    .append( (int) (long) cell.getKey() ).append( "],\"segments\":[" );
+                for ( Segment segment : cell.getValue() )
+                {
+                    Endpoint start = segment.endpoints.get( 0 );
+                    Endpoint end = segment.endpoints.get( 1 );
+                    if ( line.charAt( line.length() - 1 ) == '}' )
+                    {
+                        line.append( ',' );
+                    }
+                    line.append( "{\"way_id\":" ).append( segment.way_id )
+                        .append( ",\"node_ids\":[" ).append( start.nodeId ).append( ',' ).append( end.nodeId )
+                        .append( "],\"endpoints\":[{\"lat\":" ).append( start.lat ).append( ",\"lon\":" ).append( start.lon )
+                        .append( "},{\"lat\":" ).append( end.lat ).append( ",\"lon\":" ).append( end.lon ).append( "}]}" );
+                }
+                writer.print( line.append( "]}" ).append( newline ) );
+            }
+        }
+        return file;
+    }
+
+    static File write( File file, List<Segment> segments ) throws IOException
+    {
+        return write( file, segments, CELL_SIZE, "\n" );
+    }
+
+    /**
+     * A random query point in the square [lat, lat + extent] x [lon, lon + extent].
+     */
+    static TimedGeoPosition point( Random random, double lat, double lon, double extent )
+    {
+        return new TimedGeoPosition( new GeoPosition( lat + random.nextDouble() * extent,
+            lon + random.nextDouble() * extent ), 0 );
+    }
+
+    /**
+     * A comparable description of a result list: way, snapped position, endpoints and ID of each result.
+     */
+    static String describe( List<ClosestStreetResult> results )
+    {
+        StringBuilder description = new StringBuilder();
+        for ( ClosestStreetResult result : results )
+        {
+            Segment segment = result.getSegment();
+            description.append( segment.way_id ).append( '@' )
+                .append( result.getPosition().getPosition().getLatitude() ).append( ',' )
+                .append( result.getPosition().getPosition().getLongitude() ).append( ' ' )
+                .append( segment.endpoints.get( 0 ).nodeId ).append( '-' ).append( segment.endpoints.get( 1 ).nodeId )
+                .append( '#' ).append( segment.id ).append( "; " );
+        }
+        return description.toString();
+    }
+
+    static File tempFile( String suffix ) throws IOException
+    {
+        File file = File.createTempFile( "grid", suffix );
+        file.deleteOnExit();
+        return file;
+    }
+}
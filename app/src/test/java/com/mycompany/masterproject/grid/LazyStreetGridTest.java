@@ -0,0 +1,67 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests that a lazily read grid answers like the completely loaded one.
+ */
+public class LazyStreetGridTest
+    extends TestCase
+{
+    private static final int SIZE = 12;
+    private static final double SPACING = 0.0004;
+
+    public LazyStreetGridTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LazyStreetGridTest.class );
+    }
+
+    public void testLazyEqualsEager() throws IOException
+    {
+        checkLazyEqualsEager( GridFixture.write( GridFileIndexTest.tempGrid(), GridFixture.lattice( SIZE, SPACING, 9 ) ), 64 );
+    }
+
+    /**
+     * A cache smaller than the cells a query touches still gives the same results, reading cells again.
+     */
+    public void testSmallCache() throws IOException
+    {
+        checkLazyEqualsEager( GridFixture.write( GridFileIndexTest.tempGrid(), GridFixture.lattice( SIZE, SPACING, 9 ) ), 2 );
+    }
+
+    public void testCrlfGrid() throws IOException
+    {
+        checkLazyEqualsEager( GridFixture.write( GridFileIndexTest.tempGrid(), GridFixture.lattice( SIZE, SPACING, 9 ),
+            GridFixture.CELL_SIZE, "\r\n" ), 64 );
+    }
+
+    private static void checkLazyEqualsEager( File file, int maxCachedCells ) throws IOException
+    {
+        StreetGrid eager = StreetGridLoader.loadStreetGrid( file.getPath() );
+        try ( LazyStreetGrid lazy = new LazyStreetGrid( file.getPath(), GridFileIndex.loadOrBuild( file.getPath() ), maxCachedCells ) )
+        {
+            Random random = new Random( 29 );
+            for ( int i = 0; i < 300; i++ )
+            {
+                TimedGeoPosition point = GridFixture.point( random, GridFixture.MIN_LAT, GridFixture.MIN_LON, SIZE * SPACING );
+                assertEquals( eager.findClosestStreets( point, 4 ), lazy.findClosestStreets( point, 4 ) );
+                assertEquals( GridFixture.describe( eager.findClosestStreets( point, 4 ) ),
+                    GridFixture.describe( lazy.findClosestStreets( point, 4 ) ) );
+            }
+            assertTrue( lazy.getCachedCellCount() <= maxCachedCells );
+        }
+    }
+}
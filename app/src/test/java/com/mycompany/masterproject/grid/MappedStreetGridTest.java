@@ -0,0 +1,121 @@
+package com.mycompany.masterproject.grid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.jxmapviewer.viewer.GeoPosition;
+
+import com.mycompany.masterproject.graph.TimedGeoPosition;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the binary grid format against the grid.jsonl it is converted from.
+ */
+public class MappedStreetGridTest
+    extends TestCase
+{
+    private static final int SIZE = 12;
+    private static final double SPACING = 0.0004;
+
+    public MappedStreetGridTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MappedStreetGridTest.class );
+    }
+
+    /**
+     * A converted grid returns the same candidates, in the same order, as the StreetGrid it came from.
+     */
+    public void testRoundTripGivesSameResults() throws IOException
+    {
+        File jsonl = GridFixture.write( GridFixture.tempFile( ".jsonl" ), GridFixture.lattice( SIZE, SPACING, 5 ) );
+        File binary = GridFixture.tempFile( ".bin" );
+        StreetGrid grid = StreetGridLoader.loadStreetGrid( jsonl.getPath() );
+        int[] counts = BinaryGridConverter.convert( jsonl.getPath(), binary.getPath() );
+        assertEquals( grid.getCells().size(), counts[0] );
+        assertEquals( 2 * SIZE * ( SIZE - 1 ) + 1, counts[1] ); // Every segment once, however many cells list it
+
+        MappedStreetGrid mapped = new MappedStreetGrid( binary.getPath() );
+        Random random = new Random( 17 );
+        for ( int i = 0; i < 500; i++ )
+        {
+            TimedGeoPosition point = GridFixture.point( random, GridFixture.MIN_LAT, GridFixture.MIN_LON, SIZE * SPACING );
+            for ( int c : new int[] { 1, 3, 8 } )
+            {
+                assertEquals( "point " + point + ", c=" + c,
+                    GridFixture.describe( grid.findClosestStreets( point, c ) ),
+                    GridFixture.describe( mapped.findClosestStreets( point, c ) ) );
+            }
+        }
+
+        // Right on a node, where the segments that meet there are at exactly the same distance
+        Endpoint shared = grid.getCells().iterator().next().segments.get( 0 ).endpoints.get( 0 );
+        TimedGeoPosition node = new TimedGeoPosition( new GeoPosition( shared.lat, shared.lon ), 0 );
+        assertEquals( GridFixture.describe( grid.findClosestStreets( node, 4 ) ),
+            GridFixture.describe( mapped.findClosestStreets( node, 4 ) ) );
+    }
+
+    public void testBadMagicIsRejected() throws IOException
+    {
+        File binary = convertedFixture();
+        try ( RandomAccessFile file = new RandomAccessFile( binary, "rw" ) )
+        {
+            file.write( new byte[] { 'N', 'O', 'P', 'E' } );
+        }
+        try
+        {
+            new MappedStreetGrid( binary.getPath() );
+            fail( "A file with the wrong magic number was accepted" );
+        }
+        catch ( IOException expected )
+        {
+            assertTrue( expected.getMessage(), expected.getMessage().startsWith( "Not a binary grid" ) );
+        }
+    }
+
+    public void testTruncatedFileIsRejected() throws IOException
+    {
+        File binary = convertedFixture();
+        try ( RandomAccessFile file = new RandomAccessFile( binary, "rw" ) )
+        {
+            file.setLength( file.length() - 8 );
+        }
+        try
+        {
+            new MappedStreetGrid( binary.getPath() );
+            fail( "A truncated file was accepted" );
+        }
+        catch ( IOException expected )
+        {
+            assertTrue( expected.getMessage(), expected.getMessage().contains( "truncated" ) );
+        }
+
+        Files.write( binary.toPath(), new byte[10] ); // Not even a header
+        try
+        {
+            new MappedStreetGrid( binary.getPath() );
+            fail( "A file shorter than the header was accepted" );
+        }
+        catch ( IOException expected )
+        {
+        }
+    }
+
+    private static File convertedFixture() throws IOException
+    {
+        File jsonl = GridFixture.write( GridFixture.tempFile( ".jsonl" ), GridFixture.lattice( 4, SPACING, 3 ) );
+        File binary = GridFixture.tempFile( ".bin" );
+        BinaryGridConverter.convert( jsonl.getPath(), binary.getPath() );
+        return binary;
+    }
+}
@@ -0,0 +1,88 @@
+package com.mycompany.masterproject.grid;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests that the SIMD projection gives the same factors as the scalar loop.
+ */
+public class SegmentProjectionTest
+    extends TestCase
+{
+    public SegmentProjectionTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( SegmentProjectionTest.class );
+    }
+
+    /**
+     * Every size up to a few vectors, so the remainder loop runs with every number of tail lanes, with
+     * zero-length segments and points beyond both ends of the segments.
+     */
+    public void testVectorEqualsScalar()
+    {
+        if ( !ModuleLayer.boot().findModule( "jdk.incubator.vector" ).isPresent() )
+        {
+            return; // Only the scalar loop can run in this JVM
+        }
+        int lanes = VectorSegmentProjection.laneCount();
+        Random random = new Random( 11 );
+        for ( int size = 0; size <= 4 * lanes + lanes - 1; size++ )
+        {
+            SegmentColumns columns = new SegmentColumns( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                double lat = 48 + random.nextDouble() * 0.001;
+                double lon = 7.8 + random.nextDouble() * 0.001;
+                if ( i % 3 == 0 )
+                {
+                    columns.set( i, lat, lon, lat, lon ); // A point
+                }
+                else
+                {
+                    columns.set( i, lat, lon, lat + ( random.nextDouble() - 0.5 ) * 0.001, lon + ( random.nextDouble() - 0.5 ) * 0.001 );
+                }
+            }
+            double[] point = GridGeometry.latLonToMeters( 48 + random.nextDouble() * 0.002 - 0.0005, 7.8 + random.nextDouble() * 0.002 - 0.0005 );
+
+            double[] scalar = new double[size];
+            double[] vector = new double[size];
+            SegmentProjection.projectScalar( columns, point[0], point[1], scalar );
+            VectorSegmentProjection.project( columns, point[0], point[1], vector );
+            for ( int i = 0; i < size; i++ )
+            {
+                assertEquals( "segment " + i + " of " + size, scalar[i], vector[i], 0.0 );
+                assertTrue( vector[i] >= 0 && vector[i] <= 1 );
+                if ( columns.lengthSquared[i] == 0 )
+                {
+                    assertEquals( 0.0, vector[i], 0.0 );
+                }
+            }
+        }
+    }
+
+    /**
+     * Points before the start and beyond the end of a segment are clamped to its endpoints.
+     */
+    public void testClamping()
+    {
+        SegmentColumns columns = new SegmentColumns( 3 );
+        columns.set( 0, 48, 7.8, 48, 7.801 );
+        columns.set( 1, 48, 7.801, 48, 7.8 );
+        columns.set( 2, 48, 7.8, 48, 7.8 );
+        double[] beyondEnd = GridGeometry.latLonToMeters( 48, 7.802 );
+        double[] t = SegmentProjection.scratch( columns.size );
+        SegmentProjection.project( columns, beyondEnd[0], beyondEnd[1], t );
+        assertEquals( 1.0, t[0], 0.0 );
+        assertEquals( 0.0, t[1], 0.0 );
+        assertEquals( 0.0, t[2], 0.0 );
+        assertTrue( SegmentProjection.scratch( 1000 ).length >= 1000 );
+    }
+}
@@ -0,0 +1,190 @@
+package com.mycompany.masterproject.grid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.mycompany.masterproject.graph.Edge;
+import com.mycompany.masterproject.graph.Graph;
+import com.mycompany.masterproject.graph.Segment;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of building a StreetGrid from a Graph.
+ */
+public class StreetGridBuilderTest
+    extends TestCase
+{
+    private static final int SIZE = 10;
+    private static final double SPACING = 0.0007;
+
+    public StreetGridBuilderTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( StreetGridBuilderTest.class );
+    }
+
+    /**
+     * Every point along an edge lies in a cell that lists the edge's segment.
+     */
+    public void testEdgesLandInEveryCellTheyCross()
+    {
+        Graph graph = graph();
+        StreetGrid grid = StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE );
+        GridBounds bounds = grid.getBounds();
+        List<long[]> edges = graph.getEdgeList();
+        int multiCell = 0;
+        for ( int i = 0; i < edges.size(); i++ )
+        {
+            Graph.Node start = graph.getNode( edges.get( i )[0] );
+            Graph.Node end = graph.getNode( edges.get( i )[1] );
+            int cells = 0;
+            CellId previous = null;
+            for ( int k = 1; k < 1000; k++ )
+            {
+                double lat = start.getLat() + ( end.getLat() - start.getLat() ) * k / 1000.0;
+                double lon = start.getLon() + ( end.getLon() - start.getLon() ) * k / 1000.0;
+                CellId cellId = new CellId( (int) ( ( lat - bounds.min_lat ) / bounds.cell_size ),
+                    (int) ( ( lon - bounds.min_lon ) / bounds.cell_size ) );
+                if ( !cellId.equals( previous ) )
+                {
+                    cells++;
+                    previous = cellId;
+                }
+                GridCell cell = grid.getCell( cellId );
+                assertNotNull( "edge " + i + " crosses an empty cell", cell );
+                assertTrue( "edge " + i + " is missing in cell " + cellId.row + "," + cellId.col,
+                    containsId( cell.segments, i ) );
+            }
+            if ( cells > 1 )
+            {
+                multiCell++;
+            }
+        }
+        assertTrue( "the fixture has no edges crossing cell borders", multiCell > edges.size() / 2 );
+    }
+
+    /**
+     * Two builds of the same graph iterate the same cells with the same segments in the same order.
+     */
+    public void testCellOrderIsDeterministic()
+    {
+        Graph graph = graph();
+        String first = describe( StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE ) );
+        for ( int run = 0; run < 5; run++ )
+        {
+            assertEquals( first, describe( StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE ) ) );
+        }
+    }
+
+    /**
+     * The ID of every segment is the index of its edge in Graph.getEdgeList().
+     */
+    public void testSegmentIdsMatchEdgeList()
+    {
+        Graph graph = graph();
+        List<long[]> edges = graph.getEdgeList();
+        StreetGrid grid = StreetGridBuilder.fromGraph( graph, StreetGridBuilder.DEFAULT_CELL_SIZE );
+        boolean[] seen = new boolean[edges.size()];
+        for ( GridCell cell : grid.getCells() )
+        {
+            for ( Segment segment : cell.segments )
+            {
+                long[] edge = edges.get( segment.getId() );
+                assertEquals( edge[0], segment.endpoints.get( 0 ).nodeId );
+                assertEquals( edge[1], segment.endpoints.get( 1 ).nodeId );
+                assertEquals( graph.getNode( edge[0] ).getNeighbors().get( edge[1] ).wayId, segment.way_id );
+                seen[segment.getId()] = true;
+            }
+        }
+        for ( int i = 0; i < seen.length; i++ )
+        {
+            assertTrue( "edge " + i + " is in no cell", seen[i] );
+        }
+    }
+
+    // A jittered lattice with diagonals, so many edges cross cell borders at an angle
+    private static Graph graph()
+    {
+        Random random = new Random( 23 );
+        Graph graph = new Graph();
+        for ( int row = 0; row < SIZE; row++ )
+        {
+            for ( int col = 0; col < SIZE; col++ )
+            {
+                graph.getAdjacencyList().put( id( row, col ), new Graph.Node( id( row, col ),
+                    48 + row * SPACING + random.nextDouble() * SPACING * 0.4,
+                    11 + col * SPACING + random.nextDouble() * SPACING * 0.4 ) );
+            }
+        }
+        int way = 0;
+        for ( int row = 0; row < SIZE; row++ )
+        {
+            for ( int col = 0; col < SIZE; col++ )
+            {
+                if ( col + 1 < SIZE )
+                {
+                    connect( graph, id( row, col ), id( row, col + 1 ), way++ );
+                }
+                if ( row + 1 < SIZE )
+                {
+                    connect( graph, id( row, col ), id( row + 1, col ), way++ );
+                }
+                if ( row + 1 < SIZE && col + 1 < SIZE && ( row + col ) % 3 == 0 )
+                {
+                    connect( graph, id( row, col ), id( row + 1, col + 1 ), way++ );
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static void connect( Graph graph, long from, long to, int way )
+    {
+        Graph.Node a = graph.getNode( from );
+        Graph.Node b = graph.getNode( to );
+        Edge edge = new Edge( GridGeometry.pointToMeters( a.getLat(), a.getLon(), b.getLat(), b.getLon() ),
+            "residential", "50", way );
+        a.addNeighbor( to, edge );
+        b.addNeighbor( from, edge );
+    }
+
+    private static long id( int row, int col )
+    {
+        return row * SIZE + col;
+    }
+
+    private static boolean containsId( List<Segment> segments, int id )
+    {
+        for ( Segment segment : segments )
+        {
+            if ( segment.getId() == id )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String describe( StreetGrid grid )
+    {
+        List<String> cells = new ArrayList<>();
+        for ( GridCell cell : grid.getCells() )
+        {
+            StringBuilder description = new StringBuilder( cell.getOriginalRow() + "," + cell.getOriginalCol() + ":" );
+            for ( Segment segment : cell.segments )
+            {
+                description.append( ' ' ).append( segment.getId() );
+            }
+            cells.add( description.toString() );
+        }
+        return String.join( "\n", cells );
+    }
+}
@@ -0,0 +1,94 @@
+package com.mycompany.masterproject.util;
+
+import java.io.StringWriter;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the levels, sampling and cap of MatchTrace.
+ */
+public class MatchTraceTest
+    extends TestCase
+{
+    public MatchTraceTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MatchTraceTest.class );
+    }
+
+    /**
+     * Only events up to the level of the trace and of every n-th point are written, one JSON object per line.
+     */
+    public void testLevelsAndSampling()
+    {
+        StringWriter out = new StringWriter();
+        MatchTrace trace = new MatchTrace( out, MatchTrace.Level.ROUTE ).setSampleEvery( 2 );
+        MatchTrace.Trajectory trajectory = trace.start( "a \"quoted\" name" );
+        for ( int point = 0; point < 4; point++ )
+        {
+            trajectory.step( point );
+            if ( trajectory.on( MatchTrace.Level.STEP ) )
+            {
+                trajectory.event( "point" ).field( "lat", 48.5 ).end();
+            }
+            if ( trajectory.on( MatchTrace.Level.INTERVAL ) )
+            {
+                trajectory.event( "interval" ).end();
+            }
+            if ( trajectory.on( MatchTrace.Level.ROUTE ) )
+            {
+                MatchTrace.Events branch = trajectory.branch();
+                branch.event( "route" ).field( "length", Double.NaN ).end();
+                trajectory.merge( branch );
+            }
+        }
+        trajectory.finish().field( "points", 4 ).end();
+
+        String[] lines = out.toString().split( "\n" );
+        assertEquals( 6, lines.length );
+        assertEquals( "{\"track\":0,\"event\":\"track\",\"name\":\"a \\\"quoted\\\" name\"}", lines[0] );
+        assertEquals( "{\"track\":0,\"point\":0,\"event\":\"point\",\"lat\":48.5}", lines[1] );
+        assertEquals( "{\"track\":0,\"point\":0,\"event\":\"route\",\"length\":\"NaN\"}", lines[2] );
+        assertEquals( "{\"track\":0,\"point\":2,\"event\":\"point\",\"lat\":48.5}", lines[3] );
+        assertEquals( "{\"track\":0,\"event\":\"end\",\"capped\":false,\"points\":4}", lines[5] );
+        assertEquals( 6, trace.getWritten() );
+    }
+
+    /**
+     * A trajectory writes at most the maximum number of events, its end included, and an unsampled or
+     * switched off trajectory writes nothing.
+     */
+    public void testCap()
+    {
+        StringWriter out = new StringWriter();
+        MatchTrace trace = new MatchTrace( out, MatchTrace.Level.STEP ).setMaxEvents( 5 );
+        MatchTrace.Trajectory trajectory = trace.start( "long" );
+        for ( int point = 0; point < 10; point++ )
+        {
+            trajectory.step( point );
+            if ( trajectory.on( MatchTrace.Level.STEP ) )
+            {
+                trajectory.event( "point" ).end();
+                trajectory.event( "point" ).end();
+            }
+        }
+        trajectory.finish().end();
+        String[] lines = out.toString().split( "\n" );
+        assertEquals( 5, lines.length );
+        assertTrue( lines[4].contains( "\"capped\":true" ) );
+        assertEquals( 1, trace.getCapped() );
+
+        MatchTrace.Trajectory off = MatchTrace.OFF.start( "off" );
+        off.step( 0 );
+        assertFalse( off.on( MatchTrace.Level.STEP ) );
+        assertFalse( off.isTraced() );
+        assertFalse( new MatchTrace( out, MatchTrace.Level.STEP ).setSampleRate( 0.0001 ).start( "off" ).isTraced() );
+        assertEquals( 5, out.toString().split( "\n" ).length );
+    }
+}